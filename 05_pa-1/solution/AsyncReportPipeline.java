@@ -0,0 +1,207 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * AsyncReportPipeline runs several report sinks at the same time.
+ *
+ * Graded students are collected into batches that keep the scores in
+ * parallel arrays, so no GradeRecord or StudentReport is built per student
+ * and columnar or compact callers keep their savings. Each full batch is put
+ * on a small bounded queue per sink, and every sink drains its own queue on
+ * its own thread. The summary, individual reports and
+ * distribution are therefore written concurrently, and the total time is
+ * close to that of the slowest sink instead of the sum of all of them.
+ *
+ * The queues are bounded, so when one sink falls behind, accept() blocks
+ * until that sink catches up. Memory use stays at a few batches per sink no
+ * matter how many students there are.
+ *
+ * Each sink only ever runs on its own worker thread, so sinks do not need to
+ * be thread-safe. If a sink fails, the next call to accept() or finish()
+ * throws its IOException, and the worker threads are stopped.
+ */
+class AsyncReportPipeline implements ReportSink {
+    private static final int DEFAULT_BATCH_SIZE = 1024;
+    private static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+    // Marks the end of the input on every queue
+    private static final ReportBatch END = new ReportBatch(0);
+
+    private final int batchSize;
+    private final List<SinkWorker> workers = new ArrayList<>();
+    private final ExecutorService executor;
+    private ReportBatch batch;
+
+    /**
+     * Creates a pipeline with default batch size and queue capacity.
+     *
+     * @param sinks The sinks to run concurrently
+     */
+    public AsyncReportPipeline(List<ReportSink> sinks) {
+        this(sinks, DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Creates a pipeline.
+     *
+     * @param sinks The sinks to run concurrently
+     * @param batchSize Reports per batch
+     * @param queueCapacity Batches that may wait for each sink before accept() blocks
+     */
+    public AsyncReportPipeline(List<ReportSink> sinks, int batchSize, int queueCapacity) {
+        this.batchSize = batchSize;
+        this.batch = new ReportBatch(batchSize);
+        this.executor = Executors.newFixedThreadPool(sinks.size(), runnable -> {
+            Thread thread = new Thread(runnable, "report-sink");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (ReportSink sink : sinks) {
+            SinkWorker worker = new SinkWorker(sink, queueCapacity);
+            worker.future = executor.submit(worker);
+            workers.add(worker);
+        }
+    }
+
+    @Override
+    public void accept(Student student, double assignmentScore, double midtermScore, double finalExamScore,
+                       double finalScore, String letterGrade) throws IOException {
+        batch.add(student, assignmentScore, midtermScore, finalExamScore, finalScore, letterGrade);
+        if (batch.size == batchSize) {
+            try {
+                publish(batch);
+            } catch (IOException | RuntimeException e) {
+                // finish() will not be called, so stop the workers here
+                executor.shutdownNow();
+                throw e;
+            }
+            batch = new ReportBatch(batchSize);
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        try {
+            if (batch.size > 0) {
+                publish(batch);
+                batch = new ReportBatch(0);
+            }
+            publish(END);
+
+            // Wait for every sink to drain its queue and finish
+            for (SinkWorker worker : workers) {
+                try {
+                    worker.future.get();
+                } catch (ExecutionException e) {
+                    throw asIOException(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for report sinks");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Hands a batch to every sink, waiting for room if a sink is behind.
+     */
+    private void publish(ReportBatch reports) throws IOException {
+        for (SinkWorker worker : workers) {
+            try {
+                // Wait for room, but give up if the sink has died
+                while (!worker.queue.offer(reports, 100, TimeUnit.MILLISECONDS)) {
+                    if (worker.future.isDone()) {
+                        break;
+                    }
+                }
+                if (worker.future.isDone() && reports != END) {
+                    // Surface the sink's failure right away
+                    worker.future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while queueing reports");
+            } catch (ExecutionException e) {
+                throw asIOException(e.getCause());
+            }
+        }
+    }
+
+    private static IOException asIOException(Throwable cause) {
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        return new IOException("Report sink failed: " + cause, cause);
+    }
+
+    /**
+     * One batch of graded students as parallel arrays. A published batch is
+     * only read, by every worker.
+     */
+    private static class ReportBatch {
+        final Student[] students;
+        final double[] assignmentScores;
+        final double[] midtermScores;
+        final double[] finalExamScores;
+        final double[] finalScores;
+        final String[] letterGrades;
+        int size;
+
+        ReportBatch(int capacity) {
+            students = new Student[capacity];
+            assignmentScores = new double[capacity];
+            midtermScores = new double[capacity];
+            finalExamScores = new double[capacity];
+            finalScores = new double[capacity];
+            letterGrades = new String[capacity];
+        }
+
+        void add(Student student, double assignmentScore, double midtermScore, double finalExamScore,
+                 double finalScore, String letterGrade) {
+            students[size] = student;
+            assignmentScores[size] = assignmentScore;
+            midtermScores[size] = midtermScore;
+            finalExamScores[size] = finalExamScore;
+            finalScores[size] = finalScore;
+            letterGrades[size] = letterGrade;
+            size++;
+        }
+
+        void sendTo(ReportSink sink) throws IOException {
+            for (int i = 0; i < size; i++) {
+                sink.accept(students[i], assignmentScores[i], midtermScores[i], finalExamScores[i],
+                            finalScores[i], letterGrades[i]);
+            }
+        }
+    }
+
+    /**
+     * Drains one sink's queue on a worker thread.
+     */
+    private static class SinkWorker implements Callable<Void> {
+        private final ReportSink sink;
+        private final BlockingQueue<ReportBatch> queue;
+        private Future<Void> future;
+
+        SinkWorker(ReportSink sink, int queueCapacity) {
+            this.sink = sink;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        @Override
+        public Void call() throws Exception {
+            while (true) {
+                ReportBatch reports = queue.take();
+                if (reports == END) {
+                    break;
+                }
+                reports.sendTo(sink);
+            }
+            sink.finish();
+            return null;
+        }
+    }
+}
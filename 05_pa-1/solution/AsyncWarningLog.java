@@ -0,0 +1,206 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * AsyncWarningLog takes rejected-line warnings off the parsing thread.
+ *
+ * A reader that rejects a line only checks the rate limit for the reason
+ * and, if the line may be shown, drops the reason and the line into a
+ * ring buffer. A background thread formats and prints whatever is in the
+ * ring in large batches, so console I/O no longer runs once per bad line.
+ *
+ * Each reason may print at most ratePerSecond warnings per second; past
+ * that, lines are only counted (the first few are kept as samples). When
+ * the log is closed, a summary lists every reason with how many lines were
+ * rejected, shown and suppressed, plus the sample lines that were not
+ * shown. If the ring is ever full the warning is counted as suppressed
+ * instead of waiting for the printer.
+ */
+class AsyncWarningLog implements Closeable {
+    // Ring slots; a power of two so positions wrap with a mask
+    private static final int RING_SIZE = 1 << 13;
+
+    // Suppressed lines kept per reason for the summary
+    private static final int SAMPLE_LINES = 3;
+
+    // How long the printer sleeps when the ring is empty
+    private static final long IDLE_PARK_NANOS = 200_000;
+
+    private final PrintStream out;
+    private final int ratePerSecond;
+
+    // Multi-producer ring: a slot may be read once its sequence equals position + 1
+    private final RejectReason[] slotReasons = new RejectReason[RING_SIZE];
+    private final String[] slotLines = new String[RING_SIZE];
+    private final AtomicLongArray slotSequences = new AtomicLongArray(RING_SIZE);
+    private final AtomicLong head = new AtomicLong();   // next position to claim
+    private volatile long printed = 0;                  // positions printed so far
+
+    // Per reason: current one-second window in the high half, warnings shown in it in the low half
+    private final AtomicLongArray windows = new AtomicLongArray(RejectReason.values().length);
+    private final AtomicLongArray total = new AtomicLongArray(RejectReason.values().length);
+    private final AtomicLongArray suppressed = new AtomicLongArray(RejectReason.values().length);
+    private final List<List<String>> samples = new ArrayList<>();
+
+    private final Thread printer;
+    private volatile boolean closed = false;
+
+    /**
+     * Starts a log that prints to the given stream.
+     *
+     * @param out Where warnings are printed
+     * @param ratePerSecond Warnings shown per reason per second
+     */
+    public AsyncWarningLog(PrintStream out, int ratePerSecond) {
+        this.out = out;
+        this.ratePerSecond = Math.max(1, ratePerSecond);
+        for (int i = 0; i < RING_SIZE; i++) {
+            slotSequences.set(i, i);
+        }
+        for (int r = 0; r < RejectReason.values().length; r++) {
+            samples.add(new ArrayList<>());
+        }
+
+        printer = new Thread(this::printLoop, "warning-printer");
+        printer.setDaemon(true);
+        printer.start();
+    }
+
+    /**
+     * Logs a rejection without waiting for the console.
+     *
+     * @param reason Why the line was rejected
+     * @param detail The rejected line (see RejectReason.warning)
+     */
+    public void warn(RejectReason reason, String detail) {
+        int r = reason.ordinal();
+        total.incrementAndGet(r);
+
+        if (!allowed(r) || !offer(reason, detail)) {
+            suppressed.incrementAndGet(r);
+            List<String> kept = samples.get(r);
+            synchronized (kept) {
+                if (kept.size() < SAMPLE_LINES) {
+                    kept.add(detail);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until every warning logged so far has been printed, so output
+     * that follows (such as "Successfully read ...") stays after it.
+     */
+    public void flush() {
+        long target = head.get();
+        while (printed < target) {
+            LockSupport.unpark(printer);
+            LockSupport.parkNanos(IDLE_PARK_NANOS / 4);
+        }
+        out.flush();
+    }
+
+    /**
+     * Prints the remaining warnings and the per-reason summary, and stops
+     * the printer thread.
+     */
+    @Override
+    public void close() {
+        flush();
+        closed = true;
+        LockSupport.unpark(printer);
+        try {
+            printer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        boolean header = false;
+        for (RejectReason reason : RejectReason.values()) {
+            int r = reason.ordinal();
+            long count = total.get(r);
+            if (count == 0) {
+                continue;
+            }
+            if (!header) {
+                out.println("Warning summary (at most " + ratePerSecond + " shown per reason per second):");
+                header = true;
+            }
+            long hidden = suppressed.get(r);
+            out.println("  " + reason.getLabel() + ": " + count + " rejected, " +
+                        (count - hidden) + " shown, " + hidden + " suppressed");
+            for (String sample : samples.get(r)) {
+                out.println("    e.g. " + sample);
+            }
+        }
+        out.flush();
+    }
+
+    // Per-reason rate limit over one-second windows
+    private boolean allowed(int r) {
+        long window = System.nanoTime() / 1_000_000_000L;
+        while (true) {
+            long current = windows.get(r);
+            long shown = (current >>> 32) == window ? (current & 0xFFFFFFFFL) : 0;
+            if (shown >= ratePerSecond) {
+                return false;
+            }
+            if (windows.compareAndSet(r, current, (window << 32) | (shown + 1))) {
+                return true;
+            }
+        }
+    }
+
+    // Claims a slot and publishes the warning, or returns false if the ring is full
+    private boolean offer(RejectReason reason, String detail) {
+        while (true) {
+            long position = head.get();
+            int slot = (int) position & (RING_SIZE - 1);
+            long sequence = slotSequences.get(slot);
+            if (sequence < position) {
+                return false;
+            }
+            if (sequence == position && head.compareAndSet(position, position + 1)) {
+                slotReasons[slot] = reason;
+                slotLines[slot] = detail;
+                slotSequences.set(slot, position + 1);
+                return true;
+            }
+        }
+    }
+
+    private void printLoop() {
+        StringBuilder batch = new StringBuilder(1 << 16);
+        String newline = System.lineSeparator();
+        long position = 0;
+
+        while (true) {
+            int slot = (int) position & (RING_SIZE - 1);
+            if (slotSequences.get(slot) == position + 1) {
+                batch.append(slotReasons[slot].warning(slotLines[slot])).append(newline);
+                slotLines[slot] = null;
+                slotSequences.set(slot, position + RING_SIZE);
+                position++;
+                if (batch.length() < (1 << 16)) {
+                    continue;
+                }
+            }
+
+            // Ring drained (or batch full): print what was collected
+            if (batch.length() > 0) {
+                out.print(batch);
+                batch.setLength(0);
+            }
+            printed = position;
+
+            if (closed && position == head.get()) {
+                return;
+            }
+            if (slotSequences.get((int) position & (RING_SIZE - 1)) != position + 1) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+import java.util.*;
+
+/**
+ * ColumnarGradeStore keeps every student's grades in parallel arrays.
+ *
+ * Instead of one GradeRecord object per student inside a HashMap, row i of
+ * the store is made of ids[i], assignmentScores[i], midtermScores[i] and
+ * finalScores[i]. Looking up a student goes through a small open-addressing
+ * index (an int[] of row numbers), so there are no map entries, no boxed
+ * values and no per-student objects apart from the ID String itself.
+ *
+ * Adding an ID that is already present overwrites its row, so the last line
+ * for a student wins, just like grades.put in readGradeData.
+ */
+class ColumnarGradeStore {
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Row data
+    private String[] ids;
+    private double[] assignmentScores;
+    private double[] midtermScores;
+    private double[] finalScores;
+    private int size;
+
+    // Open-addressing index: slot -> row + 1 (0 means the slot is empty)
+    private int[] slots;
+
+    /**
+     * Creates an empty store.
+     */
+    public ColumnarGradeStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an empty store sized for the expected number of students.
+     *
+     * @param expectedRows Number of rows to allocate up front
+     */
+    public ColumnarGradeStore(int expectedRows) {
+        int capacity = Math.max(INITIAL_CAPACITY, expectedRows);
+        ids = new String[capacity];
+        assignmentScores = new double[capacity];
+        midtermScores = new double[capacity];
+        finalScores = new double[capacity];
+        slots = new int[tableSizeFor(capacity)];
+    }
+
+    /**
+     * Builds a store around existing columns whose IDs are already unique,
+     * such as the rows of a GradeSnapshot. The arrays are used as they are,
+     * not copied.
+     *
+     * @param ids Student ID of each row
+     * @param assignmentScores Assignment score of each row
+     * @param midtermScores Midterm score of each row
+     * @param finalScores Final exam score of each row
+     * @return A store over those rows
+     */
+    static ColumnarGradeStore ofUniqueRows(String[] ids, double[] assignmentScores,
+                                           double[] midtermScores, double[] finalScores) {
+        ColumnarGradeStore store = new ColumnarGradeStore(0);
+        store.ids = ids;
+        store.assignmentScores = assignmentScores;
+        store.midtermScores = midtermScores;
+        store.finalScores = finalScores;
+        store.size = ids.length;
+        store.rehash(tableSizeFor(Math.max(INITIAL_CAPACITY, ids.length)));
+        return store;
+    }
+
+    /**
+     * Adds a student's grades, replacing any earlier row for the same ID.
+     *
+     * @return The row the grades were stored in
+     */
+    public int put(String id, double assignmentScore, double midtermScore, double finalScore) {
+        int slot = findSlot(id);
+        int row;
+        if (slots[slot] != 0) {
+            // Existing student: overwrite in place
+            row = slots[slot] - 1;
+        } else {
+            if (size == ids.length) {
+                growRows();
+            }
+            row = size++;
+            ids[row] = id;
+            slots[slot] = row + 1;
+
+            // Keep the index at most half full
+            if (size * 2 > slots.length) {
+                rehash(slots.length * 2);
+            }
+        }
+        assignmentScores[row] = assignmentScore;
+        midtermScores[row] = midtermScore;
+        finalScores[row] = finalScore;
+        return row;
+    }
+
+    /**
+     * Looks up the row for a student ID.
+     *
+     * @param id The student ID
+     * @return The row number, or -1 if the student has no grades
+     */
+    public int rowOf(String id) {
+        return slots[findSlot(id)] - 1;
+    }
+
+    /**
+     * @return Number of students in the store
+     */
+    public int size() {
+        return size;
+    }
+
+    // Per-row getters
+    public String getStudentId(int row) { return ids[row]; }
+    public double getAssignmentScore(int row) { return assignmentScores[row]; }
+    public double getMidtermScore(int row) { return midtermScores[row]; }
+    public double getFinalScore(int row) { return finalScores[row]; }
+
+    // Backing score columns for bulk processing; only the first size() entries are valid
+    double[] assignmentScores() { return assignmentScores; }
+    double[] midtermScores() { return midtermScores; }
+    double[] finalScores() { return finalScores; }
+
+    /**
+     * Returns the slot holding this ID, or the empty slot where it belongs.
+     */
+    private int findSlot(String id) {
+        int mask = slots.length - 1;
+        int slot = Hashing.spread(id.hashCode()) & mask;
+        while (slots[slot] != 0 && !ids[slots[slot] - 1].equals(id)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void growRows() {
+        int capacity = Math.max(INITIAL_CAPACITY, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        assignmentScores = Arrays.copyOf(assignmentScores, capacity);
+        midtermScores = Arrays.copyOf(midtermScores, capacity);
+        finalScores = Arrays.copyOf(finalScores, capacity);
+    }
+
+    private void rehash(int tableSize) {
+        slots = new int[tableSize];
+        int mask = tableSize - 1;
+        for (int row = 0; row < size; row++) {
+            int slot = Hashing.spread(ids[row].hashCode()) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = row + 1;
+        }
+    }
+
+    // Smallest power of two that keeps the index at most half full
+    private static int tableSizeFor(int rows) {
+        return Integer.highestOneBit(Math.max(1, rows - 1)) << 2;
+    }
+}
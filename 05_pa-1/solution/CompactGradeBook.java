@@ -0,0 +1,264 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * CompactGradeBook holds the students and their grades with as few objects
+ * per student as possible.
+ *
+ * Student IDs that are plain numbers (no sign, no leading zeros, at most 18
+ * digits) are kept as long keys, and grades are found through a
+ * LongIntHashMap instead of a HashMap of Strings. Names and emails are
+ * copied into a shared StringArena, one byte per character for Latin-1 text
+ * and stored once however many students share them. Scores live in plain
+ * double[] columns. Any other ID is kept as a String on the side, so
+ * unusual files still load exactly.
+ *
+ * Student objects are only built, one at a time, when a report is written.
+ * Warnings and results are the same as in the regular mode.
+ */
+class CompactGradeBook {
+    // Students: ID key (or -1 - index into otherStudentIds) and arena handles
+    private long[] studentKeys;
+    private int[] nameHandles;
+    private int[] emailHandles;
+    private int studentCount;
+    private final List<String> otherStudentIds = new ArrayList<>();
+
+    private final StringArena strings;
+
+    // Grades: one row per student ID, last line wins
+    private final LongIntHashMap gradeRows;
+    private final Map<String, Integer> otherGradeRows = new HashMap<>();
+    private double[] assignmentScores;
+    private double[] midtermScores;
+    private double[] finalScores;
+    private int gradeCount;
+
+    /**
+     * Creates an empty grade book.
+     *
+     * @param expectedStudents Number of students to allocate room for
+     */
+    public CompactGradeBook(int expectedStudents) {
+        int capacity = Math.max(16, expectedStudents);
+        studentKeys = new long[capacity];
+        nameHandles = new int[capacity];
+        emailHandles = new int[capacity];
+        strings = new StringArena(capacity * 2);
+        gradeRows = new LongIntHashMap(capacity);
+        assignmentScores = new double[capacity];
+        midtermScores = new double[capacity];
+        finalScores = new double[capacity];
+    }
+
+    /**
+     * Reads both files, validating lines and printing warnings exactly like
+     * readStudentData and readGradeData.
+     *
+     * @param studentsFile The name of the file containing student data
+     * @param gradesFile The name of the file containing grade data
+     * @return The loaded grade book
+     * @throws IOException if a file cannot be found or read
+     */
+    public static CompactGradeBook load(String studentsFile, String gradesFile) throws IOException {
+        // Lines are rarely shorter than 24 bytes, so this never undersizes by much
+        CompactGradeBook book = new CompactGradeBook((int) Math.min(1 << 24, new File(studentsFile).length() / 24));
+
+        System.out.println("Reading student data from " + studentsFile + "...");
+        MappedCsvReader reader = new MappedCsvReader(studentsFile);
+        try {
+            // Empty lines are skipped by the reader
+            while (reader.nextLine()) {
+                // Validate that we have exactly 3 parts
+                if (reader.fieldCount() != 3) {
+                    GradeRunMetrics.reject(RejectReason.INVALID_LINE_FORMAT, reader.lineString());
+                    continue;
+                }
+
+                // Basic validation
+                if (reader.isFieldBlank(0) || reader.isFieldBlank(1) || reader.isFieldBlank(2)) {
+                    GradeRunMetrics.reject(RejectReason.EMPTY_FIELDS, reader.lineString());
+                    continue;
+                }
+
+                book.addStudent(reader.fieldString(0), reader.fieldString(1), reader.fieldString(2));
+            }
+        } finally {
+            reader.close();
+        }
+        System.out.println("Successfully read " + book.getStudentCount() + " student records.\n");
+
+        System.out.println("Reading grade data from " + gradesFile + "...");
+        reader = new MappedCsvReader(gradesFile);
+        GradeLineValidator validator = new GradeLineValidator();
+        try {
+            while (reader.nextLine()) {
+                // Validate the field count, numbers and score range
+                RejectReason reason = validator.check(reader);
+                if (reason != null) {
+                    GradeRunMetrics.reject(reason, reader.lineString());
+                    continue;
+                }
+
+                book.putGrades(reader.fieldString(0), validator.score(0), validator.score(1), validator.score(2));
+            }
+        } finally {
+            reader.close();
+        }
+        System.out.println("Successfully read " + book.getGradeCount() + " grade records.\n");
+
+        book.trim();
+        return book;
+    }
+
+    /**
+     * Converts a student ID to a long key.
+     *
+     * @param id The student ID
+     * @return The key, or -1 if the ID is not a plain number that round-trips
+     */
+    static long idKey(String id) {
+        int length = id.length();
+        if (length == 0 || length > 18 || (length > 1 && id.charAt(0) == '0')) {
+            return -1;
+        }
+        long key = 0;
+        for (int i = 0; i < length; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            key = key * 10 + (c - '0');
+        }
+        return key;
+    }
+
+    /**
+     * Appends a student in roster order.
+     */
+    public void addStudent(String id, String name, String email) {
+        if (studentCount == studentKeys.length) {
+            int capacity = Math.max(16, studentCount * 2);
+            studentKeys = Arrays.copyOf(studentKeys, capacity);
+            nameHandles = Arrays.copyOf(nameHandles, capacity);
+            emailHandles = Arrays.copyOf(emailHandles, capacity);
+        }
+        long key = idKey(id);
+        if (key < 0) {
+            key = -1 - otherStudentIds.size();
+            otherStudentIds.add(id);
+        }
+        studentKeys[studentCount] = key;
+        nameHandles[studentCount] = strings.add(name);
+        emailHandles[studentCount] = strings.add(email);
+        studentCount++;
+    }
+
+    /**
+     * Stores a student's grades, replacing any earlier line for the same ID.
+     */
+    public void putGrades(String id, double assignmentScore, double midtermScore, double finalScore) {
+        long key = idKey(id);
+        int row = key >= 0 ? gradeRows.get(key) : otherGradeRows.getOrDefault(id, -1);
+        if (row < 0) {
+            if (gradeCount == assignmentScores.length) {
+                int capacity = Math.max(16, gradeCount * 2);
+                assignmentScores = Arrays.copyOf(assignmentScores, capacity);
+                midtermScores = Arrays.copyOf(midtermScores, capacity);
+                finalScores = Arrays.copyOf(finalScores, capacity);
+            }
+            row = gradeCount++;
+            if (key >= 0) {
+                gradeRows.put(key, row);
+            } else {
+                otherGradeRows.put(id, row);
+            }
+        }
+        assignmentScores[row] = assignmentScore;
+        midtermScores[row] = midtermScore;
+        finalScores[row] = finalScore;
+    }
+
+    /**
+     * Grades every student in roster order and feeds the sinks. Students
+     * without grades are warned about first, as calculateFinalGrades does.
+     *
+     * @param sinks Sinks that receive every graded student
+     * @return Number of reports produced
+     * @throws IOException if a sink fails
+     */
+    public int grade(List<ReportSink> sinks) throws IOException {
+        System.out.println("Calculating final grades...");
+        for (int i = 0; i < studentCount; i++) {
+            if (gradeRowOf(i) < 0) {
+                Student student = getStudent(i);
+                GradeRunMetrics.reject(RejectReason.NO_GRADE_DATA, RejectReason.studentDetail(student));
+            }
+        }
+
+        System.out.println("Generating reports...");
+        int reportCount = 0;
+        for (int i = 0; i < studentCount; i++) {
+            int row = gradeRowOf(i);
+            if (row < 0) {
+                continue;
+            }
+
+            double finalScore = Solution_StudentGradeManager.calculateFinalScore(
+                assignmentScores[row], midtermScores[row], finalScores[row]);
+            String letterGrade = Solution_StudentGradeManager.getLetterGrade(finalScore);
+            Student student = getStudent(i);
+            for (ReportSink sink : sinks) {
+                sink.accept(student, assignmentScores[row], midtermScores[row], finalScores[row],
+                            finalScore, letterGrade);
+            }
+            reportCount++;
+        }
+        for (ReportSink sink : sinks) {
+            sink.finish();
+        }
+        return reportCount;
+    }
+
+    /**
+     * Builds the Student for a roster position.
+     */
+    public Student getStudent(int index) {
+        return new Student(studentId(index), strings.get(nameHandles[index]), strings.get(emailHandles[index]));
+    }
+
+    /**
+     * @return The grade row for a roster position, or -1 if the student has no grades
+     */
+    public int gradeRowOf(int index) {
+        long key = studentKeys[index];
+        if (key >= 0) {
+            return gradeRows.get(key);
+        }
+        return otherGradeRows.getOrDefault(otherStudentIds.get((int) (-1 - key)), -1);
+    }
+
+    // Counts
+    public int getStudentCount() { return studentCount; }
+    public int getGradeCount() { return gradeCount; }
+    public int getDistinctStringCount() { return strings.size(); }
+
+    private String studentId(int index) {
+        long key = studentKeys[index];
+        return key >= 0 ? Long.toString(key) : otherStudentIds.get((int) (-1 - key));
+    }
+
+    /**
+     * Shrinks every array to its final size once loading is done.
+     */
+    private void trim() {
+        studentKeys = Arrays.copyOf(studentKeys, studentCount);
+        nameHandles = Arrays.copyOf(nameHandles, studentCount);
+        emailHandles = Arrays.copyOf(emailHandles, studentCount);
+        assignmentScores = Arrays.copyOf(assignmentScores, gradeCount);
+        midtermScores = Arrays.copyOf(midtermScores, gradeCount);
+        finalScores = Arrays.copyOf(finalScores, gradeCount);
+        strings.trim();
+        gradeRows.trim();
+    }
+}
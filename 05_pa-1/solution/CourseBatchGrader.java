@@ -0,0 +1,382 @@
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * CourseBatchGrader grades many course sections in one run, each with its
+ * own components, weights and letter cutoffs.
+ *
+ * The config file defines named grading schemes and then the sections that
+ * use them, one per line (blank lines and # comments are ignored; paths are
+ * relative to the config file unless absolute, and may not contain spaces):
+ *
+ *     scheme standard Assignment:0.40,Midterm:0.25,Final:0.35 A:90,B:80,C:70,D:60,F:0
+ *     scheme labs     Labs:0.30,Project:0.30,Exam:0.40 A:93,A-:90,B:80,C:70,F:0
+ *     section CS101-01 standard cs101/01/students.txt cs101/01/grades.txt out/CS101-01
+ *     section CS205-02 labs     cs205/02/students.txt cs205/02/grades.txt out/CS205-02
+ *
+ * A section's grade file has the student ID followed by one score per
+ * component of its scheme. Each section's output directory receives the
+ * usual class_summary.txt and grade_distribution.txt, every student report
+ * in student_reports.txt, and its warnings in grading_log.txt.
+ *
+ * Sections are graded on a ForkJoinPool. The section list is split in
+ * halves recursively, so idle workers steal whole ranges of sections from
+ * busy ones and a few large sections cannot hold up the rest. Sections
+ * reuse MappedCsvReader, GradeStatistics and the summary writers, and share
+ * their parsed GradingScheme, so a small section costs little more than
+ * reading its two files.
+ *
+ * Usage: java CourseBatchGrader courses.cfg [threads]
+ */
+public class CourseBatchGrader {
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Usage: java CourseBatchGrader courses.cfg [threads]");
+            return;
+        }
+
+        try {
+            int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+            List<Section> sections = readConfig(new File(args[0]));
+            System.out.println("Grading " + sections.size() + " sections on " + threads + " threads...\n");
+
+            long start = System.nanoTime();
+            SectionResult[] results = gradeAll(sections, threads);
+            long elapsed = System.nanoTime() - start;
+
+            long students = 0;
+            long graded = 0;
+            int failed = 0;
+            for (SectionResult result : results) {
+                System.out.println(result);
+                students += result.studentCount;
+                graded += result.gradedCount;
+                if (result.error != null) {
+                    failed++;
+                }
+            }
+            System.out.printf("%nGraded %d of %d students in %d sections (%d failed) in %d ms%n",
+                              graded, students, results.length, failed, elapsed / 1_000_000);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the schemes and sections from a config file.
+     *
+     * @param configFile The config file
+     * @return The sections, in config order
+     * @throws IOException if the file cannot be read or has an invalid line
+     */
+    public static List<Section> readConfig(File configFile) throws IOException {
+        File baseDirectory = configFile.getAbsoluteFile().getParentFile();
+        Map<String, GradingScheme> schemes = new HashMap<>();
+        List<Section> sections = new ArrayList<>();
+
+        BufferedReader reader = new BufferedReader(new FileReader(configFile));
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] parts = line.split("\\s+");
+                try {
+                    if (parts[0].equals("scheme") && parts.length == 4) {
+                        schemes.put(parts[1], GradingScheme.parse(parts[1], parts[2], parts[3]));
+                    } else if (parts[0].equals("section") && parts.length == 6) {
+                        GradingScheme scheme = schemes.get(parts[2]);
+                        if (scheme == null) {
+                            throw new IllegalArgumentException("unknown scheme " + parts[2]);
+                        }
+                        sections.add(new Section(parts[1], scheme, resolve(baseDirectory, parts[3]),
+                                                 resolve(baseDirectory, parts[4]), resolve(baseDirectory, parts[5])));
+                    } else {
+                        throw new IllegalArgumentException("expected a scheme or section line");
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(configFile + " line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return sections;
+    }
+
+    private static File resolve(File baseDirectory, String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(baseDirectory, path);
+    }
+
+    /**
+     * Grades every section on a work-stealing pool.
+     *
+     * @param sections The sections to grade
+     * @param threads Number of worker threads
+     * @return One result per section, in the same order
+     */
+    public static SectionResult[] gradeAll(List<Section> sections, int threads) {
+        SectionResult[] results = new SectionResult[sections.size()];
+        if (sections.isEmpty()) {
+            return results;
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            pool.invoke(new SectionRangeTask(sections, results, 0, sections.size()));
+        } finally {
+            pool.shutdown();
+        }
+        return results;
+    }
+
+    /**
+     * Grades one section and writes its reports. Errors are recorded in the
+     * result instead of stopping the batch.
+     *
+     * @param section The section to grade
+     * @return What happened
+     */
+    public static SectionResult gradeSection(Section section) {
+        long start = System.nanoTime();
+        SectionResult result = new SectionResult(section.name);
+        ByteArrayOutputStream logBytes = new ByteArrayOutputStream();
+        PrintStream log = new PrintStream(logBytes, false);
+
+        try {
+            section.outputDirectory.mkdirs();
+
+            List<Student> students = Solution_StudentGradeManager.readStudentDataMapped(section.studentsFile.getPath(), log);
+            SectionGrades grades = readSectionGrades(section.gradesFile, section.scheme, log);
+            result.studentCount = students.size();
+
+            GradingScheme scheme = section.scheme;
+            GradeStatistics statistics = new GradeStatistics(scheme.getLetters());
+            double[] scores = grades.scores;
+            int components = scheme.getComponentCount();
+
+            BufferedWriter reports = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(new File(section.outputDirectory, "student_reports.txt")), CHARSET), 1 << 16);
+            try {
+                StringBuilder report = new StringBuilder(256);
+                for (Student student : students) {
+                    int row = grades.rowOf(student.getId());
+                    if (row < 0) {
+                        GradeRunMetrics.reject(RejectReason.NO_GRADE_DATA, RejectReason.studentDetail(student), log);
+                        continue;
+                    }
+
+                    int offset = row * components;
+                    double finalScore = scheme.finalScore(scores, offset);
+                    int bucket = scheme.bucketOf(finalScore);
+                    statistics.add(student.getName(), finalScore, bucket);
+
+                    report.setLength(0);
+                    appendReport(report, student, scheme, scores, offset, finalScore, scheme.getLetters()[bucket]);
+                    reports.append(report);
+                }
+            } finally {
+                reports.close();
+            }
+            result.gradedCount = statistics.getCount();
+
+            Solution_StudentGradeManager.writeClassSummary(statistics, scheme,
+                new File(section.outputDirectory, "class_summary.txt"));
+            Solution_StudentGradeManager.writeGradeDistribution(statistics, scheme,
+                new File(section.outputDirectory, "grade_distribution.txt"));
+        } catch (IOException e) {
+            result.error = e.getMessage();
+            log.println("Error: " + e.getMessage());
+        } catch (RuntimeException e) {
+            // A bug or bad data in one section must not stop the others
+            result.error = e.toString();
+            log.println("Error: " + e);
+        }
+
+        log.flush();
+        result.warningCount = countWarnings(logBytes.toString());
+        try (OutputStream out = new FileOutputStream(new File(section.outputDirectory, "grading_log.txt"))) {
+            logBytes.writeTo(out);
+        } catch (IOException e) {
+            if (result.error == null) {
+                result.error = e.getMessage();
+            }
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Reads a section's grade file: the ID and one score per component.
+     * Lines are validated like readGradeData, and the last valid line for
+     * an ID wins.
+     */
+    static SectionGrades readSectionGrades(File gradesFile, GradingScheme scheme, PrintStream log) throws IOException {
+        int components = scheme.getComponentCount();
+        SectionGrades grades = new SectionGrades(components);
+        GradeLineValidator validator = new GradeLineValidator(components);
+
+        log.println("Reading grade data from " + gradesFile.getPath() + "...");
+
+        MappedCsvReader reader = new MappedCsvReader(gradesFile.getPath());
+        try {
+            while (reader.nextLine()) {
+                // Validate the ID plus one score per component, the numbers and the score range
+                RejectReason reason = validator.check(reader);
+                if (reason != null) {
+                    GradeRunMetrics.reject(reason, reader.lineString(), log);
+                    continue;
+                }
+
+                grades.put(reader.fieldString(0), validator.scores());
+            }
+        } finally {
+            reader.close();
+        }
+        return grades;
+    }
+
+    /**
+     * Appends one student report in the usual format, with one line per
+     * component of the scheme.
+     */
+    private static void appendReport(StringBuilder out, Student student, GradingScheme scheme, double[] scores,
+                                     int offset, double finalScore, String letterGrade) {
+        String newline = System.lineSeparator();
+        out.append("STUDENT REPORT - ").append(student.getName()).append(" (ID: ").append(student.getId()).append(')').append(newline);
+        out.append("Email: ").append(student.getEmail()).append(newline);
+        for (int c = 0; c < scheme.getComponentCount(); c++) {
+            out.append(scheme.getComponent(c)).append(" Score: ")
+               .append(FixedDecimalFormatter.toString(scores[offset + c], 1)).append(newline);
+        }
+        out.append("Final Grade: ").append(FixedDecimalFormatter.toString(finalScore, 2))
+           .append(" (").append(letterGrade).append(')').append(newline);
+        out.append(newline);
+    }
+
+    private static int countWarnings(String log) {
+        int count = 0;
+        int index = 0;
+        while ((index = log.indexOf("Warning: ", index)) >= 0) {
+            count++;
+            index++;
+        }
+        return count;
+    }
+
+    /**
+     * One course section from the config file.
+     */
+    static class Section {
+        final String name;
+        final GradingScheme scheme;
+        final File studentsFile;
+        final File gradesFile;
+        final File outputDirectory;
+
+        Section(String name, GradingScheme scheme, File studentsFile, File gradesFile, File outputDirectory) {
+            this.name = name;
+            this.scheme = scheme;
+            this.studentsFile = studentsFile;
+            this.gradesFile = gradesFile;
+            this.outputDirectory = outputDirectory;
+        }
+    }
+
+    /**
+     * Outcome of grading one section.
+     */
+    static class SectionResult {
+        final String name;
+        int studentCount;
+        long gradedCount;
+        int warningCount;
+        long elapsedNanos;
+        String error;
+
+        SectionResult(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            if (error != null) {
+                return String.format("%s: FAILED - %s", name, error);
+            }
+            return String.format("%s: %d students, %d graded, %d warnings (%.1f ms)",
+                                 name, studentCount, gradedCount, warningCount, elapsedNanos / 1e6);
+        }
+    }
+
+    /**
+     * Grades a range of sections, splitting it in half until a single
+     * section is left so idle workers can steal the other half.
+     */
+    private static class SectionRangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Section> sections;
+        private final SectionResult[] results;
+        private final int from;
+        private final int to;
+
+        SectionRangeTask(List<Section> sections, SectionResult[] results, int from, int to) {
+            this.sections = sections;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                results[from] = gradeSection(sections.get(from));
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SectionRangeTask(sections, results, from, middle),
+                      new SectionRangeTask(sections, results, middle, to));
+        }
+    }
+
+    /**
+     * Grade rows for one section: a row number per ID and a flat array of
+     * scores, one run of component scores per row.
+     */
+    static class SectionGrades {
+        private final int components;
+        private final Map<String, Integer> rowById = new HashMap<>();
+        private double[] scores;
+
+        SectionGrades(int components) {
+            this.components = components;
+            this.scores = new double[components * 16];
+        }
+
+        void put(String id, double[] lineScores) {
+            Integer row = rowById.get(id);
+            if (row == null) {
+                row = rowById.size();
+                rowById.put(id, row);
+                if ((row + 1) * components > scores.length) {
+                    scores = Arrays.copyOf(scores, scores.length * 2);
+                }
+            }
+            System.arraycopy(lineScores, 0, scores, row * components, components);
+        }
+
+        int rowOf(String id) {
+            Integer row = rowById.get(id);
+            return row != null ? row : -1;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * FixedDecimalFormatter writes a double with a fixed number of decimals
+ * straight into a byte array, producing exactly what printf("%.Nf") would.
+ *
+ * printf rounds the shortest decimal form of the value (the digits
+ * Double.toString prints) half-up. For a typical score such as 82.35 the
+ * scaled value is nowhere near a rounding boundary, and then rounding the
+ * binary value gives the same digits, so the digits are produced with plain
+ * long arithmetic. Only values that sit right on a boundary (like x.xx5),
+ * or are too large for the fast path, go through BigDecimal.
+ *
+ * "Right on a boundary" has to allow for the error in the scaled value: the
+ * binary value is up to half an ulp away from its shortest decimal form,
+ * and scaling rounds once more, so together the scaled value can be off by
+ * about 1.5 ulps. The tie margin is therefore a few ulps of the scaled
+ * value, and only a fixed 1e-6 where that is smaller.
+ */
+class FixedDecimalFormatter {
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L
+    };
+
+    // Largest magnitude handled with long arithmetic
+    private static final double FAST_PATH_LIMIT = 1e9;
+
+    // Scaled values this close to .5 are treated as possible ties (at least;
+    // see tieMargin)
+    private static final double TIE_MARGIN = 1e-6;
+
+    // Ulps of the scaled value that cover its worst-case error from the decimal form
+    private static final double TIE_MARGIN_ULPS = 4;
+
+    private FixedDecimalFormatter() {
+    }
+
+    /**
+     * Writes value with the given number of decimals into out at pos.
+     *
+     * @param out Destination buffer; must have room for the digits
+     * @param pos Where to start writing
+     * @param value The value to format
+     * @param decimals Number of digits after the decimal point (0-6)
+     * @return Position just after the last byte written
+     */
+    public static int format(byte[] out, int pos, double value, int decimals) {
+        double magnitude = Math.abs(value);
+        if (Double.isNaN(value) || !(magnitude < FAST_PATH_LIMIT)) {
+            return writeAscii(out, pos, slowFormat(value, decimals));
+        }
+
+        long scale = POWERS_OF_TEN[decimals];
+        double scaled = magnitude * scale;
+        long units = (long) scaled;
+        double fraction = scaled - units;
+        if (Math.abs(fraction - 0.5) < tieMargin(scaled)) {
+            return writeAscii(out, pos, slowFormat(value, decimals));
+        }
+        if (fraction > 0.5) {
+            units++;
+        }
+
+        // printf keeps the sign of negative values, even -0.0
+        if (Double.doubleToRawLongBits(value) < 0) {
+            out[pos++] = '-';
+        }
+        pos = writeLong(out, pos, units / scale);
+        if (decimals > 0) {
+            out[pos++] = '.';
+            long fractionDigits = units % scale;
+            for (long divisor = scale / 10; divisor > 0; divisor /= 10) {
+                out[pos++] = (byte) ('0' + (fractionDigits / divisor) % 10);
+            }
+        }
+        return pos;
+    }
+
+    // How close to .5 the fraction of a scaled value must be to need the exact path
+    private static double tieMargin(double scaled) {
+        return Math.max(TIE_MARGIN, TIE_MARGIN_ULPS * Math.ulp(scaled));
+    }
+
+    /**
+     * Returns the formatted value as a String (mainly for checks and tests).
+     */
+    public static String toString(double value, int decimals) {
+        byte[] buffer = new byte[64];
+        int length = format(buffer, 0, value, decimals);
+        return new String(buffer, 0, length, java.nio.charset.StandardCharsets.US_ASCII);
+    }
+
+    // Exact printf-compatible rounding for ties, huge values, NaN and infinity
+    private static String slowFormat(double value, int decimals) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return String.format("%." + decimals + "f", value);
+        }
+        String digits = new BigDecimal(Double.toString(Math.abs(value)))
+                            .setScale(decimals, RoundingMode.HALF_UP)
+                            .toPlainString();
+        return Double.doubleToRawLongBits(value) < 0 ? "-" + digits : digits;
+    }
+
+    private static int writeLong(byte[] out, int pos, long value) {
+        if (value == 0) {
+            out[pos++] = '0';
+            return pos;
+        }
+        int digits = 0;
+        for (long v = value; v > 0; v /= 10) {
+            digits++;
+        }
+        int end = pos + digits;
+        for (int i = end - 1; i >= pos; i--) {
+            out[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    private static int writeAscii(byte[] out, int pos, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            out[pos++] = (byte) text.charAt(i);
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,668 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * GradeJoin joins students.txt against grades.txt and feeds every graded
+ * student to the report sinks, choosing between two strategies:
+ *
+ *   hash join        load the grades into a map and stream the students
+ *                    past it (what processGradesStreaming does). Fast, but
+ *                    the whole grade file has to fit on the heap.
+ *   sort-merge join  bring both files into student ID order, then walk them
+ *                    side by side. An input that is already sorted by ID is
+ *                    read straight from its file; otherwise it is cut into
+ *                    sorted runs that fit the memory budget, spilled to temp
+ *                    files and merged back. Memory use stays within the
+ *                    budget however large the files are.
+ *
+ * The strategy is chosen from the size of grades.txt and the memory budget.
+ * Both give the same reports as the regular mode: every record carries its
+ * line number, so the last valid grade line for a student still wins, and
+ * the joined students are put back into students.txt order (another set of
+ * sorted runs when students.txt was not sorted by ID) before they reach the
+ * sinks. Warnings are printed in the same order as well.
+ */
+class GradeJoin {
+    enum Strategy { HASH, SORT_MERGE }
+
+    // Heap bytes a grade line costs in a HashMap of GradeRecords, per byte of text
+    private static final int HASH_BYTES_PER_GRADE_BYTE = 8;
+
+    // Rough heap cost of a buffered record, on top of its strings
+    private static final int ROW_OVERHEAD = 96;
+
+    // Read buffer for each run being merged
+    private static final int MAX_RUN_BUFFER = 1 << 16;
+    private static final int MIN_RUN_BUFFER = 1 << 10;
+
+    // Most runs merged at once, to stay well below open file limits
+    private static final int MAX_MERGE_WIDTH = 128;
+
+    private final long memoryBudget;
+    private final File tempDirectory;
+    private final GradeLoader gradeLoader;
+    private final List<File> tempFiles = new ArrayList<>();
+    private int runCount = 0;
+
+    /**
+     * Loads the grade file into a map for the hash join.
+     */
+    interface GradeLoader {
+        Map<String, GradeRecord> load(String filename) throws IOException;
+    }
+
+    /**
+     * Creates a join layer whose hash join reads grades with readGradeData.
+     *
+     * @param memoryBudget Bytes of heap the join may use for grades or sort buffers
+     * @param tempDirectory Where to put spilled runs (null for the system default)
+     */
+    public GradeJoin(long memoryBudget, File tempDirectory) {
+        this(memoryBudget, tempDirectory, Solution_StudentGradeManager::readGradeData);
+    }
+
+    /**
+     * Creates a join layer.
+     *
+     * @param memoryBudget Bytes of heap the join may use for grades or sort buffers
+     * @param tempDirectory Where to put spilled runs (null for the system default)
+     * @param gradeLoader How the hash join loads the grades (Scanner, mapped or parallel)
+     */
+    public GradeJoin(long memoryBudget, File tempDirectory, GradeLoader gradeLoader) {
+        this.memoryBudget = memoryBudget;
+        this.tempDirectory = tempDirectory;
+        this.gradeLoader = gradeLoader;
+    }
+
+    /**
+     * Picks a join strategy.
+     *
+     * @param studentsBytes Size of the student file
+     * @param gradesBytes Size of the grade file
+     * @param memoryBudget Bytes of heap available to the join
+     * @return HASH if the grades fit in the budget as a map, SORT_MERGE otherwise
+     */
+    public static Strategy choose(long studentsBytes, long gradesBytes, long memoryBudget) {
+        // The hash join only holds the grades; students are streamed either way
+        if (gradesBytes * HASH_BYTES_PER_GRADE_BYTE <= memoryBudget) {
+            return Strategy.HASH;
+        }
+        return Strategy.SORT_MERGE;
+    }
+
+    /**
+     * Joins the two files with the strategy chosen for their sizes.
+     *
+     * @param studentsFile The name of the file containing student data
+     * @param gradesFile The name of the file containing grade data
+     * @param sinks Sinks that receive every graded student, in students.txt order
+     * @return The strategy that was used
+     * @throws IOException if a file cannot be read, a run cannot be spilled or a sink fails
+     */
+    public Strategy join(String studentsFile, String gradesFile, List<ReportSink> sinks) throws IOException {
+        Strategy strategy = choose(new File(studentsFile).length(), new File(gradesFile).length(), memoryBudget);
+        if (strategy == Strategy.HASH) {
+            Map<String, GradeRecord> grades = gradeLoader.load(gradesFile);
+            System.out.println("Successfully read " + grades.size() + " grade records.\n");
+            hashJoin(studentsFile, grades, sinks);
+        } else {
+            sortMergeJoin(studentsFile, gradesFile, sinks);
+        }
+        return strategy;
+    }
+
+    /**
+     * Hash join: streams the student file past an in-memory grade map.
+     *
+     * @param studentsFile The name of the file containing student data
+     * @param grades Map of student ID to GradeRecord objects
+     * @param sinks Sinks that receive every graded student
+     * @return Number of students that were read and number of reports produced
+     * @throws IOException if the file cannot be read or a sink fails
+     */
+    static int[] hashJoin(String studentsFile, Map<String, GradeRecord> grades, List<ReportSink> sinks)
+            throws IOException {
+        System.out.println("Streaming student data from " + studentsFile + "...");
+
+        int studentCount = 0;
+        int reportCount = 0;
+        BufferedReader reader = new BufferedReader(new FileReader(studentsFile));
+        GradeRunMetrics.Phase phase = GradeRunMetrics.start("hashJoin", studentsFile);
+
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+
+                // Skip empty lines
+                if (line.isEmpty()) {
+                    continue;
+                }
+                phase.row();
+
+                Student student = Solution_StudentGradeManager.parseStudentLine(line);
+                if (student == null) {
+                    continue;
+                }
+                studentCount++;
+
+                GradeRecord gradeRecord = grades.get(student.getId());
+                if (emit(student, gradeRecord, sinks)) {
+                    reportCount++;
+                }
+            }
+        } finally {
+            reader.close();
+            phase.end();
+        }
+
+        for (ReportSink sink : sinks) {
+            sink.finish();
+        }
+        return new int[] {studentCount, reportCount};
+    }
+
+    /**
+     * Sort-merge join: both inputs in ID order, walked side by side.
+     */
+    private void sortMergeJoin(String studentsFile, String gradesFile, List<ReportSink> sinks) throws IOException {
+        try {
+            // Warnings are printed by the first pass over each file, in file order
+            System.out.println("Reading student data from " + studentsFile + "...");
+            boolean studentsSorted = checkSorted(studentsFile, STUDENTS);
+            System.out.println("Reading grade data from " + gradesFile + "...");
+            boolean gradesSorted = checkSorted(gradesFile, GRADES);
+
+            RowSource<StudentRow> students = studentsSorted ? new FileSource<>(studentsFile, STUDENTS)
+                                                            : sortIntoRuns(new FileSource<>(studentsFile, STUDENTS), STUDENTS);
+            RowSource<GradeRow> grades = gradesSorted ? new FileSource<>(gradesFile, GRADES)
+                                                      : sortIntoRuns(new FileSource<>(gradesFile, GRADES), GRADES);
+
+            // Joined students come out in ID order; put them back in file order
+            // unless ID order already is file order
+            RowSource<StudentRow> joined = mergeJoin(students, new LastPerId(grades));
+            if (!studentsSorted) {
+                joined = sortIntoRuns(joined, JOINED);
+            }
+
+            int studentCount = 0;
+            int reportCount = 0;
+            StudentRow row;
+            while ((row = joined.next()) != null) {
+                studentCount++;
+                if (emit(row.student, row.grades, sinks)) {
+                    reportCount++;
+                }
+            }
+            joined.close();
+
+            for (ReportSink sink : sinks) {
+                sink.finish();
+            }
+
+            System.out.println("Sort-merge joined " + studentCount + " student records into " + reportCount
+                               + " reports (" + runCount + " sorted runs spilled).\n");
+        } finally {
+            for (File file : tempFiles) {
+                file.delete();
+            }
+            tempFiles.clear();
+        }
+    }
+
+    /**
+     * Hands one joined student to the sinks, or warns if it has no grades.
+     *
+     * @return true if a report was produced
+     */
+    private static boolean emit(Student student, GradeRecord gradeRecord, List<ReportSink> sinks) throws IOException {
+        if (gradeRecord == null) {
+            GradeRunMetrics.reject(RejectReason.NO_GRADE_DATA, RejectReason.studentDetail(student));
+            return false;
+        }
+
+        double finalScore = Solution_StudentGradeManager.calculateFinalScore(gradeRecord);
+        String letterGrade = Solution_StudentGradeManager.getLetterGrade(finalScore);
+
+        // Feed every sink from the same pass
+        for (ReportSink sink : sinks) {
+            sink.accept(student, gradeRecord.getAssignmentScore(), gradeRecord.getMidtermScore(),
+                        gradeRecord.getFinalScore(), finalScore, letterGrade);
+        }
+        return true;
+    }
+
+    /**
+     * Reads a file once, printing its warnings, and reports whether its
+     * valid records are in non-decreasing ID order.
+     */
+    private static <R extends Row> boolean checkSorted(String filename, TextRowFormat<R> format) throws IOException {
+        boolean sorted = true;
+        String previousId = null;
+        FileSource<R> source = new FileSource<>(filename, format, true);
+        try {
+            R row;
+            while ((row = source.next()) != null) {
+                if (previousId != null && previousId.compareTo(row.id()) > 0) {
+                    sorted = false;
+                }
+                previousId = row.id();
+            }
+        } finally {
+            source.close();
+        }
+        return sorted;
+    }
+
+    /**
+     * Walks students and grades in ID order and pairs them up. Students
+     * without grades are kept (with null grades) so their warning can be
+     * printed in file order later.
+     */
+    private static RowSource<StudentRow> mergeJoin(RowSource<StudentRow> students, RowSource<GradeRow> grades) {
+        return new RowSource<StudentRow>() {
+            private GradeRow grade;
+            private boolean started = false;
+
+            @Override
+            public StudentRow next() throws IOException {
+                StudentRow student = students.next();
+                if (student == null) {
+                    return null;
+                }
+                if (!started) {
+                    grade = grades.next();
+                    started = true;
+                }
+                String id = student.id();
+                while (grade != null && grade.id().compareTo(id) < 0) {
+                    grade = grades.next();
+                }
+                student.grades = grade != null && grade.id().equals(id) ? grade.record : null;
+                return student;
+            }
+
+            @Override
+            public void close() throws IOException {
+                students.close();
+                grades.close();
+            }
+        };
+    }
+
+    /**
+     * Cuts a stream of records into budget-sized runs sorted by the format's
+     * order, spills each run to a temp file and returns a merge of the runs.
+     */
+    private <R extends Row> RowSource<R> sortIntoRuns(RowSource<R> input, RowFormat<R> format) throws IOException {
+        List<File> runs = new ArrayList<>();
+        List<R> buffer = new ArrayList<>();
+        long buffered = 0;
+
+        try {
+            R row;
+            while ((row = input.next()) != null) {
+                buffer.add(row);
+                buffered += row.footprint();
+                if (buffered >= memoryBudget) {
+                    runs.add(spill(buffer, format));
+                    buffer.clear();
+                    buffered = 0;
+                }
+            }
+        } finally {
+            input.close();
+        }
+
+        if (runs.isEmpty()) {
+            // Everything fit in memory, no need to touch the disk
+            buffer.sort(format);
+            return listSource(buffer);
+        }
+        if (!buffer.isEmpty()) {
+            runs.add(spill(buffer, format));
+            buffer.clear();
+        }
+
+        // Too many runs to open at once: merge them in groups first
+        while (runs.size() > MAX_MERGE_WIDTH) {
+            List<File> merged = new ArrayList<>();
+            for (int i = 0; i < runs.size(); i += MAX_MERGE_WIDTH) {
+                List<File> group = runs.subList(i, Math.min(runs.size(), i + MAX_MERGE_WIDTH));
+                merged.add(spill(new RunMerger<>(group, format, runBufferSize(group.size())), format));
+            }
+            runs = merged;
+        }
+        return new RunMerger<>(runs, format, runBufferSize(runs.size()));
+    }
+
+    private <R extends Row> File spill(List<R> rows, RowFormat<R> format) throws IOException {
+        rows.sort(format);
+        return spill(listSource(rows), format);
+    }
+
+    // Writes an already sorted stream of records to a new run file
+    private <R extends Row> File spill(RowSource<R> rows, RowFormat<R> format) throws IOException {
+        File run = File.createTempFile("grade-join-", ".run", tempDirectory);
+        tempFiles.add(run);
+        runCount++;
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 1 << 16));
+        try {
+            R row;
+            while ((row = rows.next()) != null) {
+                format.write(out, row);
+            }
+        } finally {
+            out.close();
+            rows.close();
+        }
+        return run;
+    }
+
+    private static <R> RowSource<R> listSource(List<R> rows) {
+        Iterator<R> iterator = rows.iterator();
+        return new RowSource<R>() {
+            @Override
+            public R next() {
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    // Split the budget over the runs being merged, within sensible limits
+    private int runBufferSize(int runs) {
+        long perRun = memoryBudget / Math.max(1, runs);
+        return (int) Math.max(MIN_RUN_BUFFER, Math.min(MAX_RUN_BUFFER, perRun));
+    }
+
+    // ---------------------------------------------------------------------
+    // Records, formats and sources
+    // ---------------------------------------------------------------------
+
+    /** A record with its student ID and the line number it came from. */
+    private interface Row {
+        String id();
+        long sequence();
+        long footprint();
+    }
+
+    /** A student, plus its grades once joined. */
+    private static final class StudentRow implements Row {
+        final long sequence;
+        final Student student;
+        GradeRecord grades;
+
+        StudentRow(long sequence, Student student, GradeRecord grades) {
+            this.sequence = sequence;
+            this.student = student;
+            this.grades = grades;
+        }
+
+        public String id() { return student.getId(); }
+        public long sequence() { return sequence; }
+        public long footprint() {
+            return ROW_OVERHEAD + 2L * (student.getId().length() + student.getName().length()
+                                        + student.getEmail().length());
+        }
+    }
+
+    /** One valid grade line. */
+    private static final class GradeRow implements Row {
+        final long sequence;
+        final GradeRecord record;
+
+        GradeRow(long sequence, GradeRecord record) {
+            this.sequence = sequence;
+            this.record = record;
+        }
+
+        public String id() { return record.getStudentId(); }
+        public long sequence() { return sequence; }
+        public long footprint() { return ROW_OVERHEAD + 2L * record.getStudentId().length(); }
+    }
+
+    /**
+     * How one kind of record is ordered and spilled to a run file.
+     */
+    private abstract static class RowFormat<R extends Row> implements Comparator<R> {
+        abstract void write(DataOutputStream out, R row) throws IOException;
+        abstract R read(DataInputStream in) throws IOException;
+
+        // ID order, then file order, so the last grade line for an ID comes last
+        @Override
+        public int compare(R a, R b) {
+            int byId = a.id().compareTo(b.id());
+            return byId != 0 ? byId : Long.compare(a.sequence(), b.sequence());
+        }
+    }
+
+    /**
+     * A record format that is also read from an input text file.
+     */
+    private abstract static class TextRowFormat<R extends Row> extends RowFormat<R> {
+        abstract R parse(long sequence, String line, boolean warn);
+    }
+
+    private static final TextRowFormat<StudentRow> STUDENTS = new TextRowFormat<StudentRow>() {
+        @Override
+        StudentRow parse(long sequence, String line, boolean warn) {
+            Student student = Solution_StudentGradeManager.parseStudentLine(line, warn);
+            return student != null ? new StudentRow(sequence, student, null) : null;
+        }
+
+        @Override
+        void write(DataOutputStream out, StudentRow row) throws IOException {
+            out.writeLong(row.sequence);
+            out.writeUTF(row.student.getId());
+            out.writeUTF(row.student.getName());
+            out.writeUTF(row.student.getEmail());
+        }
+
+        @Override
+        StudentRow read(DataInputStream in) throws IOException {
+            long sequence = in.readLong();
+            return new StudentRow(sequence, new Student(in.readUTF(), in.readUTF(), in.readUTF()), null);
+        }
+    };
+
+    private static final TextRowFormat<GradeRow> GRADES = new TextRowFormat<GradeRow>() {
+        @Override
+        GradeRow parse(long sequence, String line, boolean warn) {
+            GradeRecord record = Solution_StudentGradeManager.parseGradeLine(line, warn);
+            return record != null ? new GradeRow(sequence, record) : null;
+        }
+
+        @Override
+        void write(DataOutputStream out, GradeRow row) throws IOException {
+            out.writeLong(row.sequence);
+            out.writeUTF(row.record.getStudentId());
+            out.writeDouble(row.record.getAssignmentScore());
+            out.writeDouble(row.record.getMidtermScore());
+            out.writeDouble(row.record.getFinalScore());
+        }
+
+        @Override
+        GradeRow read(DataInputStream in) throws IOException {
+            long sequence = in.readLong();
+            return new GradeRow(sequence, new GradeRecord(in.readUTF(), in.readDouble(),
+                                                          in.readDouble(), in.readDouble()));
+        }
+    };
+
+    /** Joined students, ordered by their line in students.txt; only ever spilled. */
+    private static final RowFormat<StudentRow> JOINED = new RowFormat<StudentRow>() {
+        @Override
+        void write(DataOutputStream out, StudentRow row) throws IOException {
+            STUDENTS.write(out, row);
+            out.writeBoolean(row.grades != null);
+            if (row.grades != null) {
+                out.writeDouble(row.grades.getAssignmentScore());
+                out.writeDouble(row.grades.getMidtermScore());
+                out.writeDouble(row.grades.getFinalScore());
+            }
+        }
+
+        @Override
+        StudentRow read(DataInputStream in) throws IOException {
+            StudentRow row = STUDENTS.read(in);
+            if (in.readBoolean()) {
+                row.grades = new GradeRecord(row.id(), in.readDouble(), in.readDouble(), in.readDouble());
+            }
+            return row;
+        }
+
+        @Override
+        public int compare(StudentRow a, StudentRow b) {
+            return Long.compare(a.sequence, b.sequence);
+        }
+    };
+
+    /** A stream of records; next() returns null at the end. */
+    private interface RowSource<R> {
+        R next() throws IOException;
+        void close() throws IOException;
+    }
+
+    /** Valid records of a text file, in file order. */
+    private static final class FileSource<R extends Row> implements RowSource<R> {
+        private final BufferedReader reader;
+        private final TextRowFormat<R> format;
+        private final boolean warn;
+        private long sequence = 0;
+
+        FileSource(String filename, TextRowFormat<R> format) throws IOException {
+            this(filename, format, false);
+        }
+
+        FileSource(String filename, TextRowFormat<R> format, boolean warn) throws IOException {
+            this.reader = new BufferedReader(new FileReader(filename), 1 << 16);
+            this.format = format;
+            this.warn = warn;
+        }
+
+        @Override
+        public R next() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sequence++;
+                line = line.trim();
+
+                // Skip empty lines
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                R row = format.parse(sequence, line, warn);
+                if (row != null) {
+                    return row;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /** Keeps only the last grade record for each ID from an ID-ordered stream. */
+    private static final class LastPerId implements RowSource<GradeRow> {
+        private final RowSource<GradeRow> grades;
+        private GradeRow pending;
+        private boolean started = false;
+
+        LastPerId(RowSource<GradeRow> grades) {
+            this.grades = grades;
+        }
+
+        @Override
+        public GradeRow next() throws IOException {
+            if (!started) {
+                pending = grades.next();
+                started = true;
+            }
+            GradeRow last = pending;
+            if (last == null) {
+                return null;
+            }
+            pending = grades.next();
+            while (pending != null && pending.id().equals(last.id())) {
+                last = pending;
+                pending = grades.next();
+            }
+            return last;
+        }
+
+        @Override
+        public void close() throws IOException {
+            grades.close();
+        }
+    }
+
+    /** K-way merge of spilled runs. */
+    private static final class RunMerger<R extends Row> implements RowSource<R> {
+        private final RowFormat<R> format;
+        private final PriorityQueue<RunCursor<R>> heap;
+        private final List<RunCursor<R>> cursors = new ArrayList<>();
+
+        RunMerger(List<File> runs, RowFormat<R> format, int bufferSize) throws IOException {
+            this.format = format;
+            this.heap = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> format.compare(a.head, b.head));
+            for (File run : runs) {
+                RunCursor<R> cursor = new RunCursor<>(run, format, bufferSize);
+                cursors.add(cursor);
+                if (cursor.advance()) {
+                    heap.add(cursor);
+                }
+            }
+        }
+
+        @Override
+        public R next() throws IOException {
+            RunCursor<R> cursor = heap.poll();
+            if (cursor == null) {
+                return null;
+            }
+            R row = cursor.head;
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+            return row;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (RunCursor<R> cursor : cursors) {
+                cursor.in.close();
+            }
+        }
+    }
+
+    private static final class RunCursor<R extends Row> {
+        final DataInputStream in;
+        final RowFormat<R> format;
+        R head;
+
+        RunCursor(File run, RowFormat<R> format, int bufferSize) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), bufferSize));
+            this.format = format;
+        }
+
+        boolean advance() throws IOException {
+            try {
+                head = format.read(in);
+                return true;
+            } catch (EOFException e) {
+                head = null;
+                in.close();
+                return false;
+            }
+        }
+    }
+}
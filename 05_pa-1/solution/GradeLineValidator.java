@@ -0,0 +1,99 @@
+/**
+ * GradeLineValidator holds the checks every grade loader applies to a line:
+ * the student ID plus exactly one field per score component, every score a
+ * number, and every score within 0-100. A line that fails is reported with
+ * the RejectReason of the first check it fails, in that order.
+ *
+ * The validator only decides; each loader reports the rejected line through
+ * its own path (printed, collected per chunk, or written to a section log)
+ * and takes the ID from the line itself. The scores of the last line that
+ * passed are kept in the validator, so checking a line allocates nothing.
+ */
+class GradeLineValidator {
+    // Assignment, midterm and final exam, as in grades.txt
+    static final int STANDARD_COMPONENTS = 3;
+
+    private final double[] scores;
+
+    /**
+     * Creates a validator for grades.txt lines.
+     */
+    public GradeLineValidator() {
+        this(STANDARD_COMPONENTS);
+    }
+
+    /**
+     * Creates a validator for lines with the given number of scores.
+     *
+     * @param components Number of score fields after the ID
+     */
+    public GradeLineValidator(int components) {
+        scores = new double[components];
+    }
+
+    /**
+     * Checks the reader's current line.
+     *
+     * @param reader A reader positioned on a line
+     * @return null if the line is valid (its scores are then available from
+     *         score()), otherwise why it was rejected
+     */
+    public RejectReason check(MappedCsvReader reader) {
+        if (reader.fieldCount() != scores.length + 1) {
+            return RejectReason.INVALID_GRADE_LINE_FORMAT;
+        }
+        try {
+            for (int c = 0; c < scores.length; c++) {
+                scores[c] = reader.fieldDouble(c + 1);
+            }
+        } catch (NumberFormatException e) {
+            return RejectReason.INVALID_NUMBER_FORMAT;
+        }
+        return checkRange();
+    }
+
+    /**
+     * Checks a line that was already split on commas, for loaders that read
+     * with Scanner or BufferedReader.
+     *
+     * @param parts The fields of the line, untrimmed
+     * @return null if the line is valid, otherwise why it was rejected
+     */
+    public RejectReason check(String[] parts) {
+        if (parts.length != scores.length + 1) {
+            return RejectReason.INVALID_GRADE_LINE_FORMAT;
+        }
+        try {
+            for (int c = 0; c < scores.length; c++) {
+                scores[c] = Double.parseDouble(parts[c + 1].trim());
+            }
+        } catch (NumberFormatException e) {
+            return RejectReason.INVALID_NUMBER_FORMAT;
+        }
+        return checkRange();
+    }
+
+    /**
+     * @param component Index of the score component (0 = assignment for grades.txt)
+     * @return That score from the last line that passed
+     */
+    public double score(int component) {
+        return scores[component];
+    }
+
+    /**
+     * @return The scores of the last line that passed; reused for the next line
+     */
+    double[] scores() {
+        return scores;
+    }
+
+    private RejectReason checkRange() {
+        for (double score : scores) {
+            if (score < 0 || score > 100) {
+                return RejectReason.INVALID_SCORE_RANGE;
+            }
+        }
+        return null;
+    }
+}
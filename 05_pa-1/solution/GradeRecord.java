@@ -0,0 +1,30 @@
+/**
+ * GradeRecord class to represent student grades
+ */
+class GradeRecord {
+    private String studentId;
+    private double assignmentScore;
+    private double midtermScore;
+    private double finalScore;
+    
+    public GradeRecord(String studentId, double assignmentScore, double midtermScore, double finalScore) {
+        this.studentId = studentId;
+        this.assignmentScore = assignmentScore;
+        this.midtermScore = midtermScore;
+        this.finalScore = finalScore;
+    }
+    
+    // Getters
+    public String getStudentId() { return studentId; }
+    public double getAssignmentScore() { return assignmentScore; }
+    public double getMidtermScore() { return midtermScore; }
+    public double getFinalScore() { return finalScore; }
+    
+    @Override
+    public String toString() {
+        return "GradeRecord{studentId='" + studentId + 
+               "', assignment=" + assignmentScore + 
+               ", midterm=" + midtermScore + 
+               ", final=" + finalScore + "}";
+    }
+}
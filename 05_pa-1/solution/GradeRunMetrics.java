@@ -0,0 +1,416 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import jdk.jfr.*;
+
+/**
+ * GradeRunMetrics collects timings and counters for one grading run.
+ *
+ * Each reader, the grade calculation and each report writer runs as a
+ * Phase: it is started with the file it reads (if any), counts its rows as
+ * it goes and is ended when done. Phases with the same name are added up,
+ * so a writer called once per section still shows as one line. For every
+ * phase the run keeps the call count, total time, rows, bytes read and a
+ * latency histogram; rows/sec and bytes/sec are worked out from those.
+ *
+ * Latency is sampled per batch: the reading and grading phases take one
+ * sample every ROW_BATCH rows (the batch time divided by its rows), report
+ * writers take one sample per report. A sample costs one System.nanoTime,
+ * so collection stays on in every run.
+ *
+ * Rejected lines are counted by RejectReason through reject(), which also
+ * prints the warning, or with --async-warnings hands it to an
+ * AsyncWarningLog. Each phase flushes that log when it ends, so warnings
+ * still come out within the phase that found them.
+ *
+ * Results are written as JSON with --metrics FILE, and each phase is also
+ * committed as a GradePhaseEvent (plus one GradeRejectsEvent per reason at
+ * the end), so a run started with -XX:StartFlightRecording shows them in
+ * JDK Flight Recorder next to GC and I/O events.
+ */
+class GradeRunMetrics {
+    // Rows per latency sample in the reading and grading phases
+    static final int ROW_BATCH = 1024;
+
+    private static final long START_NANOS = System.nanoTime();
+    private static final AtomicLongArray rejected = new AtomicLongArray(RejectReason.values().length);
+    private static final Map<String, PhaseTotals> phases = new LinkedHashMap<>();
+    private static volatile AsyncWarningLog warningLog = null;
+
+    private GradeRunMetrics() {
+    }
+
+    /**
+     * Starts a phase that reads a file, sampling latency every ROW_BATCH rows.
+     *
+     * @param name The phase name, usually the method doing the work
+     * @param file The file being read (its size is counted as the phase's bytes)
+     * @return The running phase
+     */
+    static Phase start(String name, String file) {
+        return new Phase(name, new File(file).length(), ROW_BATCH);
+    }
+
+    /**
+     * Starts a phase that reads no file.
+     *
+     * @param name The phase name
+     * @param batchSize Rows per latency sample (1 for one sample per row)
+     * @return The running phase
+     */
+    static Phase start(String name, int batchSize) {
+        return new Phase(name, 0, batchSize);
+    }
+
+    /**
+     * Sends warnings meant for System.out to an AsyncWarningLog from now on.
+     * The log is closed (printing its summary) by finish().
+     *
+     * @param log The log to use
+     */
+    static void useAsyncWarnings(AsyncWarningLog log) {
+        warningLog = log;
+    }
+
+    /**
+     * Counts a rejection and prints its warning to System.out.
+     *
+     * @param reason Why the line or student was rejected
+     * @param detail The rejected line (see RejectReason.warning)
+     */
+    static void reject(RejectReason reason, String detail) {
+        reject(reason, detail, System.out);
+    }
+
+    /**
+     * Counts a rejection and prints its warning to the given log.
+     *
+     * @param reason Why the line or student was rejected
+     * @param detail The rejected line (see RejectReason.warning)
+     * @param log Where to print the warning
+     */
+    static void reject(RejectReason reason, String detail, PrintStream log) {
+        rejected.incrementAndGet(reason.ordinal());
+        AsyncWarningLog async = warningLog;
+        if (async != null && log == System.out) {
+            async.warn(reason, detail);
+        } else {
+            log.println(reason.warning(detail));
+        }
+    }
+
+    /**
+     * @param reason A rejection reason
+     * @return Number of rejections counted for the reason so far
+     */
+    static long getRejected(RejectReason reason) {
+        return rejected.get(reason.ordinal());
+    }
+
+    /**
+     * Ends the run: closes the AsyncWarningLog if there is one, commits the
+     * rejection counts to Flight Recorder and, if a file is given, writes
+     * the JSON summary.
+     *
+     * @param jsonFile Where to write the JSON summary, or null for none
+     * @throws IOException if the summary cannot be written
+     */
+    static void finish(String jsonFile) throws IOException {
+        AsyncWarningLog async = warningLog;
+        if (async != null) {
+            warningLog = null;
+            async.close();
+        }
+        for (RejectReason reason : RejectReason.values()) {
+            long count = getRejected(reason);
+            if (count > 0) {
+                GradeRejectsEvent event = new GradeRejectsEvent();
+                event.reason = reason.name();
+                event.count = count;
+                event.commit();
+            }
+        }
+        if (jsonFile != null) {
+            writeJson(new File(jsonFile));
+        }
+    }
+
+    /**
+     * Writes every phase and the rejection counts as one JSON object.
+     *
+     * @param file Where to write the summary
+     * @throws IOException if the file cannot be written
+     */
+    static void writeJson(File file) throws IOException {
+        PrintStream out = new PrintStream(file, "UTF-8");
+
+        try {
+            out.println("{");
+            out.printf(Locale.ROOT, "  \"totalMillis\": %.3f,%n", (System.nanoTime() - START_NANOS) / 1e6);
+            out.println("  \"phases\": [");
+            List<PhaseTotals> totals;
+            synchronized (phases) {
+                totals = new ArrayList<>(phases.values());
+            }
+            for (int i = 0; i < totals.size(); i++) {
+                totals.get(i).writeJson(out);
+                out.println(i + 1 < totals.size() ? "," : "");
+            }
+            out.println("  ],");
+
+            long total = 0;
+            out.println("  \"rejectedLines\": {");
+            RejectReason[] reasons = RejectReason.values();
+            for (int i = 0; i < reasons.length; i++) {
+                long count = getRejected(reasons[i]);
+                total += count;
+                out.printf("    \"%s\": %d%s%n", reasons[i].name(), count, i + 1 < reasons.length ? "," : "");
+            }
+            out.println("  },");
+            out.printf("  \"rejectedTotal\": %d%n", total);
+            out.println("}");
+
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Adds a finished phase to the totals for its name.
+     */
+    private static void record(Phase phase) {
+        synchronized (phases) {
+            phases.computeIfAbsent(phase.name, PhaseTotals::new).add(phase);
+        }
+    }
+
+    /**
+     * One running phase. A phase is used by one thread at a time.
+     */
+    static class Phase {
+        private final String name;
+        private final long bytes;
+        private final int batchSize;
+        private final long startNanos;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final GradePhaseEvent event = new GradePhaseEvent();
+
+        private long rows;
+        private long batchStart;
+        private int batchRows;
+        private long elapsedNanos;
+
+        // Set once rows are timed by the caller; the phase then counts their time only
+        private boolean callerTimed;
+        private long timedNanos;
+
+        private Phase(String name, long bytes, int batchSize) {
+            this.name = name;
+            this.bytes = bytes;
+            this.batchSize = batchSize;
+            event.begin();
+            startNanos = System.nanoTime();
+            batchStart = startNanos;
+        }
+
+        /**
+         * Counts one row, taking a latency sample when a batch is complete.
+         */
+        void row() {
+            rows++;
+            if (++batchRows == batchSize) {
+                long now = System.nanoTime();
+                latency.record((now - batchStart) / batchRows);
+                batchStart = now;
+                batchRows = 0;
+            }
+        }
+
+        /**
+         * Counts one row the caller timed itself, for work that is spread
+         * over a run (a report sink is called between other steps). The
+         * phase's time is then the sum of its rows, not the wall time.
+         *
+         * @param nanos Time spent on the row
+         */
+        void row(long nanos) {
+            rows++;
+            latency.record(nanos);
+            time(nanos);
+        }
+
+        /**
+         * Adds time the caller measured that belongs to no single row (for
+         * example flushing at the end).
+         *
+         * @param nanos Time spent
+         */
+        void time(long nanos) {
+            callerTimed = true;
+            timedNanos += nanos;
+        }
+
+        /**
+         * Counts rows processed elsewhere (for example by worker threads)
+         * along with the time they took.
+         *
+         * @param count Number of rows
+         * @param nanos Time spent on them
+         */
+        void rows(long count, long nanos) {
+            rows += count;
+            if (count > 0) {
+                latency.record(nanos / count);
+            }
+        }
+
+        /**
+         * Ends the phase and adds it to the run's totals.
+         */
+        void end() {
+            long now = System.nanoTime();
+            if (batchRows > 0) {
+                latency.record((now - batchStart) / batchRows);
+                batchRows = 0;
+            }
+            elapsedNanos = callerTimed ? timedNanos : now - startNanos;
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = name;
+                event.rows = rows;
+                event.bytes = bytes;
+                event.commit();
+            }
+            record(this);
+
+            AsyncWarningLog async = warningLog;
+            if (async != null) {
+                async.flush();
+            }
+        }
+    }
+
+    /**
+     * Everything recorded for one phase name.
+     */
+    private static class PhaseTotals {
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private long calls;
+        private long nanos;
+        private long rows;
+        private long bytes;
+
+        PhaseTotals(String name) {
+            this.name = name;
+        }
+
+        void add(Phase phase) {
+            calls++;
+            nanos += phase.elapsedNanos;
+            rows += phase.rows;
+            bytes += phase.bytes;
+            latency.add(phase.latency);
+        }
+
+        void writeJson(PrintStream out) {
+            double seconds = Math.max(1, nanos) / 1e9;
+            out.println("    {");
+            out.printf("      \"name\": \"%s\",%n", name);
+            out.printf("      \"calls\": %d,%n", calls);
+            out.printf(Locale.ROOT, "      \"millis\": %.3f,%n", nanos / 1e6);
+            out.printf("      \"rows\": %d,%n", rows);
+            out.printf("      \"bytes\": %d,%n", bytes);
+            out.printf(Locale.ROOT, "      \"rowsPerSecond\": %.1f,%n", rows / seconds);
+            out.printf(Locale.ROOT, "      \"bytesPerSecond\": %.1f,%n", bytes / seconds);
+            out.printf("      \"latencyNanosPerRow\": {\"samples\": %d, \"p50\": %d, \"p90\": %d, " +
+                       "\"p99\": %d, \"max\": %d}%n",
+                       latency.getCount(), latency.percentile(0.50), latency.percentile(0.90),
+                       latency.percentile(0.99), latency.getMax());
+            out.print("    }");
+        }
+    }
+
+    /**
+     * Latency histogram with one bucket per power of two, so recording is a
+     * single increment and percentiles are exact to within a factor of two.
+     */
+    static class LatencyHistogram {
+        // Bucket b holds values of bit length b: 0, 1, 2-3, 4-7, ...
+        private final long[] buckets = new long[64];
+        private long count;
+        private long max;
+
+        void record(long nanos) {
+            nanos = Math.max(0, nanos);
+            buckets[64 - Long.numberOfLeadingZeros(nanos)]++;
+            count++;
+            max = Math.max(max, nanos);
+        }
+
+        void add(LatencyHistogram other) {
+            for (int b = 0; b < buckets.length; b++) {
+                buckets[b] += other.buckets[b];
+            }
+            count += other.count;
+            max = Math.max(max, other.max);
+        }
+
+        /**
+         * @param fraction Percentile as a fraction, for example 0.99
+         * @return Upper bound of the bucket holding that percentile (capped
+         *         at the largest value seen), or 0 if nothing was recorded
+         */
+        long percentile(double fraction) {
+            long target = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int b = 0; b < buckets.length; b++) {
+                seen += buckets[b];
+                if (seen >= Math.max(1, target)) {
+                    long upper = b == 0 ? 0 : b == 63 ? Long.MAX_VALUE : (1L << b) - 1;
+                    return Math.min(upper, max);
+                }
+            }
+            return 0;
+        }
+
+        long getCount() { return count; }
+        long getMax() { return max; }
+    }
+}
+
+/**
+ * Flight Recorder event for one phase of a grading run.
+ */
+@Name("gradeManager.Phase")
+@Label("Grade Phase")
+@Category("Grade Manager")
+@Description("One reader, grade calculation or report writer call")
+class GradePhaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Bytes Read")
+    @DataAmount
+    long bytes;
+}
+
+/**
+ * Flight Recorder event with the number of rejections for one reason,
+ * committed once at the end of a run.
+ */
+@Name("gradeManager.Rejects")
+@Label("Rejected Lines")
+@Category("Grade Manager")
+@Description("Lines or students left out of the reports, by reason")
+class GradeRejectsEvent extends Event {
+    @Label("Reason")
+    String reason;
+
+    @Label("Count")
+    long count;
+}
@@ -0,0 +1,162 @@
+/**
+ * Command-line options for Solution_StudentGradeManager.
+ *
+ *   --stream       join the two files record by record instead of loading
+ *                  every student and report into memory first
+ *   --mapped       read the input files through a memory-mapped reader
+ *                  instead of Scanner
+ *   --parallel     read grades.txt on all cores (implies the mapped reader)
+ *   --columnar     keep grades in a ColumnarGradeStore instead of a map of
+ *                  GradeRecord objects (uses the mapped reader)
+ *   --compact      keep students and grades in a CompactGradeBook (numeric
+ *                  ID keys, names and emails in a shared byte arena)
+ *   --segmented    write the individual reports into a few large segment
+ *                  files with an index, instead of one file per student
+ *   --async        write the summary, individual and distribution reports
+ *                  concurrently, each on its own thread
+ *   --memory-budget SIZE
+ *                  grade within SIZE bytes of heap (suffix k, m or g),
+ *                  choosing a hash join or an external sort-merge join
+ *   --snapshot FILE
+ *                  load students and grades from a GradeSnapshot instead of
+ *                  parsing the text files (not with --stream, --compact or
+ *                  --memory-budget, which read the text files themselves)
+ *   --report ID    print one student's report from the segment files and exit
+ *   --state FILE   save an IncrementalGradeState snapshot after the run
+ *                  (not with --stream, --columnar, --compact or
+ *                  --memory-budget, which never hold the whole roster
+ *                  with its grades in the form the state is built from)
+ *   --delta FILE   apply a change-log of grade lines to the --state snapshot
+ *                  instead of reading the input files again; the reports
+ *                  are updated in the layout the snapshot was saved with
+ *                  (segment files if that run used --segmented)
+ *   --async-warnings
+ *                  print rejected-line warnings from a background thread,
+ *                  at most --warning-rate per reason per second, with a
+ *                  per-reason summary at the end
+ *   --warning-rate N
+ *                  warnings shown per reason per second with
+ *                  --async-warnings (default 100)
+ *   --metrics FILE write phase timings, throughput, latency histograms and
+ *                  rejected-line counts to FILE as JSON (see GradeRunMetrics)
+ */
+class GradeRunOptions {
+    // Prefix of the segment and index files written with --segmented
+    static final String SEGMENT_BASE_NAME = "student_reports";
+
+    private boolean streaming = false;
+    private boolean mapped = false;
+    private boolean parallel = false;
+    private boolean columnar = false;
+    private boolean compact = false;
+    private boolean segmented = false;
+    private boolean async = false;
+    private String reportLookupId = null;
+    private String snapshotFile = null;
+    private long memoryBudget = 0;
+    private String stateFile = null;
+    private String deltaFile = null;
+    private String metricsFile = null;
+    private boolean asyncWarnings = false;
+    private int warningRate = 100;
+
+    /**
+     * Parses the command line. Unknown options are reported and ignored.
+     *
+     * @param args Command-line arguments
+     * @return The parsed options
+     * @throws IllegalArgumentException if the options cannot be used together
+     */
+    public static GradeRunOptions parse(String[] args) {
+        GradeRunOptions options = new GradeRunOptions();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--stream")) {
+                options.streaming = true;
+            } else if (arg.equals("--mapped")) {
+                options.mapped = true;
+            } else if (arg.equals("--parallel")) {
+                options.parallel = true;
+            } else if (arg.equals("--columnar")) {
+                options.columnar = true;
+            } else if (arg.equals("--compact")) {
+                options.compact = true;
+            } else if (arg.equals("--segmented")) {
+                options.segmented = true;
+            } else if (arg.equals("--async")) {
+                options.async = true;
+            } else if (arg.equals("--report") && i + 1 < args.length) {
+                options.reportLookupId = args[++i];
+            } else if (arg.equals("--memory-budget") && i + 1 < args.length) {
+                options.memoryBudget = parseSize(args[++i]);
+            } else if (arg.equals("--snapshot") && i + 1 < args.length) {
+                options.snapshotFile = args[++i];
+            } else if (arg.equals("--state") && i + 1 < args.length) {
+                options.stateFile = args[++i];
+            } else if (arg.equals("--delta") && i + 1 < args.length) {
+                options.deltaFile = args[++i];
+            } else if (arg.equals("--async-warnings")) {
+                options.asyncWarnings = true;
+            } else if (arg.equals("--warning-rate") && i + 1 < args.length) {
+                options.warningRate = (int) Math.min(Integer.MAX_VALUE, parseSize(args[++i]));
+            } else if (arg.equals("--metrics") && i + 1 < args.length) {
+                options.metricsFile = args[++i];
+            } else {
+                System.out.println("Warning: Unknown option - " + arg);
+            }
+        }
+        if (options.snapshotFile != null && (options.streaming || options.compact || options.memoryBudget > 0)) {
+            throw new IllegalArgumentException("--snapshot cannot be combined with --stream, --compact or --memory-budget");
+        }
+        if (options.stateFile != null
+                && (options.streaming || options.columnar || options.compact || options.memoryBudget > 0)) {
+            throw new IllegalArgumentException(
+                "--state cannot be combined with --stream, --columnar, --compact or --memory-budget");
+        }
+        return options;
+    }
+
+    /**
+     * Parses a byte count such as 512k, 64m or 2g.
+     *
+     * @param size The size text
+     * @return The size in bytes, or 0 if it is not a valid size
+     */
+    static long parseSize(String size) {
+        String digits = size.trim().toLowerCase();
+        long unit = 1;
+        if (digits.endsWith("k")) {
+            unit = 1L << 10;
+        } else if (digits.endsWith("m")) {
+            unit = 1L << 20;
+        } else if (digits.endsWith("g")) {
+            unit = 1L << 30;
+        }
+        if (unit != 1) {
+            digits = digits.substring(0, digits.length() - 1);
+        }
+        try {
+            return Math.max(0, Long.parseLong(digits) * unit);
+        } catch (NumberFormatException e) {
+            System.out.println("Warning: Invalid size - " + size);
+            return 0;
+        }
+    }
+
+    // Getters
+    public boolean isStreaming() { return streaming; }
+    public boolean isMapped() { return mapped; }
+    public boolean isParallel() { return parallel; }
+    public boolean isColumnar() { return columnar; }
+    public boolean isCompact() { return compact; }
+    public boolean isSegmented() { return segmented; }
+    public boolean isAsync() { return async; }
+    public String getReportLookupId() { return reportLookupId; }
+    public long getMemoryBudget() { return memoryBudget; }
+    public String getSnapshotFile() { return snapshotFile; }
+    public String getStateFile() { return stateFile; }
+    public String getDeltaFile() { return deltaFile; }
+    public String getMetricsFile() { return metricsFile; }
+    public boolean isAsyncWarnings() { return asyncWarnings; }
+    public int getWarningRate() { return warningRate; }
+}
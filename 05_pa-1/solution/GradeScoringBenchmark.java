@@ -0,0 +1,77 @@
+import java.util.*;
+
+/**
+ * Micro-benchmark: per-object grading loop vs. the bulk array path.
+ *
+ * The per-object loop is what calculateFinalGrades does for every student:
+ * read the three scores through GradeRecord getters, apply the weights and
+ * pick a letter with getLetterGrade. The bulk path runs calculateFinalScores
+ * and calculateLetterBuckets over parallel double[] columns.
+ *
+ * Usage: java GradeScoringBenchmark [students] [rounds]
+ */
+public class GradeScoringBenchmark {
+    public static void main(String[] args) {
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        // Same random grades in both layouts
+        Random random = new Random(105);
+        GradeRecord[] records = new GradeRecord[students];
+        double[] assignment = new double[students];
+        double[] midterm = new double[students];
+        double[] finalExam = new double[students];
+        for (int i = 0; i < students; i++) {
+            assignment[i] = random.nextInt(1001) / 10.0;
+            midterm[i] = random.nextInt(1001) / 10.0;
+            finalExam[i] = random.nextInt(1001) / 10.0;
+            records[i] = new GradeRecord(String.valueOf(i), assignment[i], midterm[i], finalExam[i]);
+        }
+        double[] finalScores = new double[students];
+        byte[] buckets = new byte[students];
+        String[] letters = new String[students];
+
+        // Make sure both paths agree before timing them
+        perObject(records, finalScores, letters);
+        Solution_StudentGradeManager.calculateFinalScores(assignment, midterm, finalExam, finalScores, students);
+        Solution_StudentGradeManager.calculateLetterBuckets(finalScores, buckets, students);
+        for (int i = 0; i < students; i++) {
+            if (!letters[i].equals(Solution_StudentGradeManager.LETTERS_BY_BUCKET[buckets[i]])) {
+                throw new IllegalStateException("Paths disagree for student " + i);
+            }
+        }
+
+        System.out.println("Students: " + students + ", rounds: " + rounds);
+        long perObjectBest = Long.MAX_VALUE;
+        long bulkBest = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            perObject(records, finalScores, letters);
+            perObjectBest = Math.min(perObjectBest, System.nanoTime() - start);
+            checksum += letters[round].length();
+
+            start = System.nanoTime();
+            Solution_StudentGradeManager.calculateFinalScores(assignment, midterm, finalExam, finalScores, students);
+            Solution_StudentGradeManager.calculateLetterBuckets(finalScores, buckets, students);
+            bulkBest = Math.min(bulkBest, System.nanoTime() - start);
+            checksum += buckets[round];
+        }
+
+        System.out.printf("Per-object loop: %8.2f ms (%.2f ns/student)%n",
+                          perObjectBest / 1e6, (double) perObjectBest / students);
+        System.out.printf("Bulk arrays:     %8.2f ms (%.2f ns/student)%n",
+                          bulkBest / 1e6, (double) bulkBest / students);
+        System.out.printf("Speedup:         %8.2fx%n", (double) perObjectBest / bulkBest);
+        System.out.println("(checksum " + checksum + ")");
+    }
+
+    // The per-student loop used by calculateFinalGrades
+    private static void perObject(GradeRecord[] records, double[] finalScores, String[] letters) {
+        for (int i = 0; i < records.length; i++) {
+            double finalScore = Solution_StudentGradeManager.calculateFinalScore(records[i]);
+            finalScores[i] = finalScore;
+            letters[i] = Solution_StudentGradeManager.getLetterGrade(finalScore);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * GradeSnapshot is a compact binary copy of the parsed student and grade
+ * data, so later runs can skip parsing students.txt and grades.txt.
+ *
+ * Layout (big-endian):
+ *
+ *     header      magic, version, student count, grade count,
+ *                 string count, string bytes, CRC32 of everything below
+ *     grades      assignment, midterm and final scores as three double[]
+ *                 columns, then the student ID of each row as an int[]
+ *                 column of string numbers
+ *     students    id, name and email string numbers, three ints per student
+ *     strings     int[] start offsets (plus one end offset), then the
+ *                 UTF-8 bytes of every distinct string
+ *
+ * Each distinct string is stored once, so a student ID that appears in both
+ * files costs one dictionary entry. The snapshot holds the data after
+ * validation: the students in file order (duplicates included) and one row
+ * per graded student with the last valid line winning, so loading it gives
+ * the same results as reading the text files.
+ *
+ * A snapshot saves parsing and validation, not memory: load() decodes every
+ * student and grade row up front, so the loaded data takes as much heap as
+ * reading the text files. The file is written and read through a single
+ * mapped buffer with int offsets, which limits a snapshot to 2 GB; write()
+ * refuses larger data.
+ *
+ * Usage: java GradeSnapshot students.txt grades.txt grades.snap
+ */
+public class GradeSnapshot {
+    private static final int MAGIC = 0x47534E42; // "GSNB"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private final Student[] students;
+    private final String[] gradeIds;
+    private final double[] assignmentScores;
+    private final double[] midtermScores;
+    private final double[] finalScores;
+
+    private GradeSnapshot(Student[] students, String[] gradeIds, double[] assignmentScores,
+                          double[] midtermScores, double[] finalScores) {
+        this.students = students;
+        this.gradeIds = gradeIds;
+        this.assignmentScores = assignmentScores;
+        this.midtermScores = midtermScores;
+        this.finalScores = finalScores;
+    }
+
+    /**
+     * Converts the text files to a snapshot.
+     *
+     * @param args students file, grades file, snapshot file
+     */
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.out.println("Usage: java GradeSnapshot students.txt grades.txt grades.snap");
+            return;
+        }
+
+        try {
+            long start = System.nanoTime();
+            List<Student> students = Solution_StudentGradeManager.readStudentData(args[0]);
+            Map<String, GradeRecord> grades = Solution_StudentGradeManager.readGradeData(args[1]);
+            long written = write(students, grades, args[2]);
+            System.out.printf("Wrote %d students and %d grade records to %s (%d bytes) in %d ms%n",
+                              students.size(), grades.size(), args[2], written,
+                              (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a snapshot of parsed student and grade data.
+     *
+     * @param students Students in file order
+     * @param grades Grade records by student ID
+     * @param filename Where to write the snapshot
+     * @return Size of the snapshot in bytes
+     * @throws IOException if the file cannot be written or would be too large
+     */
+    public static long write(List<Student> students, Map<String, GradeRecord> grades, String filename)
+            throws IOException {
+        // Build the string dictionary
+        Map<String, Integer> numbers = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        long stringBytes = 0;
+
+        int[] studentStrings = new int[students.size() * 3];
+        int i = 0;
+        for (Student student : students) {
+            studentStrings[i++] = intern(student.getId(), numbers, strings);
+            studentStrings[i++] = intern(student.getName(), numbers, strings);
+            studentStrings[i++] = intern(student.getEmail(), numbers, strings);
+        }
+
+        int gradeCount = grades.size();
+        int[] gradeStrings = new int[gradeCount];
+        i = 0;
+        for (GradeRecord record : grades.values()) {
+            gradeStrings[i++] = intern(record.getStudentId(), numbers, strings);
+        }
+
+        for (byte[] string : strings) {
+            stringBytes += string.length;
+        }
+
+        long size = HEADER_SIZE
+                  + 28L * gradeCount
+                  + 12L * students.size()
+                  + 4L * (strings.size() + 1) + stringBytes;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot would be " + size + " bytes, more than the 2 GB limit");
+        }
+
+        Files.deleteIfExists(Paths.get(filename));
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE_NEW,
+                                                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.order(ByteOrder.BIG_ENDIAN);
+            out.position(HEADER_SIZE);
+
+            // Fixed-width score columns
+            for (GradeRecord record : grades.values()) {
+                out.putDouble(record.getAssignmentScore());
+            }
+            for (GradeRecord record : grades.values()) {
+                out.putDouble(record.getMidtermScore());
+            }
+            for (GradeRecord record : grades.values()) {
+                out.putDouble(record.getFinalScore());
+            }
+            out.asIntBuffer().put(gradeStrings);
+            out.position(out.position() + 4 * gradeCount);
+
+            out.asIntBuffer().put(studentStrings);
+            out.position(out.position() + 4 * studentStrings.length);
+
+            // String dictionary
+            int offset = 0;
+            for (byte[] string : strings) {
+                out.putInt(offset);
+                offset += string.length;
+            }
+            out.putInt(offset);
+            for (byte[] string : strings) {
+                out.put(string);
+            }
+
+            out.position(0);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(students.size());
+            out.putInt(gradeCount);
+            out.putInt(strings.size());
+            out.putInt((int) stringBytes);
+            out.putLong(checksum(out, (int) size));
+            out.force();
+        }
+        return size;
+    }
+
+    /**
+     * Reads a snapshot and decodes all of it into students and grade columns.
+     *
+     * @param filename The snapshot file
+     * @return The loaded snapshot
+     * @throws IOException if the file cannot be read, is not a snapshot or fails its checksum
+     */
+    public static GradeSnapshot load(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException(filename + " is not a grade snapshot");
+            }
+
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            in.order(ByteOrder.BIG_ENDIAN);
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException(filename + " is not a grade snapshot");
+            }
+            int studentCount = in.getInt();
+            int gradeCount = in.getInt();
+            int stringCount = in.getInt();
+            int stringBytes = in.getInt();
+            long expectedChecksum = in.getLong();
+
+            long expectedSize = HEADER_SIZE + 28L * gradeCount + 12L * studentCount
+                              + 4L * (stringCount + 1) + stringBytes;
+            if (studentCount < 0 || gradeCount < 0 || stringCount < 0 || stringBytes < 0 || expectedSize != size) {
+                throw new IOException(filename + " is truncated or corrupt");
+            }
+            if (checksum(in, (int) size) != expectedChecksum) {
+                throw new IOException(filename + " failed its checksum");
+            }
+
+            // Score columns
+            in.position(HEADER_SIZE);
+            double[] assignmentScores = new double[gradeCount];
+            double[] midtermScores = new double[gradeCount];
+            double[] finalScores = new double[gradeCount];
+            in.asDoubleBuffer().get(assignmentScores);
+            in.position(in.position() + 8 * gradeCount);
+            in.asDoubleBuffer().get(midtermScores);
+            in.position(in.position() + 8 * gradeCount);
+            in.asDoubleBuffer().get(finalScores);
+            in.position(in.position() + 8 * gradeCount);
+
+            int[] gradeStrings = new int[gradeCount];
+            in.asIntBuffer().get(gradeStrings);
+            in.position(in.position() + 4 * gradeCount);
+
+            int[] studentStrings = new int[studentCount * 3];
+            in.asIntBuffer().get(studentStrings);
+            in.position(in.position() + 4 * studentStrings.length);
+
+            // Decode every distinct string once
+            int[] offsets = new int[stringCount + 1];
+            in.asIntBuffer().get(offsets);
+            in.position(in.position() + 4 * offsets.length);
+            byte[] bytes = new byte[stringBytes];
+            in.get(bytes);
+
+            String[] strings = new String[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                if (offsets[i] < 0 || offsets[i] > offsets[i + 1] || offsets[i + 1] > stringBytes) {
+                    throw new IOException(filename + " is truncated or corrupt");
+                }
+                strings[i] = new String(bytes, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+            }
+
+            try {
+                Student[] students = new Student[studentCount];
+                for (int i = 0, j = 0; i < studentCount; i++, j += 3) {
+                    students[i] = new Student(strings[studentStrings[j]], strings[studentStrings[j + 1]],
+                                              strings[studentStrings[j + 2]]);
+                }
+                String[] gradeIds = new String[gradeCount];
+                for (int i = 0; i < gradeCount; i++) {
+                    gradeIds[i] = strings[gradeStrings[i]];
+                }
+                return new GradeSnapshot(students, gradeIds, assignmentScores, midtermScores, finalScores);
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new IOException(filename + " is truncated or corrupt");
+            }
+        }
+    }
+
+    /**
+     * @return The students, in the order of students.txt
+     */
+    public List<Student> getStudents() {
+        return new ArrayList<>(Arrays.asList(students));
+    }
+
+    /**
+     * @return The grade records by student ID, as readGradeData returns them
+     */
+    public Map<String, GradeRecord> getGrades() {
+        Map<String, GradeRecord> grades = new HashMap<>(gradeIds.length * 4 / 3 + 1);
+        for (int i = 0; i < gradeIds.length; i++) {
+            grades.put(gradeIds[i], new GradeRecord(gradeIds[i], assignmentScores[i], midtermScores[i], finalScores[i]));
+        }
+        return grades;
+    }
+
+    /**
+     * Hands the grade columns to a columnar store without copying them. The
+     * store owns the columns afterwards, so call this once and do not read
+     * grades from the snapshot after it.
+     *
+     * @return The grade records in a columnar store, as readGradeDataColumnar returns them
+     */
+    public ColumnarGradeStore getGradeStore() {
+        // IDs in a snapshot are unique, so the columns can be indexed as they are
+        return ColumnarGradeStore.ofUniqueRows(gradeIds, assignmentScores, midtermScores, finalScores);
+    }
+
+    /**
+     * @return Number of students
+     */
+    public int getStudentCount() {
+        return students.length;
+    }
+
+    /**
+     * @return Number of grade records
+     */
+    public int getGradeCount() {
+        return gradeIds.length;
+    }
+
+    private static int intern(String string, Map<String, Integer> numbers, List<byte[]> strings) {
+        Integer number = numbers.get(string);
+        if (number == null) {
+            number = strings.size();
+            numbers.put(string, number);
+            strings.add(string.getBytes(StandardCharsets.UTF_8));
+        }
+        return number;
+    }
+
+    /**
+     * CRC32 of everything after the header.
+     */
+    private static long checksum(ByteBuffer buffer, int size) {
+        ByteBuffer body = buffer.duplicate();
+        body.position(HEADER_SIZE);
+        body.limit(size);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return crc.getValue();
+    }
+}
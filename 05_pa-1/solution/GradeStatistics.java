@@ -0,0 +1,387 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * GradeStatistics collects class statistics in a single pass.
+ *
+ * One accumulator tracks the count, sum, lowest and highest score (with the
+ * student who earned them), variance, the number of each letter grade and a
+ * histogram of scores for percentiles. Both the class summary and the grade
+ * distribution report are written from the same accumulator.
+ *
+ * Accumulators can be combined, so partial results for different parts of
+ * a roster (for example one per thread, or one per course section) can be
+ * collected separately and merged afterwards.
+ *
+ * Percentiles come from a histogram with one bin per 0.01 points between 0
+ * and 100, so they are accurate to the nearest 0.01, need no sorting and take
+ * a fixed amount of memory no matter how many students are added.
+ */
+class GradeStatistics {
+    // Histogram resolution: bins per score point (0.01 points per bin)
+    private static final int BINS_PER_POINT = 100;
+    private static final int HISTOGRAM_BINS = 100 * BINS_PER_POINT + 1;
+
+    private final String[] letters;
+    private final long[] letterCounts;
+
+    private long count = 0;
+    private double sum = 0;
+
+    // Running mean and sum of squared differences (Welford's method)
+    private double mean = 0;
+    private double squaredDeviations = 0;
+
+    // Start values are the original report's, so an empty class reports them
+    // as before and a score of 0 never counts as the highest
+    static final double NO_HIGHEST_SCORE = Double.MIN_VALUE;
+    static final double NO_LOWEST_SCORE = Double.MAX_VALUE;
+
+    private double highestScore = NO_HIGHEST_SCORE;
+    private double lowestScore = NO_LOWEST_SCORE;
+    private String highestStudent = "";
+    private String lowestStudent = "";
+
+    // Score histogram for percentiles (allocated on first use)
+    private int[] histogram;
+    private long histogramCount = 0;
+
+    /**
+     * Creates an empty accumulator for the standard A-F letter grades.
+     */
+    public GradeStatistics() {
+        this(Solution_StudentGradeManager.LETTERS_BY_BUCKET);
+    }
+
+    /**
+     * Creates an empty accumulator for a custom set of letter grades.
+     *
+     * @param letters Letter labels, indexed by bucket
+     */
+    public GradeStatistics(String[] letters) {
+        this.letters = letters;
+        this.letterCounts = new long[letters.length];
+    }
+
+    /**
+     * Adds one student's result.
+     *
+     * @param studentName Name to report if this is the highest or lowest score
+     * @param score The student's final score
+     * @param letterGrade The student's letter grade
+     */
+    public void add(String studentName, double score, String letterGrade) {
+        add(studentName, score, bucketOf(letterGrade));
+    }
+
+    /**
+     * Adds one student's result using a letter bucket instead of a letter.
+     *
+     * @param studentName Name to report if this is the highest or lowest score
+     * @param score The student's final score
+     * @param bucket Index of the student's letter grade
+     */
+    public void add(String studentName, double score, int bucket) {
+        count++;
+        sum += score;
+
+        double delta = score - mean;
+        mean += delta / count;
+        squaredDeviations += delta * (score - mean);
+
+        // Ties keep the first student, as the original report did
+        if (score > highestScore) {
+            highestScore = score;
+            highestStudent = studentName;
+        }
+        if (score < lowestScore) {
+            lowestScore = score;
+            lowestStudent = studentName;
+        }
+
+        letterCounts[bucket]++;
+
+        if (!Double.isNaN(score)) {
+            if (histogram == null) {
+                histogram = new int[HISTOGRAM_BINS];
+            }
+            histogram[binOf(score)]++;
+            histogramCount++;
+        }
+    }
+
+    /**
+     * Merges another accumulator into this one. The other accumulator is
+     * treated as coming after this one, so ties for highest and lowest score
+     * still go to the earlier student.
+     *
+     * @param other Statistics for another part of the roster
+     * @return this accumulator
+     */
+    public GradeStatistics combine(GradeStatistics other) {
+        if (other.count == 0) {
+            return this;
+        }
+
+        // Chan et al. parallel variance merge
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        squaredDeviations += other.squaredDeviations + delta * delta * ((double) count * other.count / total);
+        mean += delta * other.count / total;
+        count = total;
+        sum += other.sum;
+
+        if (other.highestScore > highestScore) {
+            highestScore = other.highestScore;
+            highestStudent = other.highestStudent;
+        }
+        if (other.lowestScore < lowestScore) {
+            lowestScore = other.lowestScore;
+            lowestStudent = other.lowestStudent;
+        }
+
+        for (int i = 0; i < letterCounts.length; i++) {
+            letterCounts[i] += other.letterCounts[i];
+        }
+
+        if (other.histogram != null) {
+            if (histogram == null) {
+                histogram = new int[HISTOGRAM_BINS];
+            }
+            for (int i = 0; i < HISTOGRAM_BINS; i++) {
+                histogram[i] += other.histogram[i];
+            }
+            histogramCount += other.histogramCount;
+        }
+        return this;
+    }
+
+    /**
+     * Takes back a result that was added earlier, for incremental updates.
+     *
+     * The count, sum, variance, letter counts and histogram are adjusted.
+     * The highest and lowest score are not, because the runner-up is not
+     * known here; if the removed result was one of them, the caller must
+     * supply the new values with setExtremes.
+     *
+     * @param score The score that was added
+     * @param bucket The letter bucket it was added with
+     */
+    public void remove(double score, int bucket) {
+        if (count <= 1) {
+            count = 0;
+            sum = 0;
+            mean = 0;
+            squaredDeviations = 0;
+        } else {
+            // Welford's update run backwards
+            double oldMean = mean;
+            mean = (count * mean - score) / (count - 1);
+            squaredDeviations = Math.max(0, squaredDeviations - (score - oldMean) * (score - mean));
+            count--;
+            sum -= score;
+        }
+
+        letterCounts[bucket]--;
+
+        if (!Double.isNaN(score) && histogram != null) {
+            histogram[binOf(score)]--;
+            histogramCount--;
+        }
+    }
+
+    /**
+     * Replaces the highest and lowest score, for incremental updates.
+     */
+    public void setExtremes(double highestScore, String highestStudent, double lowestScore, String lowestStudent) {
+        this.highestScore = highestScore;
+        this.highestStudent = highestStudent;
+        this.lowestScore = lowestScore;
+        this.lowestStudent = lowestStudent;
+    }
+
+    /**
+     * Writes the accumulator in a compact binary form.
+     *
+     * @param out Where to write
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(letters.length);
+        for (int i = 0; i < letters.length; i++) {
+            out.writeUTF(letters[i]);
+            out.writeLong(letterCounts[i]);
+        }
+        out.writeLong(count);
+        out.writeDouble(sum);
+        out.writeDouble(mean);
+        out.writeDouble(squaredDeviations);
+        out.writeDouble(highestScore);
+        out.writeUTF(highestStudent);
+        out.writeDouble(lowestScore);
+        out.writeUTF(lowestStudent);
+
+        // Histogram as (bin, count) pairs for the non-empty bins
+        int used = 0;
+        for (int i = 0; histogram != null && i < HISTOGRAM_BINS; i++) {
+            if (histogram[i] != 0) {
+                used++;
+            }
+        }
+        out.writeInt(used);
+        for (int i = 0; histogram != null && i < HISTOGRAM_BINS; i++) {
+            if (histogram[i] != 0) {
+                out.writeShort(i);
+                out.writeInt(histogram[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads an accumulator written by writeTo.
+     *
+     * @param in Where to read from
+     * @return The restored accumulator
+     * @throws IOException if reading fails
+     */
+    public static GradeStatistics readFrom(DataInputStream in) throws IOException {
+        int letterCount = in.readInt();
+        String[] letters = new String[letterCount];
+        long[] counts = new long[letterCount];
+        for (int i = 0; i < letterCount; i++) {
+            letters[i] = in.readUTF();
+            counts[i] = in.readLong();
+        }
+
+        GradeStatistics statistics = new GradeStatistics(letters);
+        System.arraycopy(counts, 0, statistics.letterCounts, 0, letterCount);
+        statistics.count = in.readLong();
+        statistics.sum = in.readDouble();
+        statistics.mean = in.readDouble();
+        statistics.squaredDeviations = in.readDouble();
+        statistics.highestScore = in.readDouble();
+        statistics.highestStudent = in.readUTF();
+        statistics.lowestScore = in.readDouble();
+        statistics.lowestStudent = in.readUTF();
+
+        int used = in.readInt();
+        if (used > 0) {
+            statistics.histogram = new int[HISTOGRAM_BINS];
+        }
+        for (int i = 0; i < used; i++) {
+            int bin = in.readShort();
+            int binCount = in.readInt();
+            statistics.histogram[bin] = binCount;
+            statistics.histogramCount += binCount;
+        }
+        return statistics;
+    }
+
+    // Getters
+    public long getCount() { return count; }
+    public double getSum() { return sum; }
+    public double getHighestScore() { return highestScore; }
+    public double getLowestScore() { return lowestScore; }
+    public String getHighestStudent() { return highestStudent; }
+    public String getLowestStudent() { return lowestStudent; }
+
+    /**
+     * @return Average score, or 0 if there are no students
+     */
+    public double getAverage() {
+        return count > 0 ? sum / count : 0;
+    }
+
+    /**
+     * @return Population variance of the scores
+     */
+    public double getVariance() {
+        return count > 0 ? squaredDeviations / count : 0;
+    }
+
+    /**
+     * @return Population standard deviation of the scores
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * @param letterGrade A letter grade such as "A"
+     * @return Number of students with that letter grade
+     */
+    public long getLetterCount(String letterGrade) {
+        return letterCounts[bucketOf(letterGrade)];
+    }
+
+    /**
+     * @param letterGrade A letter grade such as "A"
+     * @return Percentage of students with that letter grade
+     */
+    public double getLetterPercentage(String letterGrade) {
+        return (double) getLetterCount(letterGrade) / count * 100;
+    }
+
+    /**
+     * @return Median score, to the nearest 0.01
+     */
+    public double getMedian() {
+        return getPercentile(50);
+    }
+
+    /**
+     * @return 90th percentile score, to the nearest 0.01
+     */
+    public double getP90() {
+        return getPercentile(90);
+    }
+
+    /**
+     * Returns the score at or below which the given percentage of students
+     * fall (nearest-rank method), to the nearest 0.01.
+     *
+     * @param percent Percentile between 0 and 100
+     * @return The percentile score, or NaN if there are no scores
+     */
+    public double getPercentile(double percent) {
+        if (histogramCount == 0) {
+            return Double.NaN;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * histogramCount));
+        long seen = 0;
+        for (int bin = 0; bin < HISTOGRAM_BINS; bin++) {
+            seen += histogram[bin];
+            if (seen >= rank) {
+                return (double) bin / BINS_PER_POINT;
+            }
+        }
+        return 100.0;
+    }
+
+    /**
+     * Converts a letter grade into its bucket index.
+     */
+    int bucketOf(String letterGrade) {
+        for (int i = 0; i < letters.length; i++) {
+            if (letters[i].equals(letterGrade)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown letter grade: " + letterGrade);
+    }
+
+    // Histogram bin for a score, clamped to 0-100
+    private static int binOf(double score) {
+        long bin = Math.round(score * BINS_PER_POINT);
+        return (int) Math.max(0, Math.min(HISTOGRAM_BINS - 1, bin));
+    }
+
+    @Override
+    public String toString() {
+        return "GradeStatistics{count=" + count +
+               ", average=" + getAverage() +
+               ", min=" + lowestScore +
+               ", max=" + highestScore +
+               ", letters=" + Arrays.toString(letterCounts) + "}";
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.*;
+
+/**
+ * GradedRoster is the columnar counterpart of List<StudentReport>.
+ *
+ * Entry i is the i-th graded student in roster order: the Student itself,
+ * the row holding their scores in a ColumnarGradeStore, their weighted final
+ * score and their letter grade. No StudentReport or GradeRecord objects are
+ * created.
+ */
+class GradedRoster {
+    private final ColumnarGradeStore grades;
+    private Student[] students;
+    private int[] gradeRows;
+    private double[] finalScores;
+    private String[] letterGrades;
+    private int size;
+
+    /**
+     * Creates an empty roster whose scores live in the given store.
+     *
+     * @param grades The store that gradeRow values refer to
+     * @param expectedSize Number of entries to allocate up front
+     */
+    public GradedRoster(ColumnarGradeStore grades, int expectedSize) {
+        int capacity = Math.max(16, expectedSize);
+        this.grades = grades;
+        students = new Student[capacity];
+        gradeRows = new int[capacity];
+        finalScores = new double[capacity];
+        letterGrades = new String[capacity];
+    }
+
+    /**
+     * Appends a graded student.
+     */
+    public void add(Student student, int gradeRow, double finalScore, String letterGrade) {
+        if (size == students.length) {
+            int capacity = size * 2;
+            students = Arrays.copyOf(students, capacity);
+            gradeRows = Arrays.copyOf(gradeRows, capacity);
+            finalScores = Arrays.copyOf(finalScores, capacity);
+            letterGrades = Arrays.copyOf(letterGrades, capacity);
+        }
+        students[size] = student;
+        gradeRows[size] = gradeRow;
+        finalScores[size] = finalScore;
+        letterGrades[size] = letterGrade;
+        size++;
+    }
+
+    /**
+     * @return Number of graded students
+     */
+    public int size() {
+        return size;
+    }
+
+    // Per-entry getters
+    public ColumnarGradeStore getGrades() { return grades; }
+    public Student getStudent(int i) { return students[i]; }
+    public int getGradeRow(int i) { return gradeRows[i]; }
+    public double getFinalScore(int i) { return finalScores[i]; }
+    public String getLetterGrade(int i) { return letterGrades[i]; }
+
+    /**
+     * Hands entry i to a report sink.
+     */
+    public void sendTo(int i, ReportSink sink) throws java.io.IOException {
+        int row = gradeRows[i];
+        sink.accept(students[i], grades.getAssignmentScore(row), grades.getMidtermScore(row),
+                    grades.getFinalScore(row), finalScores[i], letterGrades[i]);
+    }
+}
@@ -0,0 +1,160 @@
+import java.util.*;
+
+/**
+ * GradingScheme describes how one course section is graded: its score
+ * components with their weights, and the letter grades with the minimum
+ * final score for each.
+ *
+ * Letters are kept in bucket order, worst first, like
+ * Solution_StudentGradeManager.LETTERS_BY_BUCKET, so a bucket number can be
+ * handed straight to GradeStatistics.
+ */
+class GradingScheme {
+    // How far the weights may sum from 1 and still count as a whole grade
+    private static final double WEIGHT_TOLERANCE = 1e-9;
+
+    /** The scheme Solution_StudentGradeManager uses: 40/25/35 and a 90/80/70/60 scale. */
+    static final GradingScheme STANDARD = new GradingScheme("standard",
+        new String[] {"Assignment", "Midterm", "Final"},
+        new double[] {0.40, 0.25, 0.35},
+        Solution_StudentGradeManager.LETTERS_BY_BUCKET,
+        new double[] {0.0, 60.0, 70.0, 80.0, 90.0});
+
+    private final String name;
+    private final String[] components;
+    private final double[] weights;
+    private final String[] letters;
+    private final double[] minimumScores;
+
+    /**
+     * Creates a scheme.
+     *
+     * @param name Name of the scheme
+     * @param components Component names, in grade file column order
+     * @param weights Weight of each component
+     * @param letters Letter grades, worst first
+     * @param minimumScores Lowest final score for each letter, ascending
+     * @throws IllegalArgumentException if the weights do not sum to 1, the
+     *         worst letter's cutoff is above 0 (a low score would get no
+     *         letter), or the cutoffs overlap
+     */
+    public GradingScheme(String name, String[] components, double[] weights,
+                         String[] letters, double[] minimumScores) {
+        if (components.length == 0 || components.length != weights.length) {
+            throw new IllegalArgumentException("Scheme " + name + " needs one weight per component");
+        }
+        double weightSum = 0;
+        for (double weight : weights) {
+            weightSum += weight;
+        }
+        if (Math.abs(weightSum - 1.0) > WEIGHT_TOLERANCE) {
+            throw new IllegalArgumentException("Scheme " + name + " has weights that sum to " + weightSum + ", not 1");
+        }
+        if (letters.length == 0 || letters.length != minimumScores.length) {
+            throw new IllegalArgumentException("Scheme " + name + " needs one cutoff per letter");
+        }
+        if (minimumScores[0] > 0) {
+            throw new IllegalArgumentException("Scheme " + name + " needs a letter with cutoff 0 for the lowest scores");
+        }
+        for (int i = 1; i < minimumScores.length; i++) {
+            if (minimumScores[i] <= minimumScores[i - 1]) {
+                throw new IllegalArgumentException("Scheme " + name + " has overlapping letter cutoffs");
+            }
+        }
+        this.name = name;
+        this.components = components;
+        this.weights = weights;
+        this.letters = letters;
+        this.minimumScores = minimumScores;
+    }
+
+    /**
+     * Parses a scheme from its config form, for example
+     * "Assignment:0.40,Midterm:0.25,Final:0.35" and "A:90,B:80,C:70,D:60,F:0".
+     * Letters may be listed in any order.
+     *
+     * @param name Name of the scheme
+     * @param componentList Comma-separated Component:Weight pairs
+     * @param cutoffList Comma-separated Letter:MinimumScore pairs
+     * @return The scheme
+     * @throws IllegalArgumentException if the lists are malformed or do not
+     *         make a valid scheme (see the constructor)
+     */
+    public static GradingScheme parse(String name, String componentList, String cutoffList) {
+        String[] componentParts = componentList.split(",");
+        String[] components = new String[componentParts.length];
+        double[] weights = new double[componentParts.length];
+        for (int i = 0; i < componentParts.length; i++) {
+            String[] pair = splitPair(name, componentParts[i]);
+            components[i] = pair[0];
+            weights[i] = Double.parseDouble(pair[1]);
+        }
+
+        // Sort the letters by cutoff so the worst letter is bucket 0
+        String[] cutoffParts = cutoffList.split(",");
+        String[][] cutoffs = new String[cutoffParts.length][];
+        for (int i = 0; i < cutoffParts.length; i++) {
+            cutoffs[i] = splitPair(name, cutoffParts[i]);
+        }
+        Arrays.sort(cutoffs, Comparator.comparingDouble(pair -> Double.parseDouble(pair[1])));
+
+        String[] letters = new String[cutoffs.length];
+        double[] minimumScores = new double[cutoffs.length];
+        for (int i = 0; i < cutoffs.length; i++) {
+            letters[i] = cutoffs[i][0];
+            minimumScores[i] = Double.parseDouble(cutoffs[i][1]);
+        }
+        return new GradingScheme(name, components, weights, letters, minimumScores);
+    }
+
+    private static String[] splitPair(String name, String text) {
+        String[] pair = text.split(":");
+        if (pair.length != 2 || pair[0].trim().isEmpty()) {
+            throw new IllegalArgumentException("Scheme " + name + " has an invalid entry - " + text);
+        }
+        return new String[] {pair[0].trim(), pair[1].trim()};
+    }
+
+    /**
+     * Weighted final score. Components are added in order, the same way
+     * calculateFinalScore does, so the standard scheme gives identical results.
+     *
+     * @param scores Component scores
+     * @param offset Index of the first component in scores
+     * @return The weighted final score
+     */
+    public double finalScore(double[] scores, int offset) {
+        double score = scores[offset] * weights[0];
+        for (int c = 1; c < weights.length; c++) {
+            score += scores[offset + c] * weights[c];
+        }
+        return score;
+    }
+
+    /**
+     * @param score A final score
+     * @return The letter bucket for the score (NaN falls into the lowest)
+     */
+    public int bucketOf(double score) {
+        for (int bucket = minimumScores.length - 1; bucket > 0; bucket--) {
+            if (score >= minimumScores[bucket]) {
+                return bucket;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param score A final score
+     * @return The letter grade for the score
+     */
+    public String letterOf(double score) {
+        return letters[bucketOf(score)];
+    }
+
+    // Getters
+    public String getName() { return name; }
+    public int getComponentCount() { return components.length; }
+    public String getComponent(int index) { return components[index]; }
+    public String[] getLetters() { return letters; }
+}
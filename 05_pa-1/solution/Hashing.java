@@ -0,0 +1,22 @@
+/**
+ * Hash mixing shared by the open-addressing tables (ColumnarGradeStore,
+ * StringArena, LongIntHashMap) and ParallelGradeLoader's partitioning. All
+ * of them index with the low bits of a hash, so the high bits have to be
+ * folded in first or IDs that differ only in their high bits collide.
+ */
+final class Hashing {
+    private Hashing() {
+    }
+
+    // Mixes the high bits of a hash code into the low bits used for a table slot or partition
+    static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    // Mixes all 64 bits of a key into the low bits used for a table slot
+    static int spread(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+}
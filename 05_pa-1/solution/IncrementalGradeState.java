@@ -0,0 +1,414 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * IncrementalGradeState is everything needed to update the reports after a
+ * small change to the grades, without reading students.txt and grades.txt
+ * again.
+ *
+ * The state keeps the roster in file order with each student's scores,
+ * weighted final score and letter bucket, plus the GradeStatistics behind
+ * the class summary and distribution. It is saved to a compact binary
+ * snapshot after a full run.
+ *
+ * A delta file then lists changed grade lines:
+ *
+ *     +ID,Assignment,Midterm,Final    add grades for a student
+ *     ~ID,Assignment,Midterm,Final    change a student's grades
+ *     -ID                             remove a student's grades
+ *
+ * A line is rejected with a warning, and changes nothing, if its ID is not
+ * in the roster, if it adds grades for a student who already has them, or
+ * if it changes or removes grades a student does not have.
+ *
+ * Applying a delta updates the statistics for the affected students only,
+ * rewrites just their individual reports, and rewrites the summary and
+ * distribution from the updated statistics. The result is the same as a
+ * full run over the edited grade file.
+ *
+ * The snapshot records how the full run wrote individual reports, so a
+ * delta updates them in the same layout: student_ID_report.txt files, or,
+ * after a --segmented run, new entries appended to the segment index (see
+ * SegmentedReportWriter.append).
+ */
+class IncrementalGradeState {
+    private static final int MAGIC = 0x47534E50; // "GSNP"
+    private static final int VERSION = 2;
+
+    // Bucket value for a student without grade data
+    private static final byte NO_GRADES = -1;
+
+    // Roster, in students.txt order (a student can appear more than once)
+    private Student[] students;
+    private double[] assignmentScores;
+    private double[] midtermScores;
+    private double[] finalExamScores;
+    private double[] finalScores;
+    private byte[] buckets;
+    private int size;
+
+    // Positions in the roster for each student ID
+    private Map<String, int[]> positionsById = new HashMap<>();
+
+    // Summary and distribution statistics
+    private GradeStatistics statistics = new GradeStatistics();
+
+    // Positions of the highest and lowest score, for tie-breaking
+    private int highestPosition = -1;
+    private int lowestPosition = -1;
+
+    // Whether the individual reports live in segment files instead of one file per student
+    private boolean segmented = false;
+
+    private IncrementalGradeState(int capacity) {
+        students = new Student[capacity];
+        assignmentScores = new double[capacity];
+        midtermScores = new double[capacity];
+        finalExamScores = new double[capacity];
+        finalScores = new double[capacity];
+        buckets = new byte[capacity];
+    }
+
+    /**
+     * Builds the state from a full run's inputs.
+     *
+     * @param students List of all students
+     * @param grades Map of student grades
+     * @param segmented Whether the run wrote its individual reports with --segmented
+     * @return The state for that run
+     */
+    public static IncrementalGradeState build(List<Student> students, Map<String, GradeRecord> grades,
+                                              boolean segmented) {
+        IncrementalGradeState state = new IncrementalGradeState(students.size());
+        state.segmented = segmented;
+        for (Student student : students) {
+            int position = state.addStudent(student);
+            GradeRecord record = grades.get(student.getId());
+            if (record != null) {
+                state.setGrades(position, record.getAssignmentScore(), record.getMidtermScore(), record.getFinalScore());
+            }
+        }
+        return state;
+    }
+
+    /**
+     * @return The statistics for the class summary and distribution
+     */
+    public GradeStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return Whether the individual reports are kept in segment files
+     */
+    public boolean isSegmented() {
+        return segmented;
+    }
+
+    /**
+     * @return Number of students with grades
+     */
+    public long getGradedCount() {
+        return statistics.getCount();
+    }
+
+    /**
+     * Applies a delta file and rewrites the affected individual reports.
+     * Invalid lines are reported with the same warnings as readGradeData;
+     * lines that do not fit the roster are rejected as described above.
+     *
+     * @param deltaFile The name of the delta file
+     * @return Number of individual reports rewritten or removed
+     * @throws IOException if the delta cannot be read or a report cannot be written
+     */
+    public int applyDelta(String deltaFile) throws IOException {
+        Set<Integer> changed = new LinkedHashSet<>();
+        boolean extremesStale = false;
+        GradeLineValidator validator = new GradeLineValidator();
+
+        BufferedReader reader = new BufferedReader(new FileReader(deltaFile));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                char op = line.charAt(0);
+                String body = line.substring(1).trim();
+
+                if (op == '-') {
+                    int[] positions = positionsOf(body);
+                    RejectReason reason = checkDeltaTarget(op, positions);
+                    if (reason != null) {
+                        GradeRunMetrics.reject(reason, line);
+                        continue;
+                    }
+                    for (int position : positions) {
+                        extremesStale |= clearGrades(position);
+                        changed.add(position);
+                    }
+                    continue;
+                }
+
+                if (op != '+' && op != '~') {
+                    GradeRunMetrics.reject(RejectReason.INVALID_DELTA_LINE, line);
+                    continue;
+                }
+
+                // Validate the field count, numbers and score range
+                String[] parts = body.split(",");
+                RejectReason reason = validator.check(parts);
+                if (reason != null) {
+                    GradeRunMetrics.reject(reason, line);
+                    continue;
+                }
+
+                int[] positions = positionsOf(parts[0].trim());
+                reason = checkDeltaTarget(op, positions);
+                if (reason != null) {
+                    GradeRunMetrics.reject(reason, line);
+                    continue;
+                }
+                for (int position : positions) {
+                    if (op == '~') {
+                        extremesStale |= clearGrades(position);
+                    }
+                    setGrades(position, validator.score(0), validator.score(1), validator.score(2));
+                    changed.add(position);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        if (extremesStale) {
+            recomputeExtremes();
+        }
+
+        // Rewrite (or remove) only the affected individual reports, in the layout of the full run
+        SegmentedReportWriter segments = segmented ? SegmentedReportWriter.append(GradeRunOptions.SEGMENT_BASE_NAME)
+                                                   : null;
+        ReportSink reports = segments != null ? segments : new IndividualReportSink();
+        for (int position : changed) {
+            Student student = students[position];
+            if (buckets[position] == NO_GRADES) {
+                if (segments != null) {
+                    segments.remove(student.getId());
+                } else {
+                    new File("student_" + student.getId() + "_report.txt").delete();
+                }
+            } else {
+                reports.accept(student, assignmentScores[position], midtermScores[position],
+                               finalExamScores[position], finalScores[position],
+                               Solution_StudentGradeManager.LETTERS_BY_BUCKET[buckets[position]]);
+            }
+        }
+        reports.finish();
+
+        return changed.size();
+    }
+
+    /**
+     * Saves the state to a snapshot file.
+     *
+     * @param filename Where to save
+     * @throws IOException if the file cannot be written
+     */
+    public void save(String filename) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeBoolean(segmented);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeUTF(students[i].getId());
+                out.writeUTF(students[i].getName());
+                out.writeUTF(students[i].getEmail());
+                out.writeByte(buckets[i]);
+                if (buckets[i] != NO_GRADES) {
+                    out.writeDouble(assignmentScores[i]);
+                    out.writeDouble(midtermScores[i]);
+                    out.writeDouble(finalExamScores[i]);
+                    out.writeDouble(finalScores[i]);
+                }
+            }
+            out.writeInt(highestPosition);
+            out.writeInt(lowestPosition);
+            statistics.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Loads a state saved with save().
+     *
+     * @param filename The snapshot file
+     * @return The restored state
+     * @throws IOException if the file is missing, unreadable or not a snapshot
+     */
+    public static IncrementalGradeState load(String filename) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename), 1 << 16));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(filename + " is not a grade state snapshot");
+            }
+            boolean segmented = in.readBoolean();
+            int size = in.readInt();
+            IncrementalGradeState state = new IncrementalGradeState(size);
+            state.segmented = segmented;
+            for (int i = 0; i < size; i++) {
+                int position = state.addStudent(new Student(in.readUTF(), in.readUTF(), in.readUTF()));
+                byte bucket = in.readByte();
+                state.buckets[position] = bucket;
+                if (bucket != NO_GRADES) {
+                    state.assignmentScores[position] = in.readDouble();
+                    state.midtermScores[position] = in.readDouble();
+                    state.finalExamScores[position] = in.readDouble();
+                    state.finalScores[position] = in.readDouble();
+                }
+            }
+            state.highestPosition = in.readInt();
+            state.lowestPosition = in.readInt();
+            state.statistics = GradeStatistics.readFrom(in);
+            return state;
+        } finally {
+            in.close();
+        }
+    }
+
+    private int addStudent(Student student) {
+        if (size == students.length) {
+            int capacity = Math.max(16, size * 2);
+            students = Arrays.copyOf(students, capacity);
+            assignmentScores = Arrays.copyOf(assignmentScores, capacity);
+            midtermScores = Arrays.copyOf(midtermScores, capacity);
+            finalExamScores = Arrays.copyOf(finalExamScores, capacity);
+            finalScores = Arrays.copyOf(finalScores, capacity);
+            buckets = Arrays.copyOf(buckets, capacity);
+        }
+        int position = size++;
+        students[position] = student;
+        buckets[position] = NO_GRADES;
+
+        int[] positions = positionsById.get(student.getId());
+        if (positions == null) {
+            positionsById.put(student.getId(), new int[] {position});
+        } else {
+            int[] grown = Arrays.copyOf(positions, positions.length + 1);
+            grown[positions.length] = position;
+            positionsById.put(student.getId(), grown);
+        }
+        return position;
+    }
+
+    private int[] positionsOf(String id) {
+        int[] positions = positionsById.get(id);
+        return positions != null ? positions : new int[0];
+    }
+
+    /**
+     * Checks that a delta operation fits the student it names. Every roster
+     * position of an ID holds the same grades, so the first one decides.
+     *
+     * @param op '+', '~' or '-'
+     * @param positions The roster positions of the line's ID
+     * @return null if the operation applies, otherwise why the line is rejected
+     */
+    private RejectReason checkDeltaTarget(char op, int[] positions) {
+        if (positions.length == 0) {
+            return RejectReason.UNKNOWN_DELTA_STUDENT;
+        }
+        boolean graded = buckets[positions[0]] != NO_GRADES;
+        if (op == '+' && graded) {
+            return RejectReason.DELTA_ALREADY_GRADED;
+        }
+        if (op != '+' && !graded) {
+            return RejectReason.DELTA_NOT_GRADED;
+        }
+        return null;
+    }
+
+    /**
+     * Grades a roster position and adds it to the statistics.
+     */
+    private void setGrades(int position, double assignmentScore, double midtermScore, double finalExamScore) {
+        double finalScore = Solution_StudentGradeManager.calculateFinalScore(assignmentScore, midtermScore, finalExamScore);
+        String letter = Solution_StudentGradeManager.getLetterGrade(finalScore);
+
+        assignmentScores[position] = assignmentScore;
+        midtermScores[position] = midtermScore;
+        finalExamScores[position] = finalExamScore;
+        finalScores[position] = finalScore;
+        buckets[position] = (byte) statistics.bucketOf(letter);
+
+        // A score that ties the current extreme only wins if it comes earlier in the roster
+        double highestScore = statistics.getHighestScore();
+        double lowestScore = statistics.getLowestScore();
+        boolean newHighest = finalScore > highestScore || (finalScore == highestScore && position < highestPosition);
+        boolean newLowest = finalScore < lowestScore || (finalScore == lowestScore && position < lowestPosition);
+
+        statistics.add(students[position].getName(), finalScore, letter);
+
+        if (newHighest) {
+            highestPosition = position;
+        }
+        if (newLowest) {
+            lowestPosition = position;
+        }
+        if (newHighest || newLowest) {
+            setExtremes();
+        }
+    }
+
+    /**
+     * Removes a roster position's grades from the statistics.
+     *
+     * @return true if the highest/lowest score must be recomputed
+     */
+    private boolean clearGrades(int position) {
+        statistics.remove(finalScores[position], buckets[position]);
+        buckets[position] = NO_GRADES;
+        return position == highestPosition || position == lowestPosition;
+    }
+
+    /**
+     * Finds the highest and lowest score over the in-memory roster, keeping
+     * the first student on ties like the full report does.
+     */
+    private void recomputeExtremes() {
+        double highestScore = GradeStatistics.NO_HIGHEST_SCORE;
+        double lowestScore = GradeStatistics.NO_LOWEST_SCORE;
+        highestPosition = -1;
+        lowestPosition = -1;
+        for (int i = 0; i < size; i++) {
+            if (buckets[i] == NO_GRADES) {
+                continue;
+            }
+            if (finalScores[i] > highestScore) {
+                highestScore = finalScores[i];
+                highestPosition = i;
+            }
+            if (finalScores[i] < lowestScore) {
+                lowestScore = finalScores[i];
+                lowestPosition = i;
+            }
+        }
+        setExtremes();
+    }
+
+    /**
+     * Copies the scores and names at highestPosition and lowestPosition into
+     * the statistics. A position of -1 (no score above 0, or no scores at
+     * all) reports the same start values as GradeStatistics.
+     */
+    private void setExtremes() {
+        statistics.setExtremes(highestPosition < 0 ? GradeStatistics.NO_HIGHEST_SCORE : finalScores[highestPosition],
+                               highestPosition < 0 ? "" : students[highestPosition].getName(),
+                               lowestPosition < 0 ? GradeStatistics.NO_LOWEST_SCORE : finalScores[lowestPosition],
+                               lowestPosition < 0 ? "" : students[lowestPosition].getName());
+    }
+}
@@ -0,0 +1,32 @@
+import java.io.*;
+
+/**
+ * Writes one student_ID_report.txt file per student as soon as it arrives.
+ */
+class IndividualReportSink implements ReportSink {
+
+    @Override
+    public void accept(Student student, double assignmentScore, double midtermScore, double finalExamScore,
+                       double finalScore, String letterGrade) throws IOException {
+        String filename = "student_" + student.getId() + "_report.txt";
+        File reportFile = new File(filename);
+        PrintStream reportOut = new PrintStream(reportFile);
+
+        try {
+            reportOut.println("STUDENT REPORT - " + student.getName() + " (ID: " + student.getId() + ")");
+            reportOut.println("Email: " + student.getEmail());
+            reportOut.printf("Assignment Score: %.1f%n", assignmentScore);
+            reportOut.printf("Midterm Score: %.1f%n", midtermScore);
+            reportOut.printf("Final Score: %.1f%n", finalExamScore);
+            reportOut.printf("Final Grade: %.2f (%s)%n", finalScore, letterGrade);
+
+        } finally {
+            reportOut.close();
+        }
+    }
+
+    @Override
+    public void finish() {
+        // Every report was written in accept()
+    }
+}
@@ -0,0 +1,106 @@
+import java.util.*;
+
+/**
+ * LongIntHashMap maps long keys to non-negative int values without boxing.
+ *
+ * Keys and values live in two parallel arrays probed linearly, the same
+ * open-addressing layout ColumnarGradeStore uses for its index. A value slot
+ * of 0 means empty, so values are stored plus one.
+ */
+class LongIntHashMap {
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    /**
+     * Creates a map sized for the expected number of keys.
+     *
+     * @param expectedKeys Number of keys to allocate room for
+     */
+    public LongIntHashMap(int expectedKeys) {
+        int tableSize = tableSizeFor(Math.max(8, expectedKeys));
+        keys = new long[tableSize];
+        values = new int[tableSize];
+    }
+
+    /**
+     * Associates a value with a key, replacing any earlier value.
+     *
+     * @param key The key
+     * @param value The value (must be 0 or more)
+     * @return The previous value, or -1 if the key was new
+     */
+    public int put(long key, int value) {
+        int slot = findSlot(key);
+        int previous = values[slot] - 1;
+        if (previous < 0) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value + 1;
+
+        // Keep the table at most half full
+        if (previous < 0 && size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        return previous;
+    }
+
+    /**
+     * @param key The key
+     * @return The value for the key, or -1 if it is not in the map
+     */
+    public int get(long key) {
+        return values[findSlot(key)] - 1;
+    }
+
+    /**
+     * @return Number of keys in the map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Shrinks the table to the smallest size that holds the current keys,
+     * for a map that was sized generously and is now complete.
+     */
+    public void trim() {
+        int tableSize = tableSizeFor(Math.max(8, size));
+        if (tableSize < keys.length) {
+            rehash(tableSize);
+        }
+    }
+
+    private int findSlot(long key) {
+        int mask = keys.length - 1;
+        int slot = Hashing.spread(key) & mask;
+        while (values[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int tableSize) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[tableSize];
+        values = new int[tableSize];
+        int mask = tableSize - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != 0) {
+                int slot = Hashing.spread(oldKeys[i]) & mask;
+                while (values[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    // Smallest power of two that keeps the table at most half full
+    private static int tableSizeFor(int keys) {
+        return Integer.highestOneBit(Math.max(1, keys - 1)) << 2;
+    }
+}
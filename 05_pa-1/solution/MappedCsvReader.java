@@ -0,0 +1,352 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+
+/**
+ * MappedCsvReader reads comma-separated lines straight from a memory-mapped file.
+ *
+ * Unlike Scanner + split(","), it never builds a String for a whole line or
+ * for each field. A line is located and split by scanning the mapped bytes,
+ * numeric fields are parsed directly from those bytes, and a String is only
+ * created when the caller asks for one (a field it keeps, or a line it wants
+ * to print in a warning).
+ *
+ * Line handling matches the Scanner-based loaders:
+ * - each line is trimmed, and empty lines are skipped
+ * - fields are split on commas and trailing empty fields are dropped,
+ *   just like String.split(",")
+ * - field values are trimmed before use
+ *
+ * The reader can cover a whole file or just a byte range of it. A range must
+ * start at the beginning of a line and end just after a line break (or at the
+ * end of the file).
+ */
+class MappedCsvReader implements Closeable {
+    // How much of the file is mapped at once
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    // Powers of ten that are exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Largest mantissa that a double holds without rounding (2^53)
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    // Thrown for fields that cannot be a number at all. Malformed lines can
+    // be common in dirty input, so it is shared and carries no stack trace.
+    private static final NumberFormatException NOT_A_NUMBER = new NumberFormatException("not a number") {
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    };
+
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private final long rangeEnd;
+    private final Charset charset = Charset.defaultCharset();
+
+    // Current mapped window: file bytes [windowStart, windowStart + buffer.limit())
+    private MappedByteBuffer buffer;
+    private long windowStart;
+
+    // File offset of the next unread byte
+    private long position;
+
+    // Current line, as positions within the window (already trimmed)
+    private int lineStart;
+    private int lineEnd;
+
+    // Current fields, as positions within the window (not trimmed)
+    private int fieldCount;
+    private int[] fieldStarts = new int[8];
+    private int[] fieldEnds = new int[8];
+
+    // Reused when a field is turned into a String
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Opens a reader over an entire file.
+     *
+     * @param filename The file to read
+     * @throws IOException if the file cannot be opened
+     */
+    public MappedCsvReader(String filename) throws IOException {
+        this(openChannel(filename), 0, -1, true);
+    }
+
+    /**
+     * Opens a reader over the byte range [start, end) of an already open file.
+     * The channel is not closed by this reader.
+     *
+     * @param channel The open file
+     * @param start Offset of the first byte of the range (start of a line)
+     * @param end Offset just past the last byte of the range
+     * @throws IOException if the file cannot be read
+     */
+    public MappedCsvReader(FileChannel channel, long start, long end) throws IOException {
+        this(channel, start, end, false);
+    }
+
+    private MappedCsvReader(FileChannel channel, long start, long end, boolean ownsChannel) throws IOException {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.rangeEnd = end < 0 ? channel.size() : end;
+        this.position = start;
+        this.windowStart = start;
+    }
+
+    private static FileChannel openChannel(String filename) throws IOException {
+        try {
+            return FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            // Report missing files the same way Scanner does
+            throw new FileNotFoundException(filename + " (No such file or directory)");
+        }
+    }
+
+    /**
+     * Advances to the next non-empty line and splits it into fields.
+     *
+     * @return true if a line was read, false at the end of the range
+     * @throws IOException if the file cannot be read
+     */
+    public boolean nextLine() throws IOException {
+        while (position < rangeEnd) {
+            // Find the end of the line, remapping if it runs past the window
+            int start = ensureMapped(position);
+            int end = start;
+            int limit = buffer.limit();
+            while (true) {
+                if (end == limit) {
+                    if (windowStart + limit >= rangeEnd) {
+                        break;
+                    }
+                    if (start == 0) {
+                        throw new IOException("Line longer than " + WINDOW_SIZE + " bytes at offset " + position);
+                    }
+                    // Slide the window so it starts at this line and keep scanning
+                    int scanned = end - start;
+                    start = mapWindow(position);
+                    end = start + scanned;
+                    limit = buffer.limit();
+                    continue;
+                }
+                byte b = buffer.get(end);
+                if (b == '\n' || b == '\r') {
+                    break;
+                }
+                end++;
+            }
+
+            // Consume the line terminator (if any)
+            position = windowStart + (end < limit ? end + 1 : end);
+
+            // Trim the line the same way String.trim() does
+            while (start < end && (buffer.get(start) & 0xFF) <= ' ') {
+                start++;
+            }
+            while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') {
+                end--;
+            }
+
+            // Skip empty lines
+            if (start == end) {
+                continue;
+            }
+
+            lineStart = start;
+            lineEnd = end;
+            splitFields();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Splits the current line on commas, dropping trailing empty fields.
+     */
+    private void splitFields() {
+        fieldCount = 0;
+        int fieldStart = lineStart;
+        for (int i = lineStart; i <= lineEnd; i++) {
+            if (i == lineEnd || buffer.get(i) == ',') {
+                if (fieldCount == fieldStarts.length) {
+                    fieldStarts = java.util.Arrays.copyOf(fieldStarts, fieldCount * 2);
+                    fieldEnds = java.util.Arrays.copyOf(fieldEnds, fieldCount * 2);
+                }
+                fieldStarts[fieldCount] = fieldStart;
+                fieldEnds[fieldCount] = i;
+                fieldCount++;
+                fieldStart = i + 1;
+            }
+        }
+
+        // String.split removes trailing empty strings
+        while (fieldCount > 0 && fieldStarts[fieldCount - 1] == fieldEnds[fieldCount - 1]) {
+            fieldCount--;
+        }
+    }
+
+    /**
+     * @return Number of fields on the current line
+     */
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * @param index Field number (0-based)
+     * @return true if the field is empty after trimming
+     */
+    public boolean isFieldBlank(int index) {
+        int start = trimmedStart(index);
+        return start == trimmedEnd(index, start);
+    }
+
+    /**
+     * Returns a field as a trimmed String. Only call this for fields that are kept.
+     *
+     * @param index Field number (0-based)
+     * @return The trimmed field value
+     */
+    public String fieldString(int index) {
+        int start = trimmedStart(index);
+        return decode(start, trimmedEnd(index, start) - start);
+    }
+
+    /**
+     * Parses a field as a double without creating a String for it.
+     *
+     * Plain decimals such as "85", "-3.25" or "+.5" are parsed straight from
+     * the bytes. The result is the same double Double.parseDouble would give,
+     * because the digits fit exactly in a long and a single division by an
+     * exact power of ten is correctly rounded. Anything else (exponents,
+     * "NaN", very long numbers, ...) is handed to Double.parseDouble so the
+     * accepted syntax is unchanged.
+     *
+     * @param index Field number (0-based)
+     * @return The parsed value
+     * @throws NumberFormatException if the field is not a valid number
+     */
+    public double fieldDouble(int index) {
+        int start = trimmedStart(index);
+        int end = trimmedEnd(index, start);
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        int unsignedStart = i;
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false;
+        boolean simple = true;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                if (++digits > 18) {
+                    simple = false;
+                    break;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (seenPoint) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                simple = false;
+                break;
+            }
+        }
+
+        if (simple && digits > 0 && mantissa <= MAX_EXACT_MANTISSA && fractionDigits < POWERS_OF_TEN.length) {
+            double value = mantissa / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+
+        // Double.parseDouble only accepts a digit, '.', "NaN" or "Infinity" after the sign
+        byte first = unsignedStart < end ? buffer.get(unsignedStart) : 0;
+        if ((first < '0' || first > '9') && first != '.' && first != 'N' && first != 'I') {
+            throw NOT_A_NUMBER;
+        }
+
+        // Unusual syntax: let the standard parser decide
+        return Double.parseDouble(decode(start, end - start));
+    }
+
+    /**
+     * Returns the whole current line (trimmed) as a String, e.g. for a warning.
+     *
+     * @return The current line
+     */
+    public String lineString() {
+        return decode(lineStart, lineEnd - lineStart);
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+
+    private int trimmedStart(int index) {
+        int start = fieldStarts[index];
+        int end = fieldEnds[index];
+        while (start < end && (buffer.get(start) & 0xFF) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private int trimmedEnd(int index, int start) {
+        int end = fieldEnds[index];
+        while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private String decode(int start, int length) {
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(start, scratch, 0, length);
+        return new String(scratch, 0, length, charset);
+    }
+
+    /**
+     * Makes sure the byte at the given file offset is mapped.
+     *
+     * @return Index of that byte within the current window
+     */
+    private int ensureMapped(long offset) throws IOException {
+        if (buffer == null || offset < windowStart || offset >= windowStart + buffer.limit()) {
+            return mapWindow(offset);
+        }
+        return (int) (offset - windowStart);
+    }
+
+    /**
+     * Maps a new window that starts at the given file offset.
+     *
+     * @return Index of that offset within the new window (always 0)
+     */
+    private int mapWindow(long offset) throws IOException {
+        long size = Math.min(WINDOW_SIZE, rangeEnd - offset);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+        windowStart = offset;
+        return 0;
+    }
+}
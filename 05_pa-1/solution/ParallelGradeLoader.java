@@ -0,0 +1,249 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * ParallelGradeLoader reads a grade file on all cores.
+ *
+ * The file is cut into chunks at newline boundaries and every chunk is parsed
+ * by its own fork-join task with a MappedCsvReader. Each task sorts its
+ * records into partitions by student ID, so the merge can also run in
+ * parallel: one task per partition replays that partition's records chunk by
+ * chunk, in file order. Because a given ID always lands in the same partition
+ * and partitions are replayed in file order, the last line for an ID still
+ * wins, exactly like grades.put in readGradeData.
+ *
+ * Warnings are collected per chunk and printed in file order once parsing is
+ * done, so the output is the same as the sequential loader's.
+ */
+class ParallelGradeLoader {
+    // Chunks per worker thread, so faster threads can pick up extra work
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // Chunks smaller than this are not worth a separate task
+    private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a loader that runs on the common fork-join pool.
+     */
+    public ParallelGradeLoader() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a loader that runs on the given pool.
+     *
+     * @param pool The pool to parse and merge on
+     */
+    public ParallelGradeLoader(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Reads grade data in parallel. Accepts, rejects and warns about lines
+     * exactly like readGradeData.
+     *
+     * @param filename The name of the file containing grade data
+     * @return Map of student ID to GradeRecord objects
+     * @throws IOException if the file cannot be found or read
+     */
+    public Map<String, GradeRecord> load(String filename) throws IOException {
+        return load(filename, null);
+    }
+
+    /**
+     * Reads grade data in parallel, adding each chunk's line count and
+     * parse time to a metrics phase.
+     *
+     * @param filename The name of the file containing grade data
+     * @param phase The phase to count rows in, or null
+     * @return Map of student ID to GradeRecord objects
+     * @throws IOException if the file cannot be found or read
+     */
+    Map<String, GradeRecord> load(String filename, GradeRunMetrics.Phase phase) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(filename + " (No such file or directory)");
+        }
+
+        try {
+            long[] bounds = splitAtNewlines(channel, pool.getParallelism() * CHUNKS_PER_THREAD);
+            int partitions = Integer.highestOneBit(Math.max(1, pool.getParallelism())) * 2;
+
+            // Stage 1: parse every chunk in parallel
+            List<ChunkTask> chunks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                chunks.add(new ChunkTask(channel, bounds[i], bounds[i + 1], partitions));
+            }
+            for (ChunkTask chunk : chunks) {
+                pool.execute(chunk);
+            }
+
+            // Print warnings in file order, as the sequential loader would
+            long records = 0;
+            for (ChunkTask chunk : chunks) {
+                ChunkResult result;
+                try {
+                    result = chunk.join();
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                for (int i = 0; i < result.rejectReasons.size(); i++) {
+                    GradeRunMetrics.reject(result.rejectReasons.get(i), result.rejectedLines.get(i));
+                }
+                records += result.records;
+                if (phase != null) {
+                    phase.rows(result.lines, result.nanos);
+                }
+            }
+
+            // Stage 2: replay each partition in file order so the last line wins
+            Map<String, GradeRecord> grades = new ConcurrentHashMap<>((int) Math.min(Integer.MAX_VALUE, records));
+            List<ForkJoinTask<?>> merges = new ArrayList<>();
+            for (int p = 0; p < partitions; p++) {
+                final int partition = p;
+                merges.add(pool.submit(() -> {
+                    for (ChunkTask chunk : chunks) {
+                        for (GradeRecord record : chunk.join().partitions.get(partition)) {
+                            grades.put(record.getStudentId(), record);
+                        }
+                    }
+                }));
+            }
+            for (ForkJoinTask<?> merge : merges) {
+                merge.join();
+            }
+
+            return grades;
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Splits a file into roughly equal byte ranges that each start at the
+     * beginning of a line.
+     *
+     * @param channel The open file
+     * @param targetChunks How many chunks to aim for
+     * @return Chunk boundaries: chunk i is [bounds[i], bounds[i + 1])
+     * @throws IOException if the file cannot be read
+     */
+    static long[] splitAtNewlines(FileChannel channel, int targetChunks) throws IOException {
+        long size = channel.size();
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, size / Math.max(1, targetChunks));
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long next = chunkSize;
+        while (next < size) {
+            // Move the cut forward to just after the next newline
+            long cut = -1;
+            long offset = next;
+            while (cut < 0 && offset < size) {
+                probe.clear();
+                int read = channel.read(probe, offset);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        cut = offset + i + 1;
+                        break;
+                    }
+                }
+                offset += read;
+            }
+            if (cut < 0 || cut >= size) {
+                break;
+            }
+            bounds.add(cut);
+            next = cut + chunkSize;
+        }
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Records and warnings from one chunk, in file order.
+     */
+    private static class ChunkResult {
+        List<List<GradeRecord>> partitions;
+        List<RejectReason> rejectReasons = new ArrayList<>();
+        List<String> rejectedLines = new ArrayList<>();
+        long records;
+        long lines;
+        long nanos;
+
+        void reject(RejectReason reason, String line) {
+            rejectReasons.add(reason);
+            rejectedLines.add(line);
+        }
+    }
+
+    /**
+     * Parses one chunk of the grade file.
+     */
+    private static class ChunkTask extends RecursiveTask<ChunkResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final int partitionCount;
+
+        ChunkTask(FileChannel channel, long start, long end, int partitionCount) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.partitionCount = partitionCount;
+        }
+
+        @Override
+        protected ChunkResult compute() {
+            long startNanos = System.nanoTime();
+            ChunkResult result = new ChunkResult();
+            result.partitions = new ArrayList<>(partitionCount);
+            for (int p = 0; p < partitionCount; p++) {
+                result.partitions.add(new ArrayList<>());
+            }
+
+            GradeLineValidator validator = new GradeLineValidator();
+            try (MappedCsvReader reader = new MappedCsvReader(channel, start, end)) {
+                while (reader.nextLine()) {
+                    result.lines++;
+
+                    // Validate the field count, numbers and score range
+                    RejectReason reason = validator.check(reader);
+                    if (reason != null) {
+                        result.reject(reason, reader.lineString());
+                        continue;
+                    }
+
+                    String id = reader.fieldString(0);
+                    int partition = Hashing.spread(id.hashCode()) & (partitionCount - 1);
+                    result.partitions.get(partition).add(new GradeRecord(id, validator.score(0), validator.score(1),
+                                                                         validator.score(2)));
+                    result.records++;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            result.nanos = System.nanoTime() - startNanos;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Why an input line or a student was left out of the reports.
+ *
+ * Every reader reports a rejection through GradeRunMetrics.reject, which
+ * counts it under its reason and prints the warning built here, so the
+ * warning text is defined in one place and stays word for word the same
+ * in every mode.
+ */
+enum RejectReason {
+    INVALID_LINE_FORMAT("Invalid line format", " - "),
+    EMPTY_FIELDS("Empty fields in line", " - "),
+    INVALID_GRADE_LINE_FORMAT("Invalid grade line format", " - "),
+    INVALID_SCORE_RANGE("Invalid score range in line", " - "),
+    INVALID_NUMBER_FORMAT("Invalid number format in line", " - "),
+    INVALID_DELTA_LINE("Invalid delta line", " - "),
+    UNKNOWN_DELTA_STUDENT("Unknown student ID in delta line", " - "),
+    DELTA_ALREADY_GRADED("Student already has grades for delta line", " - "),
+    DELTA_NOT_GRADED("Student has no grades for delta line", " - "),
+    NO_GRADE_DATA("No grade data found for student", " ");
+
+    private final String label;
+    private final String separator;
+
+    RejectReason(String label, String separator) {
+        this.label = label;
+        this.separator = separator;
+    }
+
+    /**
+     * @return The warning text without the detail, for example "Invalid line format"
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Builds the warning printed for a rejection.
+     *
+     * @param detail The rejected line, or for NO_GRADE_DATA the student's
+     *               name and ID as "Name (ID: id)"
+     * @return The full warning line
+     */
+    public String warning(String detail) {
+        return "Warning: " + label + separator + detail;
+    }
+
+    /**
+     * Detail text for a NO_GRADE_DATA warning.
+     *
+     * @param student The student without grades
+     * @return The student's name and ID as "Name (ID: id)"
+     */
+    static String studentDetail(Student student) {
+        return student.getName() + " (ID: " + student.getId() + ")";
+    }
+}
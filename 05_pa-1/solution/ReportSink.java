@@ -0,0 +1,43 @@
+import java.io.*;
+
+/**
+ * A ReportSink receives graded students one at a time and turns them into
+ * an output report.
+ *
+ * Sinks let the grade manager produce every report from a single pass over
+ * the students: each graded student is handed to all sinks, and each sink
+ * keeps only what it needs (running totals, counts, or nothing at all).
+ * When the pass is over, finish() writes anything that was held back.
+ */
+interface ReportSink {
+    /**
+     * Receives one graded student. Scores are passed as primitives so that
+     * callers holding columnar data do not need to build a GradeRecord.
+     *
+     * @param student The student being reported on
+     * @param assignmentScore The student's assignment score
+     * @param midtermScore The student's midterm score
+     * @param finalExamScore The student's final exam score
+     * @param finalScore The weighted final score
+     * @param letterGrade The letter grade for the final score
+     * @throws IOException if the sink cannot write its output
+     */
+    void accept(Student student, double assignmentScore, double midtermScore, double finalExamScore,
+                double finalScore, String letterGrade) throws IOException;
+
+    /**
+     * Called once after the last student; writes any remaining output.
+     *
+     * @throws IOException if the sink cannot write its output
+     */
+    void finish() throws IOException;
+
+    /**
+     * Convenience overload for callers that already built a StudentReport.
+     */
+    default void accept(StudentReport report) throws IOException {
+        GradeRecord grades = report.getGrades();
+        accept(report.getStudent(), grades.getAssignmentScore(), grades.getMidtermScore(), grades.getFinalScore(),
+               report.getFinalScore(), report.getLetterGrade());
+    }
+}
@@ -0,0 +1,78 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * SegmentedReportReader pulls single student reports back out of the files
+ * written by SegmentedReportWriter.
+ */
+class SegmentedReportReader {
+    private final String baseName;
+    private final Map<String, long[]> index = new HashMap<>();
+
+    /**
+     * Loads the index for a set of segment files.
+     *
+     * @param baseName Prefix that was given to SegmentedReportWriter
+     * @throws IOException if the index cannot be read
+     */
+    public SegmentedReportReader(String baseName) throws IOException {
+        this.baseName = baseName;
+
+        BufferedReader reader = new BufferedReader(new FileReader(SegmentedReportWriter.indexFileName(baseName)));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                // A later entry for the same ID replaces an earlier one;
+                // segment -1 means the report was removed
+                long segment = Long.parseLong(parts[1]);
+                if (segment < 0) {
+                    index.remove(parts[0]);
+                } else {
+                    index.put(parts[0], new long[] {segment, Long.parseLong(parts[2]), Long.parseLong(parts[3])});
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return Number of reports in the index
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Reads one student's report.
+     *
+     * @param studentId The student ID
+     * @return The report text, or null if the student has no report
+     * @throws IOException if the segment cannot be read
+     */
+    public String readReport(String studentId) throws IOException {
+        long[] entry = index.get(studentId);
+        if (entry == null) {
+            return null;
+        }
+
+        String segmentFile = SegmentedReportWriter.segmentFileName(baseName, (int) entry[0]);
+        try (FileChannel channel = FileChannel.open(Paths.get(segmentFile), StandardOpenOption.READ)) {
+            ByteBuffer bytes = ByteBuffer.allocate((int) entry[2]);
+            long position = entry[1];
+            while (bytes.hasRemaining()) {
+                int read = channel.read(bytes, position);
+                if (read < 0) {
+                    throw new EOFException("Segment " + segmentFile + " is shorter than its index says");
+                }
+                position += read;
+            }
+            return new String(bytes.array(), Charset.defaultCharset());
+        }
+    }
+}
@@ -0,0 +1,245 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+
+/**
+ * SegmentedReportWriter writes every individual student report into a few
+ * large segment files instead of one file per student.
+ *
+ * Reports are formatted into one reusable byte buffer (numbers with
+ * FixedDecimalFormatter instead of printf) and the buffer is written to the
+ * current segment file only when it fills up. A new segment is started once
+ * a segment reaches its size limit. The text of each report is exactly what
+ * IndividualReportSink would put in student_ID_report.txt.
+ *
+ * An index file records where each report lives, one line per student:
+ *
+ *     ID,segment,offset,length
+ *
+ * so a single report can be pulled out again with SegmentedReportReader.
+ *
+ * A writer opened with append() leaves the existing segments alone: it
+ * writes the reports it is given into a new segment and adds their entries
+ * to the end of the index, where they replace the earlier entries for the
+ * same IDs. remove() adds an entry with segment -1, which means the
+ * student no longer has a report. A full run writes a fresh index and
+ * deletes the segments appended after it.
+ */
+class SegmentedReportWriter implements ReportSink {
+    // Size of the reusable output buffer
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    // Start a new segment once the current one reaches this size
+    private static final long DEFAULT_SEGMENT_LIMIT = 256L * 1024 * 1024;
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+
+    private final String baseName;
+    private final long segmentLimit;
+    private final Charset charset = Charset.defaultCharset();
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int buffered = 0;
+
+    private FileChannel segment;
+    private int segmentNumber = -1;
+    private long segmentOffset = 0;
+
+    private final BufferedOutputStream indexOut;
+    private final boolean appending;
+    private int reportCount = 0;
+
+    /**
+     * Creates a writer that produces baseName_000.seg, baseName_001.seg, ...
+     * and the index file baseName.idx.
+     *
+     * @param baseName Prefix for the segment and index file names
+     * @throws IOException if the index file cannot be created
+     */
+    public SegmentedReportWriter(String baseName) throws IOException {
+        this(baseName, DEFAULT_SEGMENT_LIMIT);
+    }
+
+    /**
+     * Creates a writer with a custom segment size limit.
+     *
+     * @param baseName Prefix for the segment and index file names
+     * @param segmentLimit Segment size (bytes) after which a new segment is started
+     * @throws IOException if the index file cannot be created
+     */
+    public SegmentedReportWriter(String baseName, long segmentLimit) throws IOException {
+        this(baseName, segmentLimit, false);
+    }
+
+    private SegmentedReportWriter(String baseName, long segmentLimit, boolean append) throws IOException {
+        this.baseName = baseName;
+        this.segmentLimit = segmentLimit;
+        this.appending = append;
+        this.indexOut = new BufferedOutputStream(new FileOutputStream(indexFileName(baseName), append), 1 << 16);
+        if (append) {
+            // New segments go after the existing ones
+            while (Files.exists(Paths.get(segmentFileName(baseName, segmentNumber + 1)))) {
+                segmentNumber++;
+            }
+        }
+    }
+
+    /**
+     * Opens an existing set of segment files to add or replace reports.
+     *
+     * @param baseName Prefix that was given to the writer that created them
+     * @return A writer that appends to the index
+     * @throws IOException if there is no index to append to
+     */
+    public static SegmentedReportWriter append(String baseName) throws IOException {
+        if (!new File(indexFileName(baseName)).exists()) {
+            throw new FileNotFoundException(indexFileName(baseName));
+        }
+        return new SegmentedReportWriter(baseName, DEFAULT_SEGMENT_LIMIT, true);
+    }
+
+    static String indexFileName(String baseName) {
+        return baseName + ".idx";
+    }
+
+    static String segmentFileName(String baseName, int segmentNumber) {
+        return String.format("%s_%03d.seg", baseName, segmentNumber);
+    }
+
+    @Override
+    public void accept(Student student, double assignmentScore, double midtermScore, double finalExamScore,
+                       double finalScore, String letterGrade) throws IOException {
+        if (segment == null || segmentOffset >= segmentLimit) {
+            startSegment();
+        }
+
+        // Reports are small; make sure one fits in the rest of the buffer
+        byte[] name = encode(student.getName());
+        byte[] id = encode(student.getId());
+        byte[] email = encode(student.getEmail());
+        int worstCase = 160 + 2 * id.length + name.length + email.length + letterGrade.length() * 4;
+        if (buffered + worstCase > buffer.length) {
+            flushBuffer();
+        }
+        if (worstCase > buffer.length) {
+            throw new IOException("Report for student " + student.getId() + " is too large");
+        }
+
+        int start = buffered;
+        int pos = buffered;
+        pos = put(pos, "STUDENT REPORT - ");
+        pos = put(pos, name);
+        pos = put(pos, " (ID: ");
+        pos = put(pos, id);
+        pos = put(pos, ")");
+        pos = put(pos, LINE_SEPARATOR);
+        pos = put(pos, "Email: ");
+        pos = put(pos, email);
+        pos = put(pos, LINE_SEPARATOR);
+        pos = put(pos, "Assignment Score: ");
+        pos = FixedDecimalFormatter.format(buffer, pos, assignmentScore, 1);
+        pos = put(pos, LINE_SEPARATOR);
+        pos = put(pos, "Midterm Score: ");
+        pos = FixedDecimalFormatter.format(buffer, pos, midtermScore, 1);
+        pos = put(pos, LINE_SEPARATOR);
+        pos = put(pos, "Final Score: ");
+        pos = FixedDecimalFormatter.format(buffer, pos, finalExamScore, 1);
+        pos = put(pos, LINE_SEPARATOR);
+        pos = put(pos, "Final Grade: ");
+        pos = FixedDecimalFormatter.format(buffer, pos, finalScore, 2);
+        pos = put(pos, " (");
+        pos = put(pos, encode(letterGrade));
+        pos = put(pos, ")");
+        pos = put(pos, LINE_SEPARATOR);
+        buffered = pos;
+
+        // Record where this report lives
+        int length = pos - start;
+        String entry = student.getId() + "," + segmentNumber + "," + segmentOffset + "," + length + "\n";
+        indexOut.write(entry.getBytes(charset));
+        segmentOffset += length;
+        reportCount++;
+    }
+
+    /**
+     * Records that a student no longer has a report.
+     *
+     * @param studentId The student ID
+     * @throws IOException if the index cannot be written
+     */
+    public void remove(String studentId) throws IOException {
+        indexOut.write((studentId + ",-1,0,0\n").getBytes(charset));
+    }
+
+    @Override
+    public void finish() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            if (segment != null) {
+                segment.close();
+            }
+            indexOut.close();
+        }
+        if (!appending) {
+            // Segments appended after an earlier full run are no longer indexed
+            int stale = segmentNumber + 1;
+            while (Files.deleteIfExists(Paths.get(segmentFileName(baseName, stale)))) {
+                stale++;
+            }
+        }
+    }
+
+    /**
+     * @return Number of reports written so far
+     */
+    public int getReportCount() {
+        return reportCount;
+    }
+
+    /**
+     * @return Number of segment files created so far
+     */
+    public int getSegmentCount() {
+        return segmentNumber + 1;
+    }
+
+    private void startSegment() throws IOException {
+        flushBuffer();
+        if (segment != null) {
+            segment.close();
+        }
+        segmentNumber++;
+        segmentOffset = 0;
+        segment = FileChannel.open(Paths.get(segmentFileName(baseName, segmentNumber)),
+                                   StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                   StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private void flushBuffer() throws IOException {
+        ByteBuffer pending = ByteBuffer.wrap(buffer, 0, buffered);
+        while (pending.hasRemaining()) {
+            segment.write(pending);
+        }
+        buffered = 0;
+    }
+
+    private byte[] encode(String text) {
+        return text.getBytes(charset);
+    }
+
+    private int put(int pos, byte[] bytes) {
+        System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+        return pos + bytes.length;
+    }
+
+    // Fixed labels are plain ASCII
+    private int put(int pos, String ascii) {
+        for (int i = 0; i < ascii.length(); i++) {
+            buffer[pos++] = (byte) ascii.charAt(i);
+        }
+        return pos;
+    }
+}
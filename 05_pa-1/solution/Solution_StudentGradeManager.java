@@ -19,25 +19,103 @@ public class Solution_StudentGradeManager {
     private static final double MIDTERM_WEIGHT = 0.25;
     private static final double FINAL_WEIGHT = 0.35;
     
+    // Letter grades indexed by bucket (number of cutoffs a score reaches)
+    static final String[] LETTERS_BY_BUCKET = {"F", "D", "C", "B", "A"};
+    
     /**
      * Main method - orchestrates the entire grade management process
+     * 
+     * With no arguments the grades are processed as in the assignment.
+     * See GradeRunOptions for the options that select faster paths.
      */
     public static void main(String[] args) {
+        GradeRunOptions options;
+        try {
+            options = GradeRunOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+        
+        if (options.getReportLookupId() != null) {
+            printSegmentedReport(options.getReportLookupId());
+            return;
+        }
+        
         System.out.println("=== Student Grade Manager ===");
         System.out.println("Reading student data and processing grades...\n");
         
+        if (options.isAsyncWarnings()) {
+            GradeRunMetrics.useAsyncWarnings(new AsyncWarningLog(System.out, options.getWarningRate()));
+        }
+        
         try {
+            if (options.getDeltaFile() != null) {
+                processGradeDelta(options);
+                System.out.println("Grade processing completed successfully!");
+                return;
+            }
+            
+            if (options.getMemoryBudget() > 0) {
+                processGradesJoined("students.txt", "grades.txt", options);
+                System.out.println("Grade processing completed successfully!");
+                return;
+            }
+            
+            if (options.isStreaming()) {
+                processGradesStreaming("students.txt", "grades.txt", options);
+                System.out.println("Grade processing completed successfully!");
+                return;
+            }
+            
+            if (options.isCompact()) {
+                // Compact in-memory layout: no String or record objects per student
+                CompactGradeBook book = CompactGradeBook.load("students.txt", "grades.txt");
+                book.grade(createReportSinks(options));
+                
+                System.out.println("Grade processing completed successfully!");
+                return;
+            }
+            
+            // Warm start: both files were already parsed into a snapshot
+            GradeSnapshot snapshot = options.getSnapshotFile() != null ? GradeSnapshot.load(options.getSnapshotFile())
+                                                                        : null;
+            
             // Part 1: Read and validate student data
-            List<Student> students = readStudentData("students.txt");
+            List<Student> students;
+            if (snapshot != null) {
+                students = snapshot.getStudents();
+            } else {
+                students = options.isMapped() ? readStudentDataMapped("students.txt")
+                                              : readStudentData("students.txt");
+            }
             System.out.println("Successfully read " + students.size() + " student records.\n");
             
+            if (options.isColumnar()) {
+                // Part 2 and 3 over parallel score arrays
+                ColumnarGradeStore gradeStore = snapshot != null ? snapshot.getGradeStore()
+                                                                 : readGradeDataColumnar("grades.txt");
+                System.out.println("Successfully read " + gradeStore.size() + " grade records.\n");
+                
+                GradedRoster roster = calculateFinalGrades(students, gradeStore);
+                generateReports(roster, options);
+                
+                System.out.println("Grade processing completed successfully!");
+                return;
+            }
+            
             // Part 2: Read and process grades
-            Map<String, GradeRecord> grades = readGradeData("grades.txt");
+            Map<String, GradeRecord> grades = snapshot != null ? snapshot.getGrades()
+                                                               : loadGrades("grades.txt", options);
             System.out.println("Successfully read " + grades.size() + " grade records.\n");
             
             // Part 3: Calculate final grades and generate reports
             List<StudentReport> reports = calculateFinalGrades(students, grades);
-            generateReports(reports);
+            generateReports(reports, options);
+            
+            if (options.getStateFile() != null) {
+                IncrementalGradeState.build(students, grades, options.isSegmented()).save(options.getStateFile());
+            }
             
             System.out.println("Grade processing completed successfully!");
             
@@ -46,6 +124,12 @@ public class Solution_StudentGradeManager {
             System.out.println("Please ensure students.txt and grades.txt are in the same directory.");
         } catch (Exception e) {
             System.out.println("Error: " + e.getMessage());
+        } finally {
+            try {
+                GradeRunMetrics.finish(options.getMetricsFile());
+            } catch (IOException e) {
+                System.out.println("Error writing metrics: " + e.getMessage());
+            }
         }
     }
     
@@ -68,6 +152,7 @@ public class Solution_StudentGradeManager {
         // Create File object and Scanner
         File file = new File(filename);
         Scanner scanner = new Scanner(file);
+        GradeRunMetrics.Phase phase = GradeRunMetrics.start("readStudentData", filename);
         
         try {
             // Read file line by line
@@ -78,39 +163,70 @@ public class Solution_StudentGradeManager {
                 if (line.isEmpty()) {
                     continue;
                 }
+                phase.row();
                 
-                // Split line by comma
-                String[] parts = line.split(",");
-                
-                // Validate that we have exactly 3 parts
-                if (parts.length != 3) {
-                    System.out.println("Warning: Invalid line format - " + line);
-                    continue;
-                }
-                
-                // Extract and validate data
-                String id = parts[0].trim();
-                String name = parts[1].trim();
-                String email = parts[2].trim();
-                
-                // Basic validation
-                if (id.isEmpty() || name.isEmpty() || email.isEmpty()) {
-                    System.out.println("Warning: Empty fields in line - " + line);
-                    continue;
+                // Parse and validate the line
+                Student student = parseStudentLine(line);
+                if (student != null) {
+                    students.add(student);
                 }
-                
-                // Create Student object and add to list
-                Student student = new Student(id, name, email);
-                students.add(student);
             }
         } finally {
             // Always close the scanner
             scanner.close();
+            phase.end();
         }
         
         return students;
     }
     
+    /**
+     * Parses and validates a single trimmed, non-empty line of student data.
+     * Prints a warning and returns null if the line is invalid.
+     * 
+     * @param line One line from the student file
+     * @return The parsed Student, or null if the line was rejected
+     */
+    static Student parseStudentLine(String line) {
+        return parseStudentLine(line, true);
+    }
+    
+    /**
+     * Parses a student line, optionally without printing warnings (for a
+     * second pass over a file whose warnings were already reported).
+     * 
+     * @param line One line from the student file
+     * @param warn Whether to print a warning for a rejected line
+     * @return The parsed Student, or null if the line was rejected
+     */
+    static Student parseStudentLine(String line, boolean warn) {
+        // Split line by comma
+        String[] parts = line.split(",");
+        
+        // Validate that we have exactly 3 parts
+        if (parts.length != 3) {
+            if (warn) {
+                GradeRunMetrics.reject(RejectReason.INVALID_LINE_FORMAT, line);
+            }
+            return null;
+        }
+        
+        // Extract and validate data
+        String id = parts[0].trim();
+        String name = parts[1].trim();
+        String email = parts[2].trim();
+        
+        // Basic validation
+        if (id.isEmpty() || name.isEmpty() || email.isEmpty()) {
+            if (warn) {
+                GradeRunMetrics.reject(RejectReason.EMPTY_FIELDS, line);
+            }
+            return null;
+        }
+        
+        return new Student(id, name, email);
+    }
+    
     /**
      * Part 2: Grade Calculator
      * Reads grade data from a file and processes student scores.
@@ -130,6 +246,7 @@ public class Solution_StudentGradeManager {
         // Create File object and Scanner
         File file = new File(filename);
         Scanner scanner = new Scanner(file);
+        GradeRunMetrics.Phase phase = GradeRunMetrics.start("readGradeData", filename);
         
         try {
             // Read file line by line
@@ -140,48 +257,223 @@ public class Solution_StudentGradeManager {
                 if (line.isEmpty()) {
                     continue;
                 }
+                phase.row();
+                
+                // Parse and validate the line
+                GradeRecord gradeRecord = parseGradeLine(line);
+                if (gradeRecord != null) {
+                    grades.put(gradeRecord.getStudentId(), gradeRecord);
+                }
+            }
+        } finally {
+            // Always close the scanner
+            scanner.close();
+            phase.end();
+        }
+        
+        return grades;
+    }
+    
+    /**
+     * Parses and validates a single trimmed, non-empty line of grade data.
+     * Prints a warning and returns null if the line is invalid.
+     * 
+     * @param line One line from the grade file
+     * @return The parsed GradeRecord, or null if the line was rejected
+     */
+    static GradeRecord parseGradeLine(String line) {
+        return parseGradeLine(line, true);
+    }
+    
+    /**
+     * Parses a grade line, optionally without printing warnings.
+     * 
+     * @param line One line from the grade file
+     * @param warn Whether to print a warning for a rejected line
+     * @return The parsed GradeRecord, or null if the line was rejected
+     */
+    static GradeRecord parseGradeLine(String line, boolean warn) {
+        // Split line by comma and validate the field count, numbers and score range
+        String[] parts = line.split(",");
+        GradeLineValidator validator = new GradeLineValidator();
+        RejectReason reason = validator.check(parts);
+        if (reason != null) {
+            if (warn) {
+                GradeRunMetrics.reject(reason, line);
+            }
+            return null;
+        }
+        
+        return new GradeRecord(parts[0].trim(), validator.score(0), validator.score(1), validator.score(2));
+    }
+    
+    /**
+     * Reads student data like readStudentData, but through MappedCsvReader.
+     * Lines are split directly in the mapped file and Strings are only created
+     * for the three kept fields (or for a rejected line's warning).
+     * 
+     * @param filename The name of the file containing student data
+     * @return List of Student objects
+     * @throws IOException if the file cannot be found or read
+     */
+    public static List<Student> readStudentDataMapped(String filename) throws IOException {
+        return readStudentDataMapped(filename, System.out);
+    }
+    
+    /**
+     * Reads student data through MappedCsvReader, printing progress and
+     * warnings to the given log instead of System.out.
+     * 
+     * @param filename The name of the file containing student data
+     * @param log Where to print progress and warnings
+     * @return List of Student objects
+     * @throws IOException if the file cannot be found or read
+     */
+    static List<Student> readStudentDataMapped(String filename, PrintStream log) throws IOException {
+        List<Student> students = new ArrayList<>();
+        
+        log.println("Reading student data from " + filename + "...");
+        
+        MappedCsvReader reader = new MappedCsvReader(filename);
+        GradeRunMetrics.Phase phase = GradeRunMetrics.start("readStudentDataMapped", filename);
+        
+        try {
+            // Empty lines are skipped by the reader
+            while (reader.nextLine()) {
+                phase.row();
+                
+                // Validate that we have exactly 3 parts
+                if (reader.fieldCount() != 3) {
+                    GradeRunMetrics.reject(RejectReason.INVALID_LINE_FORMAT, reader.lineString(), log);
+                    continue;
+                }
                 
-                // Split line by comma
-                String[] parts = line.split(",");
+                // Basic validation
+                if (reader.isFieldBlank(0) || reader.isFieldBlank(1) || reader.isFieldBlank(2)) {
+                    GradeRunMetrics.reject(RejectReason.EMPTY_FIELDS, reader.lineString(), log);
+                    continue;
+                }
                 
-                // Validate that we have exactly 4 parts
-                if (parts.length != 4) {
-                    System.out.println("Warning: Invalid grade line format - " + line);
+                Student student = new Student(reader.fieldString(0), reader.fieldString(1), reader.fieldString(2));
+                students.add(student);
+            }
+        } finally {
+            reader.close();
+            phase.end();
+        }
+        
+        return students;
+    }
+    
+    /**
+     * Reads grade data like readGradeData, but through MappedCsvReader.
+     * Scores are parsed straight from the mapped bytes, so the only object
+     * created for a valid line is its ID and GradeRecord.
+     * 
+     * @param filename The name of the file containing grade data
+     * @return Map of student ID to GradeRecord objects
+     * @throws IOException if the file cannot be found or read
+     */
+    public static Map<String, GradeRecord> readGradeDataMapped(String filename) throws IOException {
+        Map<String, GradeRecord> grades = new HashMap<>();
+        
+        System.out.println("Reading grade data from " + filename + "...");
+        
+        MappedCsvReader reader = new MappedCsvReader(filename);
+        GradeLineValidator validator = new GradeLineValidator();
+        GradeRunMetrics.Phase phase = GradeRunMetrics.start("readGradeDataMapped", filename);
+        
+        try {
+            // Empty lines are skipped by the reader
+            while (reader.nextLine()) {
+                phase.row();
+                
+                // Validate the field count, numbers and score range
+                RejectReason reason = validator.check(reader);
+                if (reason != null) {
+                    GradeRunMetrics.reject(reason, reader.lineString());
                     continue;
                 }
                 
-                try {
-                    // Extract and parse data
-                    String id = parts[0].trim();
-                    double assignmentScore = Double.parseDouble(parts[1].trim());
-                    double midtermScore = Double.parseDouble(parts[2].trim());
-                    double finalScore = Double.parseDouble(parts[3].trim());
-                    
-                    // Validate scores are within valid range
-                    if (assignmentScore < 0 || assignmentScore > 100 ||
-                        midtermScore < 0 || midtermScore > 100 ||
-                        finalScore < 0 || finalScore > 100) {
-                        System.out.println("Warning: Invalid score range in line - " + line);
-                        continue;
-                    }
-                    
-                    // Create GradeRecord object and add to map
-                    GradeRecord gradeRecord = new GradeRecord(id, assignmentScore, midtermScore, finalScore);
-                    grades.put(id, gradeRecord);
-                    
-                } catch (NumberFormatException e) {
-                    System.out.println("Warning: Invalid number format in line - " + line);
+                String id = reader.fieldString(0);
+                grades.put(id, new GradeRecord(id, validator.score(0), validator.score(1), validator.score(2)));
+            }
+        } finally {
+            reader.close();
+            phase.end();
+        }
+        
+        return grades;
+    }
+    
+    /**
+     * Reads grade data into a ColumnarGradeStore. Lines are validated and
+     * warned about exactly like readGradeData, but each valid line only adds
+     * a row of primitive scores (plus its ID) instead of a GradeRecord.
+     * 
+     * @param filename The name of the file containing grade data
+     * @return Columnar store of student grades
+     * @throws IOException if the file cannot be found or read
+     */
+    public static ColumnarGradeStore readGradeDataColumnar(String filename) throws IOException {
+        ColumnarGradeStore grades = new ColumnarGradeStore();
+        
+        System.out.println("Reading grade data from " + filename + "...");
+        
+        MappedCsvReader reader = new MappedCsvReader(filename);
+        GradeLineValidator validator = new GradeLineValidator();
+        GradeRunMetrics.Phase phase = GradeRunMetrics.start("readGradeDataColumnar", filename);
+        
+        try {
+            while (reader.nextLine()) {
+                phase.row();
+                
+                // Validate the field count, numbers and score range
+                RejectReason reason = validator.check(reader);
+                if (reason != null) {
+                    GradeRunMetrics.reject(reason, reader.lineString());
                     continue;
                 }
+                
+                grades.put(reader.fieldString(0), validator.score(0), validator.score(1), validator.score(2));
             }
         } finally {
-            // Always close the scanner
-            scanner.close();
+            reader.close();
+            phase.end();
         }
         
         return grades;
     }
     
+    /**
+     * Reads grade data like readGradeData, but parses the file in chunks on
+     * all cores. Duplicate IDs are resolved the same way (the last line in
+     * the file wins) and warnings are printed in file order.
+     * 
+     * @param filename The name of the file containing grade data
+     * @return Map of student ID to GradeRecord objects
+     * @throws IOException if the file cannot be found or read
+     */
+    public static Map<String, GradeRecord> readGradeDataParallel(String filename) throws IOException {
+        System.out.println("Reading grade data from " + filename + "...");
+        GradeRunMetrics.Phase phase = GradeRunMetrics.start("readGradeDataParallel", filename);
+        try {
+            return new ParallelGradeLoader().load(filename, phase);
+        } finally {
+            phase.end();
+        }
+    }
+    
+    /**
+     * Picks the grade loader selected on the command line.
+     */
+    private static Map<String, GradeRecord> loadGrades(String filename, GradeRunOptions options) throws IOException {
+        if (options.isParallel()) {
+            return readGradeDataParallel(filename);
+        }
+        return options.isMapped() ? readGradeDataMapped(filename) : readGradeData(filename);
+    }
+    
     /**
      * Part 3: Report Generator
      * Calculates final grades and creates student reports.
@@ -194,21 +486,21 @@ public class Solution_StudentGradeManager {
         List<StudentReport> reports = new ArrayList<>();
         
         System.out.println("Calculating final grades...");
+        GradeRunMetrics.Phase phase = GradeRunMetrics.start("calculateFinalGrades", GradeRunMetrics.ROW_BATCH);
         
         // Process each student
         for (Student student : students) {
+            phase.row();
             String studentId = student.getId();
             GradeRecord gradeRecord = grades.get(studentId);
             
             if (gradeRecord == null) {
-                System.out.println("Warning: No grade data found for student " + student.getName() + " (ID: " + studentId + ")");
+                GradeRunMetrics.reject(RejectReason.NO_GRADE_DATA, RejectReason.studentDetail(student));
                 continue;
             }
             
             // Calculate final grade using weighted formula
-            double finalScore = (gradeRecord.getAssignmentScore() * ASSIGNMENT_WEIGHT) +
-                               (gradeRecord.getMidtermScore() * MIDTERM_WEIGHT) +
-                               (gradeRecord.getFinalScore() * FINAL_WEIGHT);
+            double finalScore = calculateFinalScore(gradeRecord);
             
             // Determine letter grade
             String letterGrade = getLetterGrade(finalScore);
@@ -217,27 +509,241 @@ public class Solution_StudentGradeManager {
             StudentReport report = new StudentReport(student, gradeRecord, finalScore, letterGrade);
             reports.add(report);
         }
+        phase.end();
         
         return reports;
     }
     
+    /**
+     * Columnar version of calculateFinalGrades: joins the students against a
+     * ColumnarGradeStore and records each result in a GradedRoster.
+     * 
+     * @param students List of all students
+     * @param grades Columnar store of student grades
+     * @return The graded students, in roster order
+     */
+    public static GradedRoster calculateFinalGrades(List<Student> students, ColumnarGradeStore grades) {
+        GradedRoster roster = new GradedRoster(grades, students.size());
+        
+        System.out.println("Calculating final grades...");
+        GradeRunMetrics.Phase phase = GradeRunMetrics.start("calculateFinalGrades", GradeRunMetrics.ROW_BATCH);
+        
+        // Score every row of the store in bulk, then join
+        int rows = grades.size();
+        double[] finalScores = new double[rows];
+        byte[] buckets = new byte[rows];
+        calculateFinalScores(grades.assignmentScores(), grades.midtermScores(), grades.finalScores(),
+                             finalScores, rows);
+        calculateLetterBuckets(finalScores, buckets, rows);
+        
+        for (Student student : students) {
+            phase.row();
+            int row = grades.rowOf(student.getId());
+            
+            if (row < 0) {
+                GradeRunMetrics.reject(RejectReason.NO_GRADE_DATA, RejectReason.studentDetail(student));
+                continue;
+            }
+            
+            roster.add(student, row, finalScores[row], LETTERS_BY_BUCKET[buckets[row]]);
+        }
+        phase.end();
+        
+        return roster;
+    }
+    
+    /**
+     * Applies the weighted formula to one student's component scores.
+     * 
+     * @param gradeRecord The student's grades
+     * @return Weighted final score (0-100)
+     */
+    static double calculateFinalScore(GradeRecord gradeRecord) {
+        return calculateFinalScore(gradeRecord.getAssignmentScore(),
+                                   gradeRecord.getMidtermScore(),
+                                   gradeRecord.getFinalScore());
+    }
+    
+    /**
+     * Applies the weighted formula to raw component scores.
+     */
+    static double calculateFinalScore(double assignmentScore, double midtermScore, double finalScore) {
+        return (assignmentScore * ASSIGNMENT_WEIGHT) +
+               (midtermScore * MIDTERM_WEIGHT) +
+               (finalScore * FINAL_WEIGHT);
+    }
+    
+    /**
+     * Bulk version of calculateFinalScore over parallel score arrays.
+     * 
+     * The loop body is straight-line arithmetic on primitive arrays with
+     * constant weights, which the JIT compiles to SIMD code. Each result is
+     * bit-for-bit the same as calling calculateFinalScore per student.
+     * 
+     * @param assignmentScores Assignment score per row
+     * @param midtermScores Midterm score per row
+     * @param finalExamScores Final exam score per row
+     * @param finalScores Output: weighted final score per row
+     * @param count Number of rows to score
+     */
+    static void calculateFinalScores(double[] assignmentScores, double[] midtermScores, double[] finalExamScores,
+                                     double[] finalScores, int count) {
+        for (int i = 0; i < count; i++) {
+            finalScores[i] = (assignmentScores[i] * ASSIGNMENT_WEIGHT) +
+                             (midtermScores[i] * MIDTERM_WEIGHT) +
+                             (finalExamScores[i] * FINAL_WEIGHT);
+        }
+    }
+    
+    /**
+     * Bulk version of getLetterGrade: stores each score's letter bucket
+     * (an index into LETTERS_BY_BUCKET) instead of returning a String.
+     * 
+     * All cutoffs are whole numbers, so a score reaches a cutoff exactly when
+     * its integer part does. The loop truncates each score, clamps it to
+     * 0-100 (min/max compile to conditional moves) and looks the bucket up
+     * in a 101-entry table, so there are no branches to mispredict. NaN
+     * truncates to 0 and lands in F, just like getLetterGrade.
+     * 
+     * @param scores Final score per row
+     * @param buckets Output: letter bucket per row (0 = F ... 4 = A)
+     * @param count Number of rows
+     */
+    static void calculateLetterBuckets(double[] scores, byte[] buckets, int count) {
+        for (int i = 0; i < count; i++) {
+            buckets[i] = BUCKET_BY_WHOLE_SCORE[Math.max(0, Math.min(100, (int) scores[i]))];
+        }
+    }
+    
+    // Letter bucket for every whole score 0-100
+    private static final byte[] BUCKET_BY_WHOLE_SCORE = new byte[101];
+    static {
+        for (int score = 0; score <= 100; score++) {
+            String letter = getLetterGrade(score);
+            BUCKET_BY_WHOLE_SCORE[score] = (byte) Arrays.asList(LETTERS_BY_BUCKET).indexOf(letter);
+        }
+    }
+    
+    /**
+     * Streaming mode: grades every student in a single pass.
+     * 
+     * Only the grade index is held in memory. The student file is read one
+     * line at a time, each student is joined against the index, and the
+     * result is handed straight to every report sink (summary, individual
+     * reports and distribution), so no List of students or reports is built.
+     * Warnings and report files are the same as in the regular mode.
+     * 
+     * @param studentsFile The name of the file containing student data
+     * @param gradesFile The name of the file containing grade data
+     * @param options Which grade loader and report writer to use
+     * @throws IOException if an input file cannot be read or a report cannot be written
+     */
+    public static void processGradesStreaming(String studentsFile, String gradesFile,
+                                              GradeRunOptions options) throws IOException {
+        // The grade index is the only thing kept for the whole run
+        Map<String, GradeRecord> grades = loadGrades(gradesFile, options);
+        System.out.println("Successfully read " + grades.size() + " grade records.\n");
+        
+        List<ReportSink> sinks = createReportSinks(options);
+        
+        int[] counts = GradeJoin.hashJoin(studentsFile, grades, sinks);
+        int studentCount = counts[0];
+        int reportCount = counts[1];
+        
+        System.out.println("Streamed " + studentCount + " student records into " + reportCount + " reports.\n");
+    }
+    
+    /**
+     * Grades every student within a memory budget. GradeJoin picks a hash
+     * join when the grades fit in the budget and an external sort-merge join
+     * otherwise; the reports are the same either way.
+     * 
+     * @param studentsFile The name of the file containing student data
+     * @param gradesFile The name of the file containing grade data
+     * @param options Run options with --memory-budget set, and the grade loader for a hash join
+     * @throws IOException if an input file cannot be read or a report cannot be written
+     */
+    public static void processGradesJoined(String studentsFile, String gradesFile,
+                                           GradeRunOptions options) throws IOException {
+        // A hash join loads the grades the same way the other modes do
+        GradeJoin join = new GradeJoin(options.getMemoryBudget(), null, filename -> loadGrades(filename, options));
+        GradeJoin.Strategy strategy = join.join(studentsFile, gradesFile, createReportSinks(options));
+        System.out.println("Joined students and grades using " + strategy + " strategy.\n");
+    }
+    
+    /**
+     * Applies a delta file to the saved grade state, rewrites the affected
+     * individual reports and the class summary and distribution, and saves
+     * the updated state back to the same snapshot.
+     * 
+     * @param options Run options with --state and --delta set
+     * @throws IOException if the snapshot or delta cannot be read, --segmented is given for a
+     *                     snapshot saved without it, or a report cannot be written
+     */
+    public static void processGradeDelta(GradeRunOptions options) throws IOException {
+        if (options.getStateFile() == null) {
+            throw new IOException("--delta needs the --state snapshot to update");
+        }
+        
+        IncrementalGradeState state = IncrementalGradeState.load(options.getStateFile());
+        if (options.isSegmented() && !state.isSegmented()) {
+            throw new IOException(options.getStateFile() + " was saved by a run without --segmented");
+        }
+        int updated = state.applyDelta(options.getDeltaFile());
+        System.out.println("Updated " + updated + " student reports from " + options.getDeltaFile() + ".\n");
+        
+        writeClassSummary(state.getStatistics(), new File("class_summary.txt"));
+        writeGradeDistribution(state.getStatistics(), new File("grade_distribution.txt"));
+        
+        state.save(options.getStateFile());
+    }
+    
     /**
      * Generates formatted reports and saves them to output files.
      * 
      * @param reports List of student reports to process
      */
     public static void generateReports(List<StudentReport> reports) {
+        generateReports(reports, new GradeRunOptions());
+    }
+    
+    /**
+     * Generates formatted reports, using the report writer selected in options.
+     * 
+     * @param reports List of student reports to process
+     * @param options Run options (for example --segmented)
+     */
+    public static void generateReports(List<StudentReport> reports, GradeRunOptions options) {
         System.out.println("Generating reports...");
         
+        if (options.isAsync()) {
+            // createReportSinks returns a single AsyncReportPipeline that runs
+            // every report writer on its own thread
+            try {
+                for (ReportSink sink : createReportSinks(options)) {
+                    writeReports(reports, sink);
+                }
+            } catch (IOException e) {
+                System.out.println("Error writing reports: " + e.getMessage());
+            }
+            return;
+        }
+        
         try {
+            // Collect statistics once for both summary reports
+            GradeStatistics statistics = new GradeStatistics();
+            for (StudentReport report : reports) {
+                statistics.add(report.getStudent().getName(), report.getFinalScore(), report.getLetterGrade());
+            }
+            
             // Generate class summary report
-            generateClassSummary(reports);
+            generateClassSummary(statistics);
             
             // Generate individual student reports
-            generateIndividualReports(reports);
+            generateIndividualReports(reports, options);
             
             // Generate grade distribution report
-            generateGradeDistribution(reports);
+            generateGradeDistribution(statistics);
             
         } catch (IOException e) {
             System.out.println("Error writing reports: " + e.getMessage());
@@ -245,147 +751,210 @@ public class Solution_StudentGradeManager {
     }
     
     /**
-     * Generates a class summary report with statistics.
+     * Generates the same three reports from a GradedRoster, reading scores
+     * straight out of the columnar store in a single pass.
+     * 
+     * @param roster The graded students
+     * @param options Run options (for example --segmented)
      */
-    private static void generateClassSummary(List<StudentReport> reports) throws IOException {
-        File summaryFile = new File("class_summary.txt");
-        PrintStream summaryOut = new PrintStream(summaryFile);
+    public static void generateReports(GradedRoster roster, GradeRunOptions options) {
+        System.out.println("Generating reports...");
         
         try {
-            // Calculate statistics
-            int totalStudents = reports.size();
-            double totalScore = 0;
-            double highestScore = Double.MIN_VALUE;
-            double lowestScore = Double.MAX_VALUE;
-            String highestStudent = "";
-            String lowestStudent = "";
-            
-            Map<String, Integer> gradeCounts = new HashMap<>();
-            gradeCounts.put("A", 0);
-            gradeCounts.put("B", 0);
-            gradeCounts.put("C", 0);
-            gradeCounts.put("D", 0);
-            gradeCounts.put("F", 0);
+            List<ReportSink> sinks = createReportSinks(options);
             
-            for (StudentReport report : reports) {
-                double score = report.getFinalScore();
-                totalScore += score;
-                
-                if (score > highestScore) {
-                    highestScore = score;
-                    highestStudent = report.getStudent().getName();
+            for (int i = 0; i < roster.size(); i++) {
+                for (ReportSink sink : sinks) {
+                    roster.sendTo(i, sink);
                 }
-                
-                if (score < lowestScore) {
-                    lowestScore = score;
-                    lowestStudent = report.getStudent().getName();
-                }
-                
-                String letterGrade = report.getLetterGrade();
-                gradeCounts.put(letterGrade, gradeCounts.get(letterGrade) + 1);
             }
-            
-            double classAverage = totalStudents > 0 ? totalScore / totalStudents : 0;
-            
+            for (ReportSink sink : sinks) {
+                sink.finish();
+            }
+        } catch (IOException e) {
+            System.out.println("Error writing reports: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Generates a class summary report with statistics.
+     */
+    private static void generateClassSummary(GradeStatistics statistics) throws IOException {
+        writeClassSummary(statistics, new File("class_summary.txt"));
+    }
+    
+    /**
+     * Generates individual student reports.
+     */
+    private static void generateIndividualReports(List<StudentReport> reports, GradeRunOptions options) throws IOException {
+        writeReports(reports, createIndividualReportSink(options));
+    }
+    
+    /**
+     * Returns the sinks that write all reports for a single-pass run: one
+     * for the summary and distribution, one for the individual reports.
+     * With --async they are wrapped in an AsyncReportPipeline so each runs
+     * on its own thread.
+     */
+    private static List<ReportSink> createReportSinks(GradeRunOptions options) throws IOException {
+        List<ReportSink> sinks = new ArrayList<>();
+        sinks.add(new SummarySink(new File("class_summary.txt"), new File("grade_distribution.txt")));
+        sinks.add(createIndividualReportSink(options));
+        
+        if (options.isAsync()) {
+            return Collections.singletonList(new AsyncReportPipeline(sinks));
+        }
+        return sinks;
+    }
+    
+    /**
+     * Returns the sink for individual reports: one file per student, or
+     * segment files plus an index with --segmented.
+     */
+    private static ReportSink createIndividualReportSink(GradeRunOptions options) throws IOException {
+        if (options.isSegmented()) {
+            return new TimedReportSink("writeIndividualReports", new SegmentedReportWriter(GradeRunOptions.SEGMENT_BASE_NAME));
+        }
+        return new TimedReportSink("writeIndividualReports", new IndividualReportSink());
+    }
+    
+    /**
+     * Prints one student's report from the segment files written with --segmented.
+     * 
+     * @param studentId The student to look up
+     */
+    public static void printSegmentedReport(String studentId) {
+        try {
+            SegmentedReportReader reader = new SegmentedReportReader(GradeRunOptions.SEGMENT_BASE_NAME);
+            String report = reader.readReport(studentId);
+            if (report == null) {
+                System.out.println("No report found for student ID " + studentId);
+            } else {
+                System.out.print(report);
+            }
+        } catch (FileNotFoundException e) {
+            System.out.println("Error: No segmented reports found - run with --segmented first");
+        } catch (IOException e) {
+            System.out.println("Error reading report: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Generates a grade distribution report.
+     */
+    private static void generateGradeDistribution(GradeStatistics statistics) throws IOException {
+        writeGradeDistribution(statistics, new File("grade_distribution.txt"));
+    }
+    
+    /**
+     * Writes the class summary report from collected statistics.
+     * 
+     * @param statistics Statistics for the whole class
+     * @param summaryFile Where to write the report
+     */
+    static void writeClassSummary(GradeStatistics statistics, File summaryFile) throws IOException {
+        writeClassSummary(statistics, GradingScheme.STANDARD, summaryFile);
+    }
+    
+    /**
+     * Writes the class summary report for a section graded with a custom scheme.
+     * 
+     * @param statistics Statistics for the whole section
+     * @param scheme The scheme the section was graded with
+     * @param summaryFile Where to write the report
+     */
+    static void writeClassSummary(GradeStatistics statistics, GradingScheme scheme, File summaryFile) throws IOException {
+        PrintStream summaryOut = new PrintStream(summaryFile);
+        GradeRunMetrics.Phase phase = GradeRunMetrics.start("writeClassSummary", 1);
+        
+        try {
             // Write summary report
             summaryOut.println("==========================================");
             summaryOut.println("CLASS SUMMARY REPORT");
             summaryOut.println("==========================================");
-            summaryOut.printf("Total Students: %d%n", totalStudents);
-            summaryOut.printf("Class Average: %.2f%n", classAverage);
+            summaryOut.printf("Total Students: %d%n", statistics.getCount());
+            summaryOut.printf("Class Average: %.2f%n", statistics.getAverage());
             summaryOut.printf("Highest Score: %.2f (%s - %s)%n", 
-                            highestScore, highestStudent, getLetterGrade(highestScore));
+                            statistics.getHighestScore(), statistics.getHighestStudent(),
+                            scheme.letterOf(statistics.getHighestScore()));
             summaryOut.printf("Lowest Score: %.2f (%s - %s)%n", 
-                            lowestScore, lowestStudent, getLetterGrade(lowestScore));
+                            statistics.getLowestScore(), statistics.getLowestStudent(),
+                            scheme.letterOf(statistics.getLowestScore()));
             summaryOut.println();
             summaryOut.println("Grade Distribution:");
-            summaryOut.printf("A: %d students (%.1f%%)%n", 
-                            gradeCounts.get("A"), (double)gradeCounts.get("A")/totalStudents*100);
-            summaryOut.printf("B: %d students (%.1f%%)%n", 
-                            gradeCounts.get("B"), (double)gradeCounts.get("B")/totalStudents*100);
-            summaryOut.printf("C: %d students (%.1f%%)%n", 
-                            gradeCounts.get("C"), (double)gradeCounts.get("C")/totalStudents*100);
-            summaryOut.printf("D: %d students (%.1f%%)%n", 
-                            gradeCounts.get("D"), (double)gradeCounts.get("D")/totalStudents*100);
-            summaryOut.printf("F: %d students (%.1f%%)%n", 
-                            gradeCounts.get("F"), (double)gradeCounts.get("F")/totalStudents*100);
+            for (String letter : bestLetterFirst(scheme)) {
+                summaryOut.printf("%s: %d students (%.1f%%)%n", 
+                                letter, statistics.getLetterCount(letter), statistics.getLetterPercentage(letter));
+            }
+            
+            phase.row();
             
         } finally {
             summaryOut.close();
+            phase.end();
         }
     }
     
     /**
-     * Generates individual student reports.
+     * Writes the grade distribution report from collected statistics.
+     * 
+     * @param statistics Statistics for the whole class
+     * @param distributionFile Where to write the report
      */
-    private static void generateIndividualReports(List<StudentReport> reports) throws IOException {
-        for (StudentReport report : reports) {
-            String filename = "student_" + report.getStudent().getId() + "_report.txt";
-            File reportFile = new File(filename);
-            PrintStream reportOut = new PrintStream(reportFile);
-            
-            try {
-                Student student = report.getStudent();
-                GradeRecord grades = report.getGrades();
-                
-                reportOut.println("STUDENT REPORT - " + student.getName() + " (ID: " + student.getId() + ")");
-                reportOut.println("Email: " + student.getEmail());
-                reportOut.printf("Assignment Score: %.1f%n", grades.getAssignmentScore());
-                reportOut.printf("Midterm Score: %.1f%n", grades.getMidtermScore());
-                reportOut.printf("Final Score: %.1f%n", grades.getFinalScore());
-                reportOut.printf("Final Grade: %.2f (%s)%n", report.getFinalScore(), report.getLetterGrade());
-                
-            } finally {
-                reportOut.close();
-            }
-        }
+    static void writeGradeDistribution(GradeStatistics statistics, File distributionFile) throws IOException {
+        writeGradeDistribution(statistics, GradingScheme.STANDARD, distributionFile);
     }
     
     /**
-     * Generates a grade distribution report.
+     * Writes the grade distribution report for a section graded with a custom scheme.
+     * 
+     * @param statistics Statistics for the whole section
+     * @param scheme The scheme the section was graded with
+     * @param distributionFile Where to write the report
      */
-    private static void generateGradeDistribution(List<StudentReport> reports) throws IOException {
-        File distributionFile = new File("grade_distribution.txt");
+    static void writeGradeDistribution(GradeStatistics statistics, GradingScheme scheme, File distributionFile) throws IOException {
         PrintStream distributionOut = new PrintStream(distributionFile);
+        GradeRunMetrics.Phase phase = GradeRunMetrics.start("writeGradeDistribution", 1);
         
         try {
-            // Count grades
-            Map<String, Integer> gradeCounts = new HashMap<>();
-            gradeCounts.put("A", 0);
-            gradeCounts.put("B", 0);
-            gradeCounts.put("C", 0);
-            gradeCounts.put("D", 0);
-            gradeCounts.put("F", 0);
-            
-            for (StudentReport report : reports) {
-                String letterGrade = report.getLetterGrade();
-                gradeCounts.put(letterGrade, gradeCounts.get(letterGrade) + 1);
-            }
-            
-            int totalStudents = reports.size();
-            
             // Write distribution report
             distributionOut.println("==========================================");
             distributionOut.println("GRADE DISTRIBUTION REPORT");
             distributionOut.println("==========================================");
             distributionOut.println("Letter Grade | Count | Percentage");
             distributionOut.println("-------------|-------|------------");
-            distributionOut.printf("%-12s | %5d | %9.1f%%%n", "A", gradeCounts.get("A"), 
-                                 (double)gradeCounts.get("A")/totalStudents*100);
-            distributionOut.printf("%-12s | %5d | %9.1f%%%n", "B", gradeCounts.get("B"), 
-                                 (double)gradeCounts.get("B")/totalStudents*100);
-            distributionOut.printf("%-12s | %5d | %9.1f%%%n", "C", gradeCounts.get("C"), 
-                                 (double)gradeCounts.get("C")/totalStudents*100);
-            distributionOut.printf("%-12s | %5d | %9.1f%%%n", "D", gradeCounts.get("D"), 
-                                 (double)gradeCounts.get("D")/totalStudents*100);
-            distributionOut.printf("%-12s | %5d | %9.1f%%%n", "F", gradeCounts.get("F"), 
-                                 (double)gradeCounts.get("F")/totalStudents*100);
+            for (String letter : bestLetterFirst(scheme)) {
+                distributionOut.printf("%-12s | %5d | %9.1f%%%n", letter, statistics.getLetterCount(letter), 
+                                     statistics.getLetterPercentage(letter));
+            }
             distributionOut.println("-------------|-------|------------");
-            distributionOut.printf("%-12s | %5d | %9.1f%%%n", "Total", totalStudents, 100.0);
+            distributionOut.printf("%-12s | %5d | %9.1f%%%n", "Total", statistics.getCount(), 100.0);
+            
+            phase.row();
             
         } finally {
             distributionOut.close();
+            phase.end();
+        }
+    }
+    
+    /**
+     * Report order for letter grades: best first.
+     */
+    private static List<String> bestLetterFirst(GradingScheme scheme) {
+        List<String> letters = new ArrayList<>(Arrays.asList(scheme.getLetters()));
+        Collections.reverse(letters);
+        return letters;
+    }
+    
+    /**
+     * Feeds a list of reports through a single sink.
+     */
+    private static void writeReports(List<StudentReport> reports, ReportSink sink) throws IOException {
+        for (StudentReport report : reports) {
+            sink.accept(report);
         }
+        sink.finish();
     }
     
     /**
@@ -402,89 +971,3 @@ public class Solution_StudentGradeManager {
         else return "F";
     }
 }
-
-/**
- * Student class to represent student information
- */
-class Student {
-    private String id;
-    private String name;
-    private String email;
-    
-    public Student(String id, String name, String email) {
-        this.id = id;
-        this.name = name;
-        this.email = email;
-    }
-    
-    // Getters
-    public String getId() { return id; }
-    public String getName() { return name; }
-    public String getEmail() { return email; }
-    
-    @Override
-    public String toString() {
-        return "Student{id='" + id + "', name='" + name + "', email='" + email + "'}";
-    }
-}
-
-/**
- * GradeRecord class to represent student grades
- */
-class GradeRecord {
-    private String studentId;
-    private double assignmentScore;
-    private double midtermScore;
-    private double finalScore;
-    
-    public GradeRecord(String studentId, double assignmentScore, double midtermScore, double finalScore) {
-        this.studentId = studentId;
-        this.assignmentScore = assignmentScore;
-        this.midtermScore = midtermScore;
-        this.finalScore = finalScore;
-    }
-    
-    // Getters
-    public String getStudentId() { return studentId; }
-    public double getAssignmentScore() { return assignmentScore; }
-    public double getMidtermScore() { return midtermScore; }
-    public double getFinalScore() { return finalScore; }
-    
-    @Override
-    public String toString() {
-        return "GradeRecord{studentId='" + studentId + 
-               "', assignment=" + assignmentScore + 
-               ", midterm=" + midtermScore + 
-               ", final=" + finalScore + "}";
-    }
-}
-
-/**
- * StudentReport class to represent final student reports
- */
-class StudentReport {
-    private Student student;
-    private GradeRecord grades;
-    private double finalScore;
-    private String letterGrade;
-    
-    public StudentReport(Student student, GradeRecord grades, double finalScore, String letterGrade) {
-        this.student = student;
-        this.grades = grades;
-        this.finalScore = finalScore;
-        this.letterGrade = letterGrade;
-    }
-    
-    // Getters
-    public Student getStudent() { return student; }
-    public GradeRecord getGrades() { return grades; }
-    public double getFinalScore() { return finalScore; }
-    public String getLetterGrade() { return letterGrade; }
-    
-    @Override
-    public String toString() {
-        return "StudentReport{student=" + student.getName() + 
-               ", finalScore=" + finalScore + 
-               ", letterGrade='" + letterGrade + "'}";
-    }
-} 
\ No newline at end of file
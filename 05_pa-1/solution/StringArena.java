@@ -0,0 +1,208 @@
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * StringArena stores many short strings in one shared byte array.
+ *
+ * Each string is added once and referred to by an int handle afterwards.
+ * Strings whose characters all fit in one byte (Latin-1, which covers
+ * plain ASCII names and emails) take one byte per character; anything else
+ * is kept as UTF-16 at two bytes per character, the same compaction the JDK
+ * applies to String itself. Adding a string that is already in the arena
+ * returns the existing handle, so repeated names cost nothing extra.
+ *
+ * Per string the arena keeps an offset and a length (with the encoding in
+ * the length's top bit) instead of a String object and its byte[].
+ */
+class StringArena {
+    // Set in a length entry when the bytes are UTF-16 rather than Latin-1
+    private static final int UTF16 = 1 << 31;
+
+    private byte[] data;
+    private int used = 0;
+
+    private int[] offsets;
+    private int[] lengths;
+    private int count = 0;
+
+    // Open-addressing table of handle + 1 (0 means the slot is empty)
+    private int[] slots;
+
+    /**
+     * Creates an arena sized for the expected number of strings.
+     *
+     * @param expectedStrings Number of strings to allocate room for
+     */
+    public StringArena(int expectedStrings) {
+        int capacity = Math.max(16, expectedStrings);
+        data = new byte[capacity * 16];
+        offsets = new int[capacity];
+        lengths = new int[capacity];
+        slots = new int[Integer.highestOneBit(capacity - 1) << 2];
+    }
+
+    /**
+     * Adds a string, or finds it if it is already in the arena.
+     *
+     * @param text The string
+     * @return The handle for the string
+     */
+    public int add(String text) {
+        boolean latin1 = isLatin1(text);
+        int byteLength = latin1 ? text.length() : text.length() * 2;
+        int hash = latin1 ? text.hashCode() : ~text.hashCode();
+
+        int mask = slots.length - 1;
+        int slot = Hashing.spread(hash) & mask;
+        while (slots[slot] != 0) {
+            int handle = slots[slot] - 1;
+            if (matches(handle, text, latin1)) {
+                return handle;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // New string: copy its bytes into the arena
+        if (used + byteLength > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, used + byteLength));
+        }
+        int start = used;
+        if (latin1) {
+            for (int i = 0; i < text.length(); i++) {
+                data[used++] = (byte) text.charAt(i);
+            }
+        } else {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                data[used++] = (byte) (c >>> 8);
+                data[used++] = (byte) c;
+            }
+        }
+
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.max(16, count * 2));
+            lengths = Arrays.copyOf(lengths, Math.max(16, count * 2));
+        }
+        int handle = count++;
+        offsets[handle] = start;
+        lengths[handle] = latin1 ? byteLength : byteLength | UTF16;
+        slots[slot] = handle + 1;
+
+        // Keep the table at most half full
+        if (count * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return handle;
+    }
+
+    /**
+     * Builds the String for a handle. The result is a new String each time,
+     * meant to be used briefly (for example while a report is written).
+     *
+     * @param handle A handle returned by add()
+     * @return The string
+     */
+    public String get(int handle) {
+        int length = lengths[handle];
+        if ((length & UTF16) == 0) {
+            return new String(data, offsets[handle], length, StandardCharsets.ISO_8859_1);
+        }
+        return new String(data, offsets[handle], length & ~UTF16, StandardCharsets.UTF_16BE);
+    }
+
+    /**
+     * @return Number of distinct strings in the arena
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return Bytes of string data stored
+     */
+    public int byteSize() {
+        return used;
+    }
+
+    /**
+     * Shrinks the backing arrays and the lookup table to what is in use,
+     * once loading is done.
+     */
+    public void trim() {
+        data = Arrays.copyOf(data, used);
+        offsets = Arrays.copyOf(offsets, count);
+        lengths = Arrays.copyOf(lengths, count);
+
+        int tableSize = Integer.highestOneBit(Math.max(16, count) - 1) << 2;
+        if (tableSize < slots.length) {
+            rehash(tableSize);
+        }
+    }
+
+    private boolean matches(int handle, String text, boolean latin1) {
+        int length = lengths[handle];
+        if (((length & UTF16) == 0) != latin1) {
+            return false;
+        }
+        int offset = offsets[handle];
+        if (latin1) {
+            if (length != text.length()) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if ((char) (data[offset + i] & 0xFF) != text.charAt(i)) {
+                    return false;
+                }
+            }
+        } else {
+            if ((length & ~UTF16) != text.length() * 2) {
+                return false;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                char c = (char) (((data[offset + 2 * i] & 0xFF) << 8) | (data[offset + 2 * i + 1] & 0xFF));
+                if (c != text.charAt(i)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void rehash(int tableSize) {
+        slots = new int[tableSize];
+        int mask = tableSize - 1;
+        for (int handle = 0; handle < count; handle++) {
+            int slot = Hashing.spread(hashOf(handle)) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = handle + 1;
+        }
+    }
+
+    // Same hash add() computes from the String, worked out from the stored bytes
+    private int hashOf(int handle) {
+        int length = lengths[handle];
+        int offset = offsets[handle];
+        int hash = 0;
+        if ((length & UTF16) == 0) {
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + (data[offset + i] & 0xFF);
+            }
+            return hash;
+        }
+        for (int i = 0; i < (length & ~UTF16); i += 2) {
+            hash = 31 * hash + (((data[offset + i] & 0xFF) << 8) | (data[offset + i + 1] & 0xFF));
+        }
+        return ~hash;
+    }
+
+    private static boolean isLatin1(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
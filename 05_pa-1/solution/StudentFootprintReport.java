@@ -0,0 +1,165 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * StudentFootprintReport measures how much heap the loaded students and
+ * grades take, in the regular layout (List of Student plus HashMap of
+ * GradeRecord) and in CompactGradeBook.
+ *
+ * Two numbers are printed for each layout:
+ *
+ *   estimated  the object graph added up by hand, JOL style, assuming a
+ *              64-bit JVM with compressed oops, 12-byte object headers,
+ *              8-byte alignment and compact (Latin-1) strings
+ *   measured   used heap after a full GC with the data loaded, minus used
+ *              heap without it
+ *
+ * The output of a run is kept in footprint_report.txt next to this file.
+ *
+ * Usage: java StudentFootprintReport students.txt grades.txt
+ */
+public class StudentFootprintReport {
+    // Sizes on a 64-bit JVM with compressed oops
+    private static final int HEADER = 12;
+    private static final int REFERENCE = 4;
+    private static final int ARRAY_HEADER = 16;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.out.println("Usage: java StudentFootprintReport students.txt grades.txt");
+            return;
+        }
+
+        // Loading prints the usual progress lines and warnings; keep them out of the report
+        PrintStream console = System.out;
+        PrintStream quiet = new PrintStream(OutputStream.nullOutputStream());
+
+        long before = usedHeap();
+        System.setOut(quiet);
+        List<Student> students = Solution_StudentGradeManager.readStudentDataMapped(args[0]);
+        Map<String, GradeRecord> grades = Solution_StudentGradeManager.readGradeDataMapped(args[1]);
+        System.setOut(console);
+        long regularMeasured = usedHeap() - before;
+        long regularEstimated = estimateRegular(students, grades);
+        int studentCount = students.size();
+        int gradeCount = grades.size();
+        students = null;
+        grades = null;
+
+        before = usedHeap();
+        System.setOut(quiet);
+        CompactGradeBook book = CompactGradeBook.load(args[0], args[1]);
+        System.setOut(console);
+        long compactMeasured = usedHeap() - before;
+        long compactEstimated = estimateCompact(book);
+
+        System.out.printf("Students: %d, grade records: %d, distinct names and emails: %d%n%n",
+                          studentCount, gradeCount, book.getDistinctStringCount());
+        System.out.println("Layout                      | Estimated bytes | Per student | Measured bytes | Per student");
+        System.out.println("----------------------------|-----------------|-------------|----------------|------------");
+        printRow("List<Student> + HashMap", regularEstimated, regularMeasured, studentCount);
+        printRow("CompactGradeBook", compactEstimated, compactMeasured, studentCount);
+        System.out.printf("%nCompactGradeBook uses %.1f%% of the regular layout (measured).%n",
+                          100.0 * compactMeasured / Math.max(1, regularMeasured));
+
+        // Keep the book reachable until it has been measured
+        if (book.getStudentCount() != studentCount) {
+            System.out.println("Warning: layouts loaded different student counts");
+        }
+    }
+
+    private static void printRow(String layout, long estimated, long measured, int students) {
+        System.out.printf("%-27s | %15d | %11.1f | %14d | %11.1f%n", layout, estimated,
+                          (double) estimated / Math.max(1, students), measured, (double) measured / Math.max(1, students));
+    }
+
+    /**
+     * Adds up the regular object graph: the list, each Student with its
+     * three Strings, and the grade map with its nodes, records and keys.
+     */
+    private static long estimateRegular(List<Student> students, Map<String, GradeRecord> grades) {
+        long total = align(HEADER + 8) + array(students.size(), REFERENCE); // ArrayList
+        for (Student student : students) {
+            total += align(HEADER + 3 * REFERENCE);
+            total += string(student.getId()) + string(student.getName()) + string(student.getEmail());
+        }
+
+        int buckets = Integer.highestOneBit(Math.max(1, (int) (grades.size() / 0.75f)) - 1) << 1;
+        total += align(HEADER + 4 * REFERENCE + 4 * 4) + array(buckets, REFERENCE); // HashMap
+        for (GradeRecord record : grades.values()) {
+            total += align(HEADER + 4 + 3 * REFERENCE);   // HashMap.Node
+            total += align(HEADER + REFERENCE + 3 * 8);   // GradeRecord
+            total += string(record.getStudentId());       // key, shared with the record
+        }
+        return total;
+    }
+
+    /**
+     * Adds up CompactGradeBook: fixed-size arrays per student and grade row,
+     * plus the arena bytes and the two hash tables.
+     */
+    private static long estimateCompact(CompactGradeBook book) {
+        int students = book.getStudentCount();
+        int grades = book.getGradeCount();
+        int strings = book.getDistinctStringCount();
+
+        long total = array(students, 8) + 2 * array(students, 4);   // keys, name and email handles
+        total += 3 * array(grades, 8);                              // score columns
+        total += array(tableSize(grades), 8) + array(tableSize(grades), 4); // LongIntHashMap
+        total += array(arenaBytes(book), 1) + 2 * array(strings, 4); // arena data, offsets, lengths
+        total += array(tableSize(strings), 4);                      // arena dedup table
+        return total;
+    }
+
+    private static long arenaBytes(CompactGradeBook book) {
+        long bytes = 0;
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < book.getStudentCount(); i++) {
+            Student student = book.getStudent(i);
+            for (String text : new String[] {student.getName(), student.getEmail()}) {
+                if (seen.add(text)) {
+                    bytes += isLatin1(text) ? text.length() : 2L * text.length();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static boolean isLatin1(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Open-addressing tables are kept at most half full
+    private static int tableSize(int keys) {
+        return Integer.highestOneBit(Math.max(8, keys) - 1) << 2;
+    }
+
+    private static long string(String text) {
+        return align(HEADER + REFERENCE + 4 + 1 + 1) + array(isLatin1(text) ? text.length() : 2 * text.length(), 1);
+    }
+
+    private static long array(long length, int elementSize) {
+        return align(ARRAY_HEADER + length * elementSize);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // A few rounds of GC until the number settles
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
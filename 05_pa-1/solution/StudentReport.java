@@ -0,0 +1,29 @@
+/**
+ * StudentReport class to represent final student reports
+ */
+class StudentReport {
+    private Student student;
+    private GradeRecord grades;
+    private double finalScore;
+    private String letterGrade;
+    
+    public StudentReport(Student student, GradeRecord grades, double finalScore, String letterGrade) {
+        this.student = student;
+        this.grades = grades;
+        this.finalScore = finalScore;
+        this.letterGrade = letterGrade;
+    }
+    
+    // Getters
+    public Student getStudent() { return student; }
+    public GradeRecord getGrades() { return grades; }
+    public double getFinalScore() { return finalScore; }
+    public String getLetterGrade() { return letterGrade; }
+    
+    @Override
+    public String toString() {
+        return "StudentReport{student=" + student.getName() + 
+               ", finalScore=" + finalScore + 
+               ", letterGrade='" + letterGrade + "'}";
+    }
+}
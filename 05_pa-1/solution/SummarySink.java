@@ -0,0 +1,28 @@
+import java.io.*;
+
+/**
+ * Collects class statistics and, when the pass is over, writes
+ * class_summary.txt and grade_distribution.txt from them.
+ */
+class SummarySink implements ReportSink {
+    private File summaryFile;
+    private File distributionFile;
+    private GradeStatistics statistics = new GradeStatistics();
+
+    public SummarySink(File summaryFile, File distributionFile) {
+        this.summaryFile = summaryFile;
+        this.distributionFile = distributionFile;
+    }
+
+    @Override
+    public void accept(Student student, double assignmentScore, double midtermScore, double finalExamScore,
+                       double finalScore, String letterGrade) {
+        statistics.add(student.getName(), finalScore, letterGrade);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        Solution_StudentGradeManager.writeClassSummary(statistics, summaryFile);
+        Solution_StudentGradeManager.writeGradeDistribution(statistics, distributionFile);
+    }
+}
@@ -0,0 +1,248 @@
+import java.util.*;
+
+/**
+ * Evaluates a compiled expression over columns of variable values, a block
+ * of rows at a time. Instead of running the program once per row, each
+ * instruction runs once per block of BLOCK rows: the operand stack holds a
+ * whole block per slot, LOAD copies a slice of a column, and each operator
+ * is a plain loop over two slots that the JIT can unroll and vectorize.
+ * Dispatch is paid once per block instead of once per row.
+ *
+ * A PUSH directly followed by an operator ("x * 3") is applied as a scalar
+ * instead of filling a slot with the constant. SAVE and RECALL copy a
+ * block to and from a local slot.
+ *
+ * Results match evaluating each row on its own: int or long arithmetic that
+ * wraps on overflow, and InvalidExpressionException for division by zero.
+ * A program that is not well-formed raises the interpreter's error instead.
+ *
+ * An evaluator is not thread-safe; each thread uses its own, for example
+ * the one returned by forCurrentThread().
+ */
+final class BatchEvaluator {
+    static final int BLOCK = 1024;
+
+    private static final ThreadLocal<BatchEvaluator> PER_THREAD = ThreadLocal.withInitial(BatchEvaluator::new);
+
+    private int[][] intStack = new int[0][];
+    private int[][] intLocals = new int[0][];
+    private long[][] longStack = new long[0][];
+    private long[][] longLocals = new long[0][];
+
+    // The calling thread's evaluator
+    static BatchEvaluator forCurrentThread() {
+        return PER_THREAD.get();
+    }
+
+    // Evaluates result.length rows in int arithmetic
+    public void evaluate(CompiledExpression expression, int[][] columns, int[] result)
+            throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        int rows = result.length;
+        if (rows == 0) {
+            return;
+        }
+        if (!expression.isWellFormed()) {
+            throw malformed(expression, rowValues(columns, 0));
+        }
+        CompiledExpression.Program compiled = expression.program();
+        int[] program = compiled.code;
+        if (intStack.length < compiled.maxDepth) {
+            intStack = new int[compiled.maxDepth][BLOCK];
+        }
+        int[][] stack = intStack;
+        if (intLocals.length < compiled.locals) {
+            intLocals = new int[compiled.locals][BLOCK];
+        }
+        int[][] locals = intLocals;
+
+        for (int offset = 0; offset < rows; offset += BLOCK) {
+            int n = Math.min(BLOCK, rows - offset);
+            int depth = 0;
+            for (int pc = 0; pc < program.length; pc++) {
+                int code = program[pc];
+                if (code == CompiledExpression.LOAD) {
+                    System.arraycopy(columns[program[++pc]], offset, stack[depth++], 0, n);
+                    continue;
+                }
+                if (code == CompiledExpression.SAVE) {
+                    System.arraycopy(stack[depth - 1], 0, locals[program[++pc]], 0, n);
+                    continue;
+                }
+                if (code == CompiledExpression.RECALL) {
+                    System.arraycopy(locals[program[++pc]], 0, stack[depth++], 0, n);
+                    continue;
+                }
+                if (code == CompiledExpression.PUSH) {
+                    int value = program[++pc];
+                    if (pc + 1 < program.length && isOperator(program[pc + 1])) {
+                        code = program[++pc];
+                        applyScalar(code, stack[depth - 1], value, n, offset);
+                    } else {
+                        Arrays.fill(stack[depth++], 0, n, value);
+                    }
+                    continue;
+                }
+                depth--;
+                int[] a = stack[depth - 1];
+                int[] b = stack[depth];
+                switch (code) {
+                    case CompiledExpression.ADD:
+                        for (int i = 0; i < n; i++) a[i] += b[i];
+                        break;
+                    case CompiledExpression.SUBTRACT:
+                        for (int i = 0; i < n; i++) a[i] -= b[i];
+                        break;
+                    case CompiledExpression.MULTIPLY:
+                        for (int i = 0; i < n; i++) a[i] *= b[i];
+                        break;
+                    default:
+                        for (int i = 0; i < n; i++) {
+                            if (b[i] == 0) throw divisionByZero(offset + i);
+                            a[i] /= b[i];
+                        }
+                }
+            }
+            System.arraycopy(stack[0], 0, result, offset, n);
+        }
+    }
+
+    // Evaluates result.length rows in long arithmetic
+    public void evaluate(CompiledExpression expression, long[][] columns, long[] result)
+            throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        int rows = result.length;
+        if (rows == 0) {
+            return;
+        }
+        if (!expression.isWellFormed()) {
+            int[] values = new int[columns.length];
+            Arrays.fill(values, 1);
+            throw malformed(expression, values);
+        }
+        CompiledExpression.Program compiled = expression.program();
+        int[] program = compiled.code;
+        if (longStack.length < compiled.maxDepth) {
+            longStack = new long[compiled.maxDepth][BLOCK];
+        }
+        long[][] stack = longStack;
+        if (longLocals.length < compiled.locals) {
+            longLocals = new long[compiled.locals][BLOCK];
+        }
+        long[][] locals = longLocals;
+
+        for (int offset = 0; offset < rows; offset += BLOCK) {
+            int n = Math.min(BLOCK, rows - offset);
+            int depth = 0;
+            for (int pc = 0; pc < program.length; pc++) {
+                int code = program[pc];
+                if (code == CompiledExpression.LOAD) {
+                    System.arraycopy(columns[program[++pc]], offset, stack[depth++], 0, n);
+                    continue;
+                }
+                if (code == CompiledExpression.SAVE) {
+                    System.arraycopy(stack[depth - 1], 0, locals[program[++pc]], 0, n);
+                    continue;
+                }
+                if (code == CompiledExpression.RECALL) {
+                    System.arraycopy(locals[program[++pc]], 0, stack[depth++], 0, n);
+                    continue;
+                }
+                if (code == CompiledExpression.PUSH) {
+                    long value = program[++pc];
+                    if (pc + 1 < program.length && isOperator(program[pc + 1])) {
+                        code = program[++pc];
+                        applyScalar(code, stack[depth - 1], value, n, offset);
+                    } else {
+                        Arrays.fill(stack[depth++], 0, n, value);
+                    }
+                    continue;
+                }
+                depth--;
+                long[] a = stack[depth - 1];
+                long[] b = stack[depth];
+                switch (code) {
+                    case CompiledExpression.ADD:
+                        for (int i = 0; i < n; i++) a[i] += b[i];
+                        break;
+                    case CompiledExpression.SUBTRACT:
+                        for (int i = 0; i < n; i++) a[i] -= b[i];
+                        break;
+                    case CompiledExpression.MULTIPLY:
+                        for (int i = 0; i < n; i++) a[i] *= b[i];
+                        break;
+                    default:
+                        for (int i = 0; i < n; i++) {
+                            if (b[i] == 0) throw divisionByZero(offset + i);
+                            a[i] /= b[i];
+                        }
+                }
+            }
+            System.arraycopy(stack[0], 0, result, offset, n);
+        }
+    }
+
+    // Applies "slot op value" to every row of a block
+    private static void applyScalar(int code, int[] a, int value, int n, int offset)
+            throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        switch (code) {
+            case CompiledExpression.ADD:
+                for (int i = 0; i < n; i++) a[i] += value;
+                break;
+            case CompiledExpression.SUBTRACT:
+                for (int i = 0; i < n; i++) a[i] -= value;
+                break;
+            case CompiledExpression.MULTIPLY:
+                for (int i = 0; i < n; i++) a[i] *= value;
+                break;
+            default:
+                if (value == 0) throw divisionByZero(offset);
+                for (int i = 0; i < n; i++) a[i] /= value;
+        }
+    }
+
+    private static void applyScalar(int code, long[] a, long value, int n, int offset)
+            throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        switch (code) {
+            case CompiledExpression.ADD:
+                for (int i = 0; i < n; i++) a[i] += value;
+                break;
+            case CompiledExpression.SUBTRACT:
+                for (int i = 0; i < n; i++) a[i] -= value;
+                break;
+            case CompiledExpression.MULTIPLY:
+                for (int i = 0; i < n; i++) a[i] *= value;
+                break;
+            default:
+                if (value == 0) throw divisionByZero(offset);
+                for (int i = 0; i < n; i++) a[i] /= value;
+        }
+    }
+
+    private static boolean isOperator(int code) {
+        return code >= CompiledExpression.ADD && code <= CompiledExpression.DIVIDE;
+    }
+
+    private static Solution_ExpressionEvaluator.InvalidExpressionException divisionByZero(int row) {
+        return new Solution_ExpressionEvaluator.InvalidExpressionException("Division by zero in row " + row);
+    }
+
+    // The error the row-at-a-time interpreter raises for a program that is
+    // not well-formed (it always raises one)
+    private static Solution_ExpressionEvaluator.InvalidExpressionException malformed(
+            CompiledExpression expression, int[] values) {
+        try {
+            expression.interpret(values);
+        } catch (Solution_ExpressionEvaluator.InvalidExpressionException e) {
+            return e;
+        }
+        throw new IllegalStateException("Program is well-formed");
+    }
+
+    // The values of one row, as the row-at-a-time interpreter takes them
+    private static int[] rowValues(int[][] columns, int row) {
+        int[] values = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            values[i] = columns[i][row];
+        }
+        return values;
+    }
+}
@@ -0,0 +1,396 @@
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * An infix expression parsed once into a flat postfix program, so it can be
+ * evaluated any number of times without tokenizing or converting it again.
+ *
+ * The program is an int[] of instructions in postfix order: PUSH followed by
+ * the literal's value, LOAD followed by a variable's index, or one of the
+ * operator codes. For printing, the offsets of each postfix token in the
+ * source are kept instead of copies. Evaluating it gives the same result and
+ * the same InvalidExpressionException messages as running evaluatePostfix on
+ * the output of infixToPostfix.
+ *
+ * Variables are declared when compiling and bound by position when
+ * evaluating: compile("rate * hours + bonus", "rate", "hours", "bonus")
+ * followed by evaluate(12, 40, 100). evaluateBatch() evaluates a whole
+ * column of rows at a time (see BatchEvaluator).
+ *
+ * Evaluation goes through tiers as an expression gets used more:
+ *
+ *   - evaluate() interprets the program as parsed;
+ *   - after ExpressionOptimizer.THRESHOLD evaluations a well-formed program
+ *     is replaced by its optimized form, with constants folded and repeated
+ *     subexpressions computed once (SAVE and RECALL use local slots for
+ *     that); evaluateBatch() and compileBytecode() optimize right away;
+ *   - after ExpressionBytecodeCompiler.THRESHOLD evaluations it switches to
+ *     a generated class that computes the expression directly.
+ *
+ * One-off expressions (most lines in an input file) never pay for either.
+ * Printing always uses the parsed postfix tokens.
+ *
+ * evaluate(NumericMode, ...) evaluates in long or arbitrary-precision
+ * arithmetic instead (see NumericMode); those modes are always interpreted.
+ *
+ * Instances are safe to share between threads. Apart from the evaluation
+ * count and the current program they are immutable.
+ */
+final class CompiledExpression {
+    // Instruction codes
+    static final int PUSH = 0;
+    static final int ADD = 1;
+    static final int SUBTRACT = 2;
+    static final int MULTIPLY = 3;
+    static final int DIVIDE = 4;
+    static final int LOAD = 5;
+    static final int SAVE = 6;      // followed by a local slot; copies the top of the stack there
+    static final int RECALL = 7;    // followed by a local slot; pushes its value
+
+    // Marks a '(' on the operator stack
+    private static final int OPEN_PAREN = -1;
+
+    private final String source;
+    private final String[] variables;
+    private final int[] spans;
+    private final int[] parsed;
+    private final boolean wellFormed;
+
+    // The program evaluators run: the parsed one, later the optimized one
+    private volatile Program program;
+    private volatile boolean optimized = false;
+    // Evaluations so far (racy; only used to decide when to move up a tier)
+    private int evaluations = 0;
+    // Generated code, or the interpreter once generation was tried and not possible
+    private volatile IntExpression function;
+
+    /**
+     * Instructions together with the operand stack depth and the number of
+     * local slots they need.
+     */
+    static final class Program {
+        final int[] code;
+        final int maxDepth;
+        final int locals;
+
+        Program(int[] code, int maxDepth, int locals) {
+            this.code = code;
+            this.maxDepth = maxDepth;
+            this.locals = locals;
+        }
+    }
+
+    private CompiledExpression(String source, String[] variables, int[] spans, int[] program, int maxDepth) {
+        this.source = source;
+        this.variables = variables;
+        this.spans = spans;
+        this.parsed = program;
+        this.wellFormed = isWellFormed(program);
+        this.program = new Program(program, maxDepth, 0);
+    }
+
+    // Parses an infix expression with the shunting-yard algorithm, reading
+    // tokens straight from an ExpressionScanner. Throws for mismatched
+    // parentheses and invalid tokens, like infixToPostfix always has; an
+    // identifier that is not one of the variables is an invalid token.
+    public static CompiledExpression compile(String expression, String... variables)
+            throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        for (String variable : variables) {
+            if (!ExpressionScanner.isIdentifier(variable)) {
+                throw new IllegalArgumentException("Not a variable name: " + variable);
+            }
+        }
+        ExpressionScanner scanner = new ExpressionScanner(expression);
+
+        // A token takes at least one character, which bounds every array
+        int capacity = expression.length();
+        int[] program = new int[capacity * 2];
+        int[] spans = new int[capacity * 2];    // start and end of each postfix token
+        int[] operators = new int[capacity];    // operator stack: code or OPEN_PAREN
+        int[] operatorStarts = new int[capacity];
+        int length = 0;
+        int tokenCount = 0;
+        int top = 0;
+        int depth = 0;
+        int maxDepth = 0;
+
+        int type;
+        while ((type = scanner.next()) != ExpressionScanner.END) {
+            switch (type) {
+                case ExpressionScanner.NUMBER:
+                    program[length++] = PUSH;
+                    program[length++] = scanner.value();
+                    spans[tokenCount * 2] = scanner.start();
+                    spans[tokenCount * 2 + 1] = scanner.end();
+                    tokenCount++;
+                    maxDepth = Math.max(maxDepth, ++depth);
+                    break;
+
+                case ExpressionScanner.IDENTIFIER:
+                    int index = indexOf(variables, expression, scanner.start(), scanner.end());
+                    if (index < 0) {
+                        throw new Solution_ExpressionEvaluator.InvalidExpressionException(
+                            "Invalid token: " + scanner.tokenText());
+                    }
+                    program[length++] = LOAD;
+                    program[length++] = index;
+                    spans[tokenCount * 2] = scanner.start();
+                    spans[tokenCount * 2 + 1] = scanner.end();
+                    tokenCount++;
+                    maxDepth = Math.max(maxDepth, ++depth);
+                    break;
+
+                case ExpressionScanner.OPERATOR:
+                    int code = scanner.value();
+                    // All operators are left-associative
+                    while (top > 0 && operators[top - 1] != OPEN_PAREN &&
+                           precedence(code) <= precedence(operators[top - 1])) {
+                        top--;
+                        program[length++] = operators[top];
+                        spans[tokenCount * 2] = operatorStarts[top];
+                        spans[tokenCount * 2 + 1] = operatorStarts[top] + 1;
+                        tokenCount++;
+                        depth--;
+                    }
+                    operators[top] = code;
+                    operatorStarts[top++] = scanner.start();
+                    break;
+
+                case ExpressionScanner.LEFT_PAREN:
+                    operators[top++] = OPEN_PAREN;
+                    break;
+
+                case ExpressionScanner.RIGHT_PAREN:
+                    boolean foundLeftParen = false;
+                    while (top > 0) {
+                        top--;
+                        if (operators[top] == OPEN_PAREN) {
+                            foundLeftParen = true;
+                            break;
+                        }
+                        program[length++] = operators[top];
+                        spans[tokenCount * 2] = operatorStarts[top];
+                        spans[tokenCount * 2 + 1] = operatorStarts[top] + 1;
+                        tokenCount++;
+                        depth--;
+                    }
+                    if (!foundLeftParen) {
+                        throw new Solution_ExpressionEvaluator.InvalidExpressionException("Mismatched parentheses");
+                    }
+                    break;
+
+                default:
+                    throw new Solution_ExpressionEvaluator.InvalidExpressionException(
+                        "Invalid token: " + scanner.tokenText());
+            }
+        }
+        while (top > 0) {
+            top--;
+            if (operators[top] == OPEN_PAREN) {
+                throw new Solution_ExpressionEvaluator.InvalidExpressionException("Mismatched parentheses");
+            }
+            program[length++] = operators[top];
+            spans[tokenCount * 2] = operatorStarts[top];
+            spans[tokenCount * 2 + 1] = operatorStarts[top] + 1;
+            tokenCount++;
+            depth--;
+        }
+
+        return new CompiledExpression(expression, variables.clone(), Arrays.copyOf(spans, tokenCount * 2),
+                                      Arrays.copyOf(program, length), maxDepth);
+    }
+
+    // Index of the variable named by source[start, end), or -1
+    private static int indexOf(String[] variables, String source, int start, int end) {
+        for (int i = 0; i < variables.length; i++) {
+            if (variables[i].length() == end - start && source.regionMatches(start, variables[i], 0, end - start)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Evaluates the expression with one value per variable, raising the same
+    // errors as evaluatePostfix
+    public int evaluate(int... values) throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        checkValues(values.length);
+        IntExpression function = this.function;
+        if (function != null) {
+            return function.evaluate(values);
+        }
+        int count = ++evaluations;
+        if (count >= ExpressionOptimizer.THRESHOLD) {
+            optimize();
+        }
+        int threshold = ExpressionBytecodeCompiler.THRESHOLD;
+        if (threshold >= 0 && count > threshold) {
+            // If threads race here each generates a class; any of them will do
+            function = ExpressionBytecodeCompiler.compile(this);
+            this.function = function != null ? function : this::interpret;
+            return this.function.evaluate(values);
+        }
+        return interpret(values);
+    }
+
+    // Evaluates the expression in the given arithmetic: an Integer, a Long or a BigInteger
+    public Number evaluate(NumericMode mode, int... values)
+            throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        switch (mode) {
+            case LONG_EXACT: return evaluateExact(values);
+            case BIG_INTEGER: return evaluateBig(values);
+            default: return evaluate(values);
+        }
+    }
+
+    // Evaluates the expression in long arithmetic, raising "Arithmetic
+    // overflow" if a result does not fit in a long
+    public long evaluateExact(int... values) throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        checkValues(values.length);
+        if (++evaluations >= ExpressionOptimizer.THRESHOLD) {
+            optimize();
+        }
+        return PostfixEvaluator.forCurrentThread().evaluateExact(this, values);
+    }
+
+    // Evaluates the expression exactly
+    public BigInteger evaluateBig(int... values) throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        checkValues(values.length);
+        if (++evaluations >= ExpressionOptimizer.THRESHOLD) {
+            optimize();
+        }
+        return PostfixEvaluator.forCurrentThread().evaluateBig(this, values);
+    }
+
+    // Evaluates the program on the calling thread's PostfixEvaluator
+    public int interpret(int... values) throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        checkValues(values.length);
+        return PostfixEvaluator.forCurrentThread().evaluate(this, values);
+    }
+
+    // Evaluates rows 0 to result.length - 1, where columns[i][row] is the
+    // value of variable i in that row
+    public void evaluateBatch(int[][] columns, int[] result)
+            throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        checkColumns(columns.length);
+        for (int[] column : columns) {
+            checkRows(column.length, result.length);
+        }
+        optimize();
+        BatchEvaluator.forCurrentThread().evaluate(this, columns, result);
+    }
+
+    // Like evaluateBatch(int[][], int[]), in long arithmetic
+    public void evaluateBatch(long[][] columns, long[] result)
+            throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        checkColumns(columns.length);
+        for (long[] column : columns) {
+            checkRows(column.length, result.length);
+        }
+        optimize();
+        BatchEvaluator.forCurrentThread().evaluate(this, columns, result);
+    }
+
+    // Switches to the optimized program, if there is one and it is not in use yet
+    private void optimize() {
+        if (!optimized && wellFormed && ExpressionOptimizer.ENABLED) {
+            // Racing threads optimize the same parsed program to equal results
+            program = ExpressionOptimizer.optimize(parsed);
+            optimized = true;
+        }
+    }
+
+    private void checkValues(int count) {
+        if (count != variables.length) {
+            throw new IllegalArgumentException("Expected " + variables.length + " variable values, got " + count);
+        }
+    }
+
+    private void checkColumns(int count) {
+        if (count != variables.length) {
+            throw new IllegalArgumentException("Expected " + variables.length + " columns, got " + count);
+        }
+    }
+
+    private static void checkRows(int columnLength, int rows) {
+        if (columnLength < rows) {
+            throw new IllegalArgumentException("Column has " + columnLength + " rows, expected " + rows);
+        }
+    }
+
+    // Generates the bytecode now instead of waiting for the threshold; false
+    // if the program cannot be compiled and will stay interpreted
+    public boolean compileBytecode() {
+        optimize();
+        IntExpression function = ExpressionBytecodeCompiler.compile(this);
+        this.function = function != null ? function : this::interpret;
+        return function != null;
+    }
+
+    // The postfix tokens, each followed by a space (as main prints them)
+    public String postfixString() {
+        StringBuilder text = new StringBuilder(source.length() + 1);
+        for (int i = 0; i < spans.length; i += 2) {
+            text.append(source, spans[i], spans[i + 1]).append(' ');
+        }
+        return text.toString();
+    }
+
+    // The postfix tokens as infixToPostfix returns them
+    public Queue<String> postfixTokens() {
+        Queue<String> tokens = new LinkedList<>();
+        for (int i = 0; i < spans.length; i += 2) {
+            tokens.add(source.substring(spans[i], spans[i + 1]));
+        }
+        return tokens;
+    }
+
+    // The program to run; callers must not modify it
+    Program program() {
+        return program;
+    }
+
+    // True if every operator has two operands and one value is left, so
+    // evaluation can only fail by dividing by zero
+    boolean isWellFormed() {
+        return wellFormed;
+    }
+
+    // The declared variable names, in binding order
+    public List<String> variableNames() {
+        return List.of(variables);
+    }
+
+    // Checks a program as compiled, before optimization
+    private static boolean isWellFormed(int[] program) {
+        int depth = 0;
+        for (int pc = 0; pc < program.length; pc++) {
+            int code = program[pc];
+            if (code == PUSH || code == LOAD) {
+                depth++;
+                pc++;
+            } else if (code >= ADD && code <= DIVIDE && depth >= 2) {
+                depth--;
+            } else {
+                return false;
+            }
+        }
+        return depth == 1;
+    }
+
+    // Division as the generated code performs it
+    static int divide(int a, int b) throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        if (b == 0) {
+            throw new Solution_ExpressionEvaluator.InvalidExpressionException("Division by zero");
+        }
+        return a / b;
+    }
+
+    // Instruction code for an operator token, or PUSH for anything else
+    static int operatorCode(String token) {
+        return token.length() == 1 ? ExpressionScanner.operatorCode(token.charAt(0)) : PUSH;
+    }
+
+    private static int precedence(int code) {
+        return code == ADD || code == SUBTRACT ? 1 : 2;
+    }
+}
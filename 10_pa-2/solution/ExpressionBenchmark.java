@@ -0,0 +1,320 @@
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * Micro-benchmark for postfix evaluation.
+ *
+ *   legacy     the original evaluatePostfix: a LinkedList<String> queue, a
+ *              java.util.Stack<Integer> and Integer.parseInt twice per number
+ *   queue      the current evaluatePostfix: each token decoded once, then run
+ *              on an int[] stack
+ *   compiled   CompiledExpression on the thread's PostfixEvaluator: no
+ *              parsing and no allocation per evaluation
+ *   bytecode   CompiledExpression with its generated class (see
+ *              ExpressionBytecodeCompiler): straight-line code, no interpreter.
+ *              The program is optimized first, which folds these constant
+ *              expressions; -Dexpression.optimize=false times the arithmetic
+ *
+ * Each round evaluates every expression once per mode; the best round is
+ * reported as evaluations per second.
+ *
+ * A second part evaluates one formula with three variables over a million
+ * rows, row by row with evaluate(int...) and in blocks with evaluateBatch.
+ *
+ * A third part compares the NumericModes on random expressions over three
+ * variables, once with small values (1 to 100) and once with values near
+ * Integer.MAX_VALUE, where long and then BigInteger arithmetic is needed.
+ * "bigNaive" is BigInteger for every operation, for comparison.
+ * Expressions that divide by zero for their values are left out; overflow
+ * errors in long mode are counted.
+ *
+ * The benchmark only spot-checks that the modes agree; see
+ * ExpressionDifferentialCheck for a full comparison of the tiers.
+ *
+ * Usage: java ExpressionBenchmark [expressions] [rounds]
+ */
+public class ExpressionBenchmark {
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        // Random expressions of 4 to 16 operators, with some parentheses
+        Random random = new Random(105);
+        List<Queue<String>> postfix = new ArrayList<>();
+        List<CompiledExpression> compiled = new ArrayList<>();
+        List<CompiledExpression> generated = new ArrayList<>();
+        while (compiled.size() < count) {
+            String expression = randomExpression(random, 4 + random.nextInt(13));
+            try {
+                CompiledExpression.compile(expression).evaluate();
+            } catch (Solution_ExpressionEvaluator.InvalidExpressionException e) {
+                continue; // a subexpression divides by zero
+            }
+            postfix.add(Solution_ExpressionEvaluator.infixToPostfix(expression));
+            compiled.add(CompiledExpression.compile(expression));
+            CompiledExpression hot = CompiledExpression.compile(expression);
+            hot.compileBytecode();
+            generated.add(hot);
+        }
+
+        // Make sure all modes agree before timing them
+        for (int i = 0; i < count; i++) {
+            int expected = legacyEvaluate(new LinkedList<>(postfix.get(i)));
+            if (Solution_ExpressionEvaluator.evaluatePostfix(new LinkedList<>(postfix.get(i))) != expected ||
+                compiled.get(i).interpret() != expected || generated.get(i).evaluate() != expected) {
+                throw new IllegalStateException("Modes disagree on expression " + i);
+            }
+        }
+
+        System.out.println("Expressions: " + count + ", rounds: " + rounds);
+        long legacyBest = Long.MAX_VALUE;
+        long queueBest = Long.MAX_VALUE;
+        long compiledBest = Long.MAX_VALUE;
+        long bytecodeBest = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (Queue<String> tokens : postfix) {
+                checksum += legacyEvaluate(new LinkedList<>(tokens));
+            }
+            legacyBest = Math.min(legacyBest, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (Queue<String> tokens : postfix) {
+                checksum += Solution_ExpressionEvaluator.evaluatePostfix(new LinkedList<>(tokens));
+            }
+            queueBest = Math.min(queueBest, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            PostfixEvaluator evaluator = PostfixEvaluator.forCurrentThread();
+            for (CompiledExpression expression : compiled) {
+                checksum += evaluator.evaluate(expression, null);
+            }
+            compiledBest = Math.min(compiledBest, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (CompiledExpression expression : generated) {
+                checksum += expression.evaluate();
+            }
+            bytecodeBest = Math.min(bytecodeBest, System.nanoTime() - start);
+        }
+
+        report("legacy", legacyBest, count, legacyBest);
+        report("queue", queueBest, count, legacyBest);
+        report("compiled", compiledBest, count, legacyBest);
+        report("bytecode", bytecodeBest, count, legacyBest);
+        System.out.println("(checksum " + checksum + ")");
+
+        benchmarkBatch(1_000_000, Math.max(5, rounds / 4));
+        benchmarkModes(count, rounds * 5);
+    }
+
+    private static void benchmarkModes(int count, int rounds) throws Exception {
+        Random random = new Random(23);
+        List<CompiledExpression> expressions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            expressions.add(CompiledExpression.compile(randomExpression(random, 4 + random.nextInt(13), "x", "y", "z"),
+                                                       "x", "y", "z"));
+        }
+        int[][] small = new int[count][3];
+        int[][] large = new int[count][3];
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < 3; j++) {
+                small[i][j] = 1 + random.nextInt(100);
+                large[i][j] = Integer.MAX_VALUE - random.nextInt(1 << 20);
+            }
+        }
+
+        String[] modes = {"int", "long", "big", "bigNaive"};
+        for (int[][] values : new int[][][] {small, large}) {
+            List<Integer> valid = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                try {
+                    naiveBig(expressions.get(i), values[i]);
+                    valid.add(i);
+                } catch (Solution_ExpressionEvaluator.InvalidExpressionException e) {
+                    // divides by zero
+                }
+            }
+            System.out.println("Numeric modes, " + (values == small ? "small" : "large") + " values, " +
+                               valid.size() + " expressions:");
+            for (String mode : modes) {
+                long best = Long.MAX_VALUE;
+                int errors = 0;
+                for (int round = 0; round < rounds; round++) {
+                    errors = 0;
+                    long start = System.nanoTime();
+                    for (int i : valid) {
+                        try {
+                            evaluateInMode(mode, expressions.get(i), values[i]);
+                        } catch (Solution_ExpressionEvaluator.InvalidExpressionException e) {
+                            errors++;
+                        }
+                    }
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+                System.out.printf("%-9s %12.0f evaluations/s  (%d errors)%n",
+                                  mode, valid.size() / (best / 1e9), errors);
+            }
+        }
+    }
+
+    private static Object evaluateInMode(String mode, CompiledExpression expression, int[] values)
+            throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        switch (mode) {
+            case "int": return expression.evaluate(NumericMode.INT, values);
+            case "long": return expression.evaluate(NumericMode.LONG_EXACT, values);
+            case "big": return expression.evaluate(NumericMode.BIG_INTEGER, values);
+            default: return naiveBig(expression, values);
+        }
+    }
+
+    // BigInteger arithmetic for every operation
+    private static BigInteger naiveBig(CompiledExpression expression, int[] values)
+            throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        CompiledExpression.Program program = expression.program();
+        int[] code = program.code;
+        BigInteger[] stack = new BigInteger[program.maxDepth];
+        BigInteger[] locals = new BigInteger[program.locals];
+        int size = 0;
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case CompiledExpression.PUSH: stack[size++] = BigInteger.valueOf(code[++pc]); break;
+                case CompiledExpression.LOAD: stack[size++] = BigInteger.valueOf(values[code[++pc]]); break;
+                case CompiledExpression.SAVE: locals[code[++pc]] = stack[size - 1]; break;
+                case CompiledExpression.RECALL: stack[size++] = locals[code[++pc]]; break;
+                case CompiledExpression.ADD: size--; stack[size - 1] = stack[size - 1].add(stack[size]); break;
+                case CompiledExpression.SUBTRACT: size--; stack[size - 1] = stack[size - 1].subtract(stack[size]); break;
+                case CompiledExpression.MULTIPLY: size--; stack[size - 1] = stack[size - 1].multiply(stack[size]); break;
+                default:
+                    size--;
+                    if (stack[size].signum() == 0) {
+                        throw new Solution_ExpressionEvaluator.InvalidExpressionException("Division by zero");
+                    }
+                    stack[size - 1] = stack[size - 1].divide(stack[size]);
+            }
+        }
+        return stack[0];
+    }
+
+    private static void benchmarkBatch(int rows, int rounds) throws Exception {
+        CompiledExpression formula = CompiledExpression.compile("price * quantity - discount / 4 + 17",
+                                                                "price", "quantity", "discount");
+        Random random = new Random(20);
+        int[][] columns = new int[3][rows];
+        for (int[] column : columns) {
+            for (int row = 0; row < rows; row++) {
+                column[row] = 1 + random.nextInt(1000);
+            }
+        }
+        int[] rowResult = new int[rows];
+        int[] batchResult = new int[rows];
+
+        long rowBest = Long.MAX_VALUE;
+        long batchBest = Long.MAX_VALUE;
+        int[] values = new int[3];
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (int row = 0; row < rows; row++) {
+                values[0] = columns[0][row];
+                values[1] = columns[1][row];
+                values[2] = columns[2][row];
+                rowResult[row] = formula.evaluate(values);
+            }
+            rowBest = Math.min(rowBest, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            formula.evaluateBatch(columns, batchResult);
+            batchBest = Math.min(batchBest, System.nanoTime() - start);
+        }
+        if (!Arrays.equals(rowResult, batchResult)) {
+            throw new IllegalStateException("Row and batch results differ");
+        }
+
+        System.out.println("Batch: " + rows + " rows, rounds: " + rounds);
+        System.out.printf("%-9s %12.0f rows/s%n", "row", rows / (rowBest / 1e9));
+        System.out.printf("%-9s %12.0f rows/s  (%.1fx row)%n", "batch", rows / (batchBest / 1e9),
+                          (double) rowBest / batchBest);
+    }
+
+    private static void report(String mode, long nanos, int count, long legacyNanos) {
+        System.out.printf("%-9s %12.0f evaluations/s  (%.1fx legacy)%n",
+                          mode, count / (nanos / 1e9), (double) legacyNanos / nanos);
+    }
+
+    // Builds a random well-formed expression with the given number of
+    // operators; about half the operands are variables if any are given
+    static String randomExpression(Random random, int operators, String... variables) {
+        String[] symbols = {"+", "-", "*", "/"};
+        StringBuilder text = new StringBuilder();
+        int open = 0;
+        appendOperand(text, random, variables);
+        for (int i = 0; i < operators; i++) {
+            text.append(' ').append(symbols[random.nextInt(4)]).append(' ');
+            if (random.nextInt(4) == 0) {
+                text.append("( ");
+                open++;
+            }
+            appendOperand(text, random, variables);
+            if (open > 0 && random.nextInt(3) == 0) {
+                text.append(" )");
+                open--;
+            }
+        }
+        for (; open > 0; open--) {
+            text.append(" )");
+        }
+        return text.toString();
+    }
+
+    private static void appendOperand(StringBuilder text, Random random, String[] variables) {
+        if (variables.length > 0 && random.nextBoolean()) {
+            text.append(variables[random.nextInt(variables.length)]);
+        } else {
+            text.append(1 + random.nextInt(99));
+        }
+    }
+
+    // The original evaluatePostfix, kept here for comparison
+    private static int legacyEvaluate(Queue<String> postfix) throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        Stack<Integer> stack = new Stack<>();
+        while (!postfix.isEmpty()) {
+            String token = postfix.poll();
+            if (isInteger(token)) {
+                stack.push(Integer.parseInt(token));
+            } else {
+                if (stack.size() < 2) {
+                    throw new Solution_ExpressionEvaluator.InvalidExpressionException(
+                        "Insufficient operands for operator: " + token);
+                }
+                int b = stack.pop();
+                int a = stack.pop();
+                int result = 0;
+                switch (token) {
+                    case "+": result = a + b; break;
+                    case "-": result = a - b; break;
+                    case "*": result = a * b; break;
+                    case "/":
+                        if (b == 0) throw new Solution_ExpressionEvaluator.InvalidExpressionException("Division by zero");
+                        result = a / b; break;
+                    default:
+                        throw new Solution_ExpressionEvaluator.InvalidExpressionException("Unknown operator: " + token);
+                }
+                stack.push(result);
+            }
+        }
+        if (stack.size() != 1) {
+            throw new Solution_ExpressionEvaluator.InvalidExpressionException("Invalid postfix expression");
+        }
+        return stack.pop();
+    }
+
+    private static boolean isInteger(String s) {
+        try {
+            Integer.parseInt(s);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
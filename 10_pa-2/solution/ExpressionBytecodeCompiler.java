@@ -0,0 +1,287 @@
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.util.*;
+
+/**
+ * Turns a postfix program into a JVM class whose evaluate() method is the
+ * program as straight-line bytecode: each PUSH becomes a constant load, each
+ * LOAD an element load from the values array, and each operator a single
+ * iadd, isub or imul (division calls
+ * CompiledExpression.divide, which raises "Division by zero"). There is no
+ * dispatch loop and no operand array left, so once the JIT compiles the
+ * method the arithmetic runs in registers.
+ *
+ * The class is defined as a hidden class in this package, so it can call
+ * package-private helpers and is unloaded once its CompiledExpression is no
+ * longer reachable (for example after being evicted from the cache).
+ *
+ * Defining a class costs far more than interpreting an expression a few
+ * times, so CompiledExpression only asks for bytecode once an expression has
+ * been evaluated THRESHOLD times. The threshold is read from the system
+ * property expression.bytecodeThreshold (default 1000; a negative value
+ * turns the backend off).
+ *
+ * Only well-formed programs are compiled; a program that fails with
+ * "Insufficient operands" or "Invalid postfix expression" stays interpreted
+ * so it keeps raising those errors.
+ */
+final class ExpressionBytecodeCompiler {
+    static final int THRESHOLD = Integer.getInteger("expression.bytecodeThreshold", 1000);
+
+    // A method's code may not be longer than this
+    private static final int MAX_CODE_LENGTH = 65535;
+
+    // Opcodes used by the generated code
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int ALOAD_0 = 0x2A;
+    private static final int ALOAD_1 = 0x2B;
+    private static final int ILOAD = 0x15;
+    private static final int IALOAD = 0x2E;
+    private static final int ISTORE = 0x36;
+    private static final int DUP = 0x59;
+    private static final int IADD = 0x60;
+    private static final int ISUB = 0x64;
+    private static final int IMUL = 0x68;
+    private static final int IRETURN = 0xAC;
+    private static final int RETURN = 0xB1;
+    private static final int INVOKESPECIAL = 0xB7;
+    private static final int INVOKESTATIC = 0xB8;
+    private static final int WIDE = 0xC4;
+
+    // JVM locals before the expression's own: this and the values array
+    private static final int FIRST_LOCAL = 2;
+
+    private ExpressionBytecodeCompiler() {
+    }
+
+    // Generates and loads a class for a well-formed program, or returns null
+    // if the program is not well-formed or too long for one method
+    static IntExpression compile(CompiledExpression expression) {
+        if (!expression.isWellFormed()) {
+            return null;
+        }
+        try {
+            CompiledExpression.Program program = expression.program();
+            byte[] classFile = generate(program.code, program.maxDepth, program.locals);
+            if (classFile == null) {
+                return null;
+            }
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+            return (IntExpression) lookup.lookupClass().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | IOException e) {
+            throw new IllegalStateException("Cannot define expression class", e);
+        }
+    }
+
+    // Writes the class file, or returns null if the code would be too long
+    private static byte[] generate(int[] program, int maxDepth, int locals) throws IOException {
+        ConstantPool pool = new ConstantPool();
+        int thisClass = pool.classRef("CompiledExpressionBytecode");
+        int superClass = pool.classRef("java/lang/Object");
+        int interfaceClass = pool.classRef("IntExpression");
+        int objectInit = pool.methodRef(superClass, "<init>", "()V");
+        int divide = pool.methodRef(pool.classRef("CompiledExpression"), "divide", "(II)I");
+        int initName = pool.utf8("<init>");
+        int initType = pool.utf8("()V");
+        int evaluateName = pool.utf8("evaluate");
+        int evaluateType = pool.utf8("([I)I");
+        int codeName = pool.utf8("Code");
+
+        // evaluate(): the program as straight-line code
+        ByteArrayOutputStream code = new ByteArrayOutputStream(program.length * 2);
+        for (int pc = 0; pc < program.length; pc++) {
+            switch (program[pc]) {
+                case CompiledExpression.PUSH:
+                    pushInt(code, program[++pc], pool);
+                    break;
+                case CompiledExpression.LOAD:
+                    code.write(ALOAD_1);
+                    pushInt(code, program[++pc], pool);
+                    code.write(IALOAD);
+                    break;
+                case CompiledExpression.SAVE:
+                    code.write(DUP);
+                    localInstruction(code, ISTORE, FIRST_LOCAL + program[++pc]);
+                    break;
+                case CompiledExpression.RECALL:
+                    localInstruction(code, ILOAD, FIRST_LOCAL + program[++pc]);
+                    break;
+                case CompiledExpression.ADD:
+                    code.write(IADD);
+                    break;
+                case CompiledExpression.SUBTRACT:
+                    code.write(ISUB);
+                    break;
+                case CompiledExpression.MULTIPLY:
+                    code.write(IMUL);
+                    break;
+                default:
+                    code.write(INVOKESTATIC);
+                    writeShort(code, divide);
+            }
+        }
+        code.write(IRETURN);
+        if (code.size() > MAX_CODE_LENGTH || pool.size() > 65535) {
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(code.size() + 256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);               // minor version
+        out.writeShort(52);              // Java 8 class file; straight-line code needs no stack map frames
+        pool.writeTo(out);
+        out.writeShort(0x0030);          // ACC_FINAL | ACC_SUPER
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1);
+        out.writeShort(interfaceClass);
+        out.writeShort(0);               // no fields
+        out.writeShort(2);               // two methods
+
+        byte[] constructor = {(byte) ALOAD_0, (byte) INVOKESPECIAL, (byte) (objectInit >> 8), (byte) objectInit,
+                              (byte) RETURN};
+        writeMethod(out, initName, initType, codeName, 1, 1, constructor);
+        // A LOAD briefly needs two slots (array and index) above the operands, a SAVE one
+        writeMethod(out, evaluateName, evaluateType, codeName, maxDepth + 2, FIRST_LOCAL + locals,
+                    code.toByteArray());
+
+        out.writeShort(0);               // no class attributes
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int type, int codeName,
+                                    int maxStack, int maxLocals, byte[] code) throws IOException {
+        out.writeShort(0x0001);          // ACC_PUBLIC
+        out.writeShort(name);
+        out.writeShort(type);
+        out.writeShort(1);               // one attribute: Code
+        out.writeShort(codeName);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);               // no exception table
+        out.writeShort(0);               // no code attributes
+    }
+
+    // Emits the shortest instruction that pushes the value
+    private static void pushInt(ByteArrayOutputStream code, int value, ConstantPool pool) {
+        if (value >= -1 && value <= 5) {
+            code.write(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            code.write(BIPUSH);
+            code.write(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            code.write(SIPUSH);
+            writeShort(code, value);
+        } else {
+            int index = pool.integer(value);
+            if (index <= 255) {
+                code.write(LDC);
+                code.write(index);
+            } else {
+                code.write(LDC_W);
+                writeShort(code, index);
+            }
+        }
+    }
+
+    // Emits iload or istore, widened for locals past 255
+    private static void localInstruction(ByteArrayOutputStream code, int opcode, int local) {
+        if (local <= 255) {
+            code.write(opcode);
+            code.write(local);
+        } else {
+            code.write(WIDE);
+            code.write(opcode);
+            writeShort(code, local);
+        }
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value >> 8);
+        out.write(value);
+    }
+
+    /**
+     * The class file's constant pool; equal entries are stored once.
+     */
+    private static class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private int count = 0;
+
+        int utf8(String text) {
+            return entry("U" + text, () -> {
+                out.writeByte(1);
+                out.writeUTF(text);
+            });
+        }
+
+        int integer(int value) {
+            return entry("I" + value, () -> {
+                out.writeByte(3);
+                out.writeInt(value);
+            });
+        }
+
+        int classRef(String internalName) {
+            int name = utf8(internalName);
+            return entry("C" + internalName, () -> {
+                out.writeByte(7);
+                out.writeShort(name);
+            });
+        }
+
+        int methodRef(int owner, String name, String type) {
+            int nameIndex = utf8(name);
+            int typeIndex = utf8(type);
+            int nameAndType = entry("N" + name + type, () -> {
+                out.writeByte(12);
+                out.writeShort(nameIndex);
+                out.writeShort(typeIndex);
+            });
+            return entry("M" + owner + "." + name + type, () -> {
+                out.writeByte(10);
+                out.writeShort(owner);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        int size() {
+            return count;
+        }
+
+        void writeTo(DataOutputStream target) throws IOException {
+            out.flush();
+            target.writeShort(count + 1);
+            bytes.writeTo(target);
+        }
+
+        private int entry(String key, EntryWriter writer) {
+            Integer index = indexes.get(key);
+            if (index == null) {
+                try {
+                    writer.write();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                index = ++count;
+                indexes.put(key, index);
+            }
+            return index;
+        }
+    }
+
+    private interface EntryWriter {
+        void write() throws IOException;
+    }
+}
@@ -0,0 +1,129 @@
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of CompiledExpressions, keyed by the normalized expression
+ * (trimmed, with each run of whitespace turned into one space), so a
+ * repeated expression is only tokenized and converted once.
+ *
+ * The cache is split into segments by key hash, each a small LRU map with
+ * its own lock, so threads looking up different expressions rarely wait
+ * for each other. When a segment is full its least recently used entry is
+ * evicted. Expressions that fail to compile are not cached.
+ *
+ * Hit, miss and eviction counts are kept for the whole cache.
+ */
+final class ExpressionCache {
+    private static final int SEGMENTS = 16;
+
+    private final List<Map<String, CompiledExpression>> segments = new ArrayList<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    // Creates a cache holding about capacity expressions
+    public ExpressionCache(int capacity) {
+        int perSegment = Math.max(1, (capacity + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments.add(new LinkedHashMap<String, CompiledExpression>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CompiledExpression> eldest) {
+                    if (size() > perSegment) {
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            });
+        }
+    }
+
+    // Returns the compiled form of an expression, compiling it on a miss
+    public CompiledExpression compile(String expression)
+            throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        String key = normalize(expression);
+        Map<String, CompiledExpression> segment = segments.get(spread(key.hashCode()) & (SEGMENTS - 1));
+
+        CompiledExpression compiled;
+        synchronized (segment) {
+            compiled = segment.get(key);
+        }
+        if (compiled != null) {
+            hits.incrementAndGet();
+            return compiled;
+        }
+
+        // Compile outside the lock; if two threads race, both results are equivalent
+        misses.incrementAndGet();
+        compiled = CompiledExpression.compile(key);
+        synchronized (segment) {
+            segment.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    // Trims the expression and collapses each run of whitespace into one space
+    static String normalize(String expression) {
+        String trimmed = expression.trim();
+        int length = trimmed.length();
+
+        // Most expressions are already normalized (trim() leaves no whitespace at index 0)
+        boolean normalized = true;
+        for (int i = 0; i < length; i++) {
+            char c = trimmed.charAt(i);
+            if (ExpressionScanner.isWhitespace(c) && (c != ' ' || trimmed.charAt(i - 1) == ' ')) {
+                normalized = false;
+                break;
+            }
+        }
+        if (normalized) {
+            return trimmed;
+        }
+
+        StringBuilder text = new StringBuilder(length);
+        boolean inWhitespace = false;
+        for (int i = 0; i < length; i++) {
+            char c = trimmed.charAt(i);
+            if (ExpressionScanner.isWhitespace(c)) {
+                inWhitespace = true;
+                continue;
+            }
+            if (inWhitespace) {
+                text.append(' ');
+                inWhitespace = false;
+            }
+            text.append(c);
+        }
+        return text.toString();
+    }
+
+    // Number of distinct expressions currently cached
+    public int size() {
+        int size = 0;
+        for (Map<String, CompiledExpression> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+
+    @Override
+    public String toString() {
+        long lookups = getHits() + getMisses();
+        return String.format("Expression cache: %d hits, %d misses (%.1f%% hit rate), %d evictions, %d cached",
+                             getHits(), getMisses(), lookups == 0 ? 0.0 : 100.0 * getHits() / lookups,
+                             getEvictions(), size());
+    }
+
+    // Mixes the high bits of a hash code into the low bits used for a segment
+    // or table slot (ExpressionOptimizer's node table uses it too)
+    static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
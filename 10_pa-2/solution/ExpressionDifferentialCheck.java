@@ -0,0 +1,156 @@
+import java.util.*;
+
+/**
+ * Differential check for the evaluation tiers and ExpressionOptimizer.
+ *
+ * Random expressions over x and y are evaluated with random values by the
+ * original evaluatePostfix and by every tier of CompiledExpression:
+ *
+ *   parsed     interpret() before the program is optimized
+ *   optimized  interpret() on the optimized program
+ *   bytecode   the generated class (see ExpressionBytecodeCompiler)
+ *   batchInt   evaluateBatch over int columns
+ *   batchLong  evaluateBatch over long columns, compared with
+ *              evaluateExact on the parsed program unless that overflows
+ *              (the batch wraps around like plain long arithmetic)
+ *   exact      evaluateExact (LONG_EXACT) on the optimized program, compared
+ *              with the parsed program
+ *   big        evaluateBig (BIG_INTEGER) on the optimized program, compared
+ *              with the parsed program
+ *
+ * Every tier must give the same value, or the same error message, as the
+ * reference. The expressions use 0, 1 and repeated subexpressions often,
+ * so constant folding, the identity rewrites and SAVE/RECALL all get
+ * exercised, and some contain several subterms that fail (a division by
+ * zero, a product that overflows a long), so the first failing operation,
+ * and with it the error, must be the same after optimizing. Run it with
+ * -Dexpression.optimize=false to check the tiers without the optimizer.
+ *
+ * Usage: java ExpressionDifferentialCheck [expressions] [seed]
+ *        (exits with status 1 if any tier disagrees)
+ */
+public class ExpressionDifferentialCheck {
+    // Mismatches printed in full; the rest are only counted
+    private static final int SHOWN_MISMATCHES = 5;
+
+    // evaluateExact's outcome for a result that does not fit in a long
+    private static final String OVERFLOW = "error: Arithmetic overflow";
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 22;
+
+        Random random = new Random(seed);
+        int mismatches = 0;
+        int withLocals = 0;
+        for (int i = 0; i < count; i++) {
+            String expression;
+            if (random.nextBoolean()) {
+                expression = randomTerm(random, 4);
+            } else {
+                String shared = randomTerm(random, 2);
+                expression = "( " + shared + " ) * 3 + ( " + shared + " ) / 2 - " + randomTerm(random, 2);
+            }
+            int x = random.nextInt(21) - 10;
+            int y = random.nextInt(21) - 10;
+
+            String mismatch = check(expression, x, y);
+            if (mismatch != null) {
+                if (mismatches++ < SHOWN_MISMATCHES) {
+                    System.out.println(expression + " with x=" + x + ", y=" + y + ": " + mismatch);
+                }
+            }
+
+            CompiledExpression optimized = CompiledExpression.compile(expression, "x", "y");
+            optimized.compileBytecode();
+            if (optimized.program().locals > 0) {
+                withLocals++;
+            }
+        }
+
+        System.out.println("Expressions: " + count + ", seed: " + seed + ", optimizer "
+                           + (ExpressionOptimizer.ENABLED ? "on" : "off") + ", "
+                           + withLocals + " with repeated subexpressions");
+        System.out.println("Mismatches: " + mismatches);
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    // Evaluates one expression in every tier; null if all agree, otherwise
+    // the outcome of each tier
+    private static String check(String expression, int x, int y) throws Exception {
+        String reference = outcome(() -> Solution_ExpressionEvaluator.evaluatePostfix(
+            Solution_ExpressionEvaluator.infixToPostfix(expression, "x", "y"), Map.of("x", x, "y", y)));
+
+        // Fewer than ExpressionOptimizer.THRESHOLD evaluations, so this one stays unoptimized
+        CompiledExpression parsed = CompiledExpression.compile(expression, "x", "y");
+        String interpreted = outcome(() -> parsed.interpret(x, y));
+        String exact = outcome(() -> parsed.evaluateExact(x, y));
+        String big = outcome(() -> parsed.evaluateBig(x, y));
+
+        CompiledExpression batched = CompiledExpression.compile(expression, "x", "y");
+        String batchInt = outcome(() -> {
+            int[] result = new int[1];
+            batched.evaluateBatch(new int[][] {{x}, {y}}, result);
+            return result[0];
+        });
+        String batchLong = outcome(() -> {
+            long[] result = new long[1];
+            batched.evaluateBatch(new long[][] {{x}, {y}}, result);
+            return result[0];
+        });
+        // evaluateBatch has switched the program to its optimized form
+        String optimized = outcome(() -> batched.interpret(x, y));
+        String optimizedExact = outcome(() -> batched.evaluateExact(x, y));
+        String optimizedBig = outcome(() -> batched.evaluateBig(x, y));
+
+        CompiledExpression generated = CompiledExpression.compile(expression, "x", "y");
+        generated.compileBytecode();
+        String bytecode = outcome(() -> generated.evaluate(x, y));
+
+        if (reference.equals(interpreted) && reference.equals(optimized) && reference.equals(bytecode)
+                && reference.equals(batchInt) && (exact.equals(batchLong) || exact.equals(OVERFLOW))
+                && exact.equals(optimizedExact)
+                && big.equals(optimizedBig)) {
+            return null;
+        }
+        return "reference " + reference + ", parsed " + interpreted + ", optimized " + optimized
+               + ", bytecode " + bytecode + ", batchInt " + batchInt
+               + ", batchLong " + batchLong + ", exact " + exact + " -> " + optimizedExact
+               + ", big " + big + " -> " + optimizedBig;
+    }
+
+    // A random expression tree of at most the given depth over x, y, small
+    // constants, a repeated product and, now and then, a subterm that fails
+    // in every mode or overflows a long
+    private static String randomTerm(Random random, int depth) {
+        if (depth == 0 || random.nextInt(4) == 0) {
+            switch (random.nextInt(12)) {
+                case 0: case 1: return "x";
+                case 2: case 3: return "y";
+                case 4: case 5: return String.valueOf(random.nextInt(3));
+                case 6: case 7: return String.valueOf(random.nextInt(2000) - 1000);
+                case 8: case 9: return "( x * y )";
+                case 10: return "( x / 0 )";
+                default: return "( 2147483647 * 2147483647 * 2147483647 )";
+            }
+        }
+        String[] symbols = {"+", "-", "*", "/"};
+        return "( " + randomTerm(random, depth - 1) + " " + symbols[random.nextInt(4)] + " "
+               + randomTerm(random, depth - 1) + " )";
+    }
+
+    private interface Evaluation {
+        Object run() throws Exception;
+    }
+
+    // The value as text, or the error message without the batch row number
+    private static String outcome(Evaluation evaluation) throws Exception {
+        try {
+            return String.valueOf(evaluation.run());
+        } catch (Solution_ExpressionEvaluator.InvalidExpressionException e) {
+            return "error: " + e.getMessage().replaceAll(" in row \\d+", "");
+        }
+    }
+}
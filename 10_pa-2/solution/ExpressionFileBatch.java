@@ -0,0 +1,107 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Batch mode for expression files (--batch): the file is memory-mapped and
+ * cut into chunks of about CHUNK_SIZE bytes at line boundaries, and the
+ * chunks are evaluated in parallel on a ForkJoinPool. Each chunk renders its
+ * lines exactly as the line-by-line mode prints them, and the chunks are
+ * written in input order through one large buffered stream.
+ *
+ * Lines end at '\n', '\r', '\u2028', '\u2029' or '\u0085', as with
+ * Scanner.nextLine(); chunks are only cut after a '\n' byte, which cannot
+ * occur inside a multi-byte character in the default charset.
+ *
+ * At most a few chunks per worker are in flight, so memory stays bounded
+ * however large the file is. All workers share Solution_ExpressionEvaluator's
+ * cache; each evaluates on its own thread's evaluator.
+ */
+final class ExpressionFileBatch {
+    static final int CHUNK_SIZE = 1 << 20;
+
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 20;
+    // Bytes read at a time while looking for the end of a chunk
+    private static final int SCAN_SIZE = 4096;
+
+    private ExpressionFileBatch() {
+    }
+
+    // Evaluates every line of the file in the given mode and writes the results to out
+    static void run(File file, NumericMode mode, OutputStream out) throws IOException {
+        Charset charset = Charset.defaultCharset();
+        int workers = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try (RandomAccessFile input = new RandomAccessFile(file, "r");
+             FileChannel channel = input.getChannel()) {
+            OutputStream buffered = new BufferedOutputStream(out, OUTPUT_BUFFER_SIZE);
+            Deque<ForkJoinTask<byte[]>> pending = new ArrayDeque<>();
+            long size = channel.size();
+            long start = 0;
+            while (start < size) {
+                long end = chunkEnd(channel, start, size);
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                pending.add(pool.submit(() -> evaluateChunk(chunk, mode, charset)));
+                if (pending.size() >= workers * 4) {
+                    buffered.write(pending.poll().join());
+                }
+                start = end;
+            }
+            while (!pending.isEmpty()) {
+                buffered.write(pending.poll().join());
+            }
+            buffered.flush();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // The offset just past the first '\n' at or after start + CHUNK_SIZE (or the file size)
+    private static long chunkEnd(FileChannel channel, long start, long size) throws IOException {
+        long position = start + CHUNK_SIZE;
+        if (position >= size) {
+            return size;
+        }
+        ByteBuffer window = ByteBuffer.allocate(SCAN_SIZE);
+        while (position < size) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    // Renders what the line-by-line mode prints for every line of a chunk
+    private static byte[] evaluateChunk(MappedByteBuffer chunk, NumericMode mode, Charset charset) {
+        String text = charset.decode(chunk).toString();
+        StringBuilder out = new StringBuilder(text.length() * 4);
+        int length = text.length();
+        int lineStart = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || isLineBreak(text.charAt(i))) {
+                String expression = text.substring(lineStart, i).trim();
+                if (!expression.isEmpty()) {
+                    Solution_ExpressionEvaluator.appendEvaluation(expression, mode, out);
+                }
+                lineStart = i + 1;
+            }
+        }
+        return out.toString().getBytes(charset);
+    }
+
+    private static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029' || c == '\u0085';
+    }
+}
@@ -0,0 +1,187 @@
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Load generator for ExpressionServer. Each connection sends its requests
+ * in pipelined batches of the given depth and times every request from the
+ * write of its batch to the arrival of its response line. A batch is only
+ * sent once the previous one has been answered, but responses are read on
+ * a separate thread while the batch is being written: the server applies
+ * backpressure, so a batch larger than the socket buffers would otherwise
+ * leave both sides blocked in write. Reports throughput and latency
+ * percentiles over all connections.
+ *
+ * Requests are drawn from a fixed set of random expressions, so after the
+ * first few the server answers from its cache, as it would for a workload
+ * with recurring formulas.
+ *
+ * Usage: java ExpressionLoadClient socket-path [connections] [requests per connection]
+ *                                  [pipeline depth] [distinct expressions]
+ */
+public class ExpressionLoadClient {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: java ExpressionLoadClient socket-path [connections] [requests] [depth] [distinct]");
+            return;
+        }
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(args[0]);
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        int depth = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        int distinct = args.length > 4 ? Integer.parseInt(args[4]) : 1000;
+
+        Random random = new Random(24);
+        String[] expressions = new String[distinct];
+        for (int i = 0; i < distinct; i++) {
+            expressions[i] = ExpressionBenchmark.randomExpression(random, 1 + random.nextInt(16));
+        }
+
+        long[][] latencies = new long[connections][];
+        int[] errors = new int[connections];
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int c = 0; c < connections; c++) {
+            int connection = c;
+            Thread thread = new Thread(() -> {
+                try {
+                    latencies[connection] = run(address, expressions, requests, depth, connection, errors);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, "load-" + c);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long[] all = new long[connections * requests];
+        int errorCount = 0;
+        for (int c = 0; c < connections; c++) {
+            System.arraycopy(latencies[c], 0, all, c * requests, requests);
+            errorCount += errors[c];
+        }
+        Arrays.sort(all);
+        System.out.printf("Requests: %d over %d connections, pipeline depth %d, %d distinct expressions%n",
+                          all.length, connections, depth, distinct);
+        System.out.printf("Throughput: %.0f requests/s (%.2f s)%n", all.length / (elapsed / 1e9), elapsed / 1e9);
+        System.out.printf("Latency: p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                          percentile(all, 50) / 1e3, percentile(all, 99) / 1e3, all[all.length - 1] / 1e3);
+        System.out.println("Error responses: " + errorCount);
+    }
+
+    // Sends requests in batches of depth on one connection; returns each request's latency
+    private static long[] run(UnixDomainSocketAddress address, String[] expressions, int requests, int depth,
+                              int connection, int[] errors) throws IOException {
+        long[] latencies = new long[requests];
+        AtomicLongArray sendTimes = new AtomicLongArray(requests);
+        // Permits for requests that may be outstanding: one batch
+        Semaphore window = new Semaphore(depth);
+        Random random = new Random(connection);
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(address);
+            FutureTask<Integer> reading = new FutureTask<>(
+                () -> readResponses(channel, sendTimes, window, latencies));
+            Thread reader = new Thread(reading, "load-" + connection + "-reader");
+            reader.setDaemon(true);
+            reader.start();
+
+            StringBuilder batch = new StringBuilder();
+            for (int sent = 0; sent < requests; sent += depth) {
+                int count = Math.min(depth, requests - sent);
+                batch.setLength(0);
+                for (int i = 0; i < count; i++) {
+                    batch.append(expressions[random.nextInt(expressions.length)]).append('\n');
+                }
+                ByteBuffer output = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+
+                // Wait until the previous batch has been answered
+                acquire(window, count, reading);
+                long batchStart = System.nanoTime();
+                for (int i = sent; i < sent + count; i++) {
+                    sendTimes.set(i, batchStart);
+                }
+                while (output.hasRemaining()) {
+                    channel.write(output);
+                }
+            }
+            errors[connection] = await(reading);
+        }
+        return latencies;
+    }
+
+    // Reads response lines until every request has one; returns the number of error responses
+    private static int readResponses(SocketChannel channel, AtomicLongArray sendTimes, Semaphore window,
+                                     long[] latencies) throws IOException {
+        ByteBuffer input = ByteBuffer.allocate(64 * 1024);
+        int received = 0;
+        int errors = 0;
+        boolean lineStart = true;
+        while (received < latencies.length) {
+            input.clear();
+            if (channel.read(input) < 0) {
+                throw new EOFException("Server closed the connection");
+            }
+            long now = System.nanoTime();
+            int lines = 0;
+            for (int i = 0; i < input.position(); i++) {
+                byte b = input.get(i);
+                if (lineStart && b == 'E') {
+                    errors++;
+                }
+                lineStart = b == '\n';
+                if (lineStart) {
+                    latencies[received] = now - sendTimes.get(received);
+                    received++;
+                    lines++;
+                }
+            }
+            window.release(lines);
+        }
+        return errors;
+    }
+
+    // Takes permits from the window, failing if the reader stops first
+    private static void acquire(Semaphore window, int permits, Future<Integer> reading) throws IOException {
+        try {
+            while (!window.tryAcquire(permits, 100, TimeUnit.MILLISECONDS)) {
+                if (reading.isDone()) {
+                    await(reading);
+                    throw new EOFException("Server closed the connection");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for responses");
+        }
+    }
+
+    // Waits for the reader and returns its error count, rethrowing its failure
+    private static int await(Future<Integer> reading) throws IOException {
+        try {
+            return reading.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for responses");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        int index = (int) Math.ceil(sorted.length * percent / 100.0) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
@@ -0,0 +1,209 @@
+import java.util.*;
+
+/**
+ * Rewrites a well-formed postfix program (see CompiledExpression) into an
+ * equivalent one that does less work per evaluation. The program is turned
+ * into a DAG in which identical subexpressions are one node, then:
+ *
+ *   - an operator whose operands are both constants is folded into a
+ *     constant, except a division by zero, which stays in the program so it
+ *     still raises "Division by zero" when evaluated, and an operation that
+ *     overflows an int, which stays so each NumericMode computes it in its
+ *     own arithmetic;
+ *   - x + 0, 0 + x, x - 0, x * 1, 1 * x and x / 1 become x;
+ *   - a subexpression used more than once is computed once: its first use
+ *     is followed by SAVE into a local slot and later uses are a RECALL.
+ *
+ * No rewrite drops a subexpression that might divide by zero (x * 0 is not
+ * folded, for example), so an expression raises "Division by zero" exactly
+ * when the original program does. Operands of + and * are compared in a
+ * fixed order so "a * b" and "b * a" are the same node, but each node keeps
+ * the operand order of its first occurrence, which is where it is computed,
+ * so operations still run in the original order and the first failing one
+ * decides the error in every NumericMode.
+ *
+ * The system property expression.optimize=false turns the pass off.
+ */
+final class ExpressionOptimizer {
+    static final boolean ENABLED = !"false".equals(System.getProperty("expression.optimize"));
+
+    // Evaluations after which an expression is optimized. Optimizing costs
+    // about as much as compiling, so one-off expressions are left alone.
+    static final int THRESHOLD = 8;
+
+    // Node kinds are instruction codes: PUSH, LOAD or an operator
+    private int[] kinds;
+    private int[] lefts;    // left operand, or the constant / variable index
+    private int[] rights;
+    private int count = 0;
+
+    // Hash-consing table: open addressing over node keys
+    private long[] keys;
+    private int[] nodes;
+
+    private ExpressionOptimizer(int capacity) {
+        kinds = new int[capacity];
+        lefts = new int[capacity];
+        rights = new int[capacity];
+        int tableSize = Integer.highestOneBit(Math.max(4, capacity) * 2) * 2;
+        keys = new long[tableSize];
+        nodes = new int[tableSize];
+        Arrays.fill(nodes, -1);
+    }
+
+    // Optimizes a well-formed program
+    static CompiledExpression.Program optimize(int[] program) {
+        ExpressionOptimizer optimizer = new ExpressionOptimizer(program.length);
+        int root = optimizer.build(program);
+        return optimizer.emit(root);
+    }
+
+    // Builds the DAG and returns its root
+    private int build(int[] program) {
+        int[] stack = new int[program.length];
+        int size = 0;
+        for (int pc = 0; pc < program.length; pc++) {
+            int code = program[pc];
+            if (code == CompiledExpression.PUSH || code == CompiledExpression.LOAD) {
+                stack[size++] = node(code, program[++pc], 0);
+            } else {
+                int right = stack[--size];
+                int left = stack[size - 1];
+                stack[size - 1] = combine(code, left, right);
+            }
+        }
+        return stack[0];
+    }
+
+    // The node for "left code right", folded or simplified where possible
+    private int combine(int code, int left, int right) {
+        boolean leftConstant = kinds[left] == CompiledExpression.PUSH;
+        boolean rightConstant = kinds[right] == CompiledExpression.PUSH;
+        int a = lefts[left];
+        int b = lefts[right];
+        if (leftConstant && rightConstant) {
+            long value;
+            switch (code) {
+                case CompiledExpression.ADD: value = (long) a + b; break;
+                case CompiledExpression.SUBTRACT: value = (long) a - b; break;
+                case CompiledExpression.MULTIPLY: value = (long) a * b; break;
+                default: value = b == 0 ? Long.MIN_VALUE : (long) a / b;
+            }
+            if (value == (int) value) {
+                return node(CompiledExpression.PUSH, (int) value, 0);
+            }
+        }
+        switch (code) {
+            case CompiledExpression.ADD:
+                if (rightConstant && b == 0) return left;
+                if (leftConstant && a == 0) return right;
+                break;
+            case CompiledExpression.SUBTRACT:
+                if (rightConstant && b == 0) return left;
+                break;
+            case CompiledExpression.MULTIPLY:
+                if (rightConstant && b == 1) return left;
+                if (leftConstant && a == 1) return right;
+                break;
+            default:
+                if (rightConstant && b == 1) return left;
+        }
+        return node(code, left, right);
+    }
+
+    // Finds or creates the node (kind, left, right). The operands of + and *
+    // are ordered in the key only: a new node keeps the order it was written
+    // in, so the program still evaluates (and fails) left to right.
+    private int node(int kind, int left, int right) {
+        long key;
+        if ((kind == CompiledExpression.ADD || kind == CompiledExpression.MULTIPLY) && left > right) {
+            key = (long) kind << 61 | (right & 0x3FFFFFFFL) << 31 | left;
+        } else {
+            key = (long) kind << 61 | (left & 0x3FFFFFFFL) << 31 | right;
+        }
+        if (kind == CompiledExpression.PUSH || kind == CompiledExpression.LOAD) {
+            key = (long) kind << 61 | (left & 0xFFFFFFFFL);
+        }
+        int mask = keys.length - 1;
+        int slot = ExpressionCache.spread((int) (key ^ key >>> 32)) & mask;
+        while (nodes[slot] >= 0) {
+            if (keys[slot] == key) {
+                return nodes[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        int node = count++;
+        kinds[node] = kind;
+        lefts[node] = left;
+        rights[node] = right;
+        keys[slot] = key;
+        nodes[slot] = node;
+        return node;
+    }
+
+    // Writes the DAG below root back out as a program
+    private CompiledExpression.Program emit(int root) {
+        // How many times each operator node is used
+        int[] uses = new int[count];
+        int[] work = new int[count + 1];
+        int size = 0;
+        work[size++] = root;
+        uses[root] = 1;
+        while (size > 0) {
+            int node = work[--size];
+            if (!isOperator(node)) {
+                continue;
+            }
+            // Visit each operand the first time it is reached
+            if (uses[lefts[node]]++ == 0) work[size++] = lefts[node];
+            if (uses[rights[node]]++ == 0) work[size++] = rights[node];
+        }
+
+        // Every use of a node emits at most two ints, and a SAVE follows at most each node once
+        int[] program = new int[count * 6 + 2];
+        int length = 0;
+        int[] slots = new int[count];
+        Arrays.fill(slots, -1);
+        int locals = 0;
+        int depth = 0;
+        int maxDepth = 0;
+
+        // Iterative post-order walk: a node is pushed once to expand its
+        // operands and once more (negated - 1) to emit it after them
+        int[] pending = new int[count * 2 + 2];
+        size = 0;
+        pending[size++] = root;
+        while (size > 0) {
+            int entry = pending[--size];
+            if (entry >= 0 && isOperator(entry) && slots[entry] < 0) {
+                pending[size++] = -entry - 1;
+                pending[size++] = rights[entry];
+                pending[size++] = lefts[entry];
+                continue;
+            }
+            int node = entry >= 0 ? entry : -entry - 1;
+            if (!isOperator(node)) {
+                program[length++] = kinds[node];
+                program[length++] = lefts[node];
+                maxDepth = Math.max(maxDepth, ++depth);
+            } else if (slots[node] >= 0) {
+                program[length++] = CompiledExpression.RECALL;
+                program[length++] = slots[node];
+                maxDepth = Math.max(maxDepth, ++depth);
+            } else {
+                program[length++] = kinds[node];
+                depth--;
+                if (uses[node] > 1) {
+                    slots[node] = locals++;
+                    program[length++] = CompiledExpression.SAVE;
+                    program[length++] = slots[node];
+                }
+            }
+        }
+        return new CompiledExpression.Program(Arrays.copyOf(program, length), maxDepth, locals);
+    }
+
+    private boolean isOperator(int node) {
+        return kinds[node] != CompiledExpression.PUSH && kinds[node] != CompiledExpression.LOAD;
+    }
+}
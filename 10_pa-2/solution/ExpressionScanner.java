@@ -0,0 +1,191 @@
+/**
+ * Splits an infix expression into tokens in a single pass over its
+ * characters, without creating substrings: each token is reported as its
+ * type, its start and end offsets and, for numbers and operators, its value.
+ *
+ * Tokens no longer need whitespace between them ("3+4*(2-1)" works), but a
+ * whitespace-separated expression scans exactly as split("\\s+") did:
+ *
+ *   - A number is a run of digits that fits in an int. A '+' or '-' directly
+ *     followed by a digit is the number's sign when it starts the expression,
+ *     follows whitespace, an operator or '(' - so "3 -5" and "3 * -5" keep
+ *     their old meaning while "3-5" is a subtraction.
+ *   - An identifier (a variable name) is a letter or '_' followed by letters,
+ *     digits and '_'.
+ *   - Anything else is an INVALID token covering the whole run of characters
+ *     up to the next whitespace, operator or parenthesis.
+ */
+final class ExpressionScanner {
+    // Token types
+    static final int END = 0;
+    static final int NUMBER = 1;
+    static final int OPERATOR = 2;
+    static final int LEFT_PAREN = 3;
+    static final int RIGHT_PAREN = 4;
+    static final int IDENTIFIER = 5;
+    static final int INVALID = 6;
+
+    private final CharSequence text;
+    private final int length;
+    private int position = 0;
+
+    // The current token
+    private int type = END;
+    private int start;
+    private int end;
+    private int value;
+
+    public ExpressionScanner(CharSequence text) {
+        this.text = text;
+        this.length = text.length();
+    }
+
+    // Moves to the next token and returns its type (END after the last one)
+    public int next() {
+        int previousType = type;
+        boolean afterSpace = position == 0;
+        while (position < length && isWhitespace(text.charAt(position))) {
+            position++;
+            afterSpace = true;
+        }
+        start = position;
+        if (position == length) {
+            end = position;
+            return type = END;
+        }
+
+        char c = text.charAt(position);
+        if (c == '(') {
+            end = ++position;
+            return type = LEFT_PAREN;
+        }
+        if (c == ')') {
+            end = ++position;
+            return type = RIGHT_PAREN;
+        }
+
+        int operator = operatorCode(c);
+        if (operator != CompiledExpression.PUSH) {
+            boolean signPosition = afterSpace || previousType == OPERATOR || previousType == LEFT_PAREN;
+            boolean signed = (c == '+' || c == '-') && signPosition &&
+                             position + 1 < length && digit(text.charAt(position + 1)) >= 0;
+            if (!signed) {
+                end = ++position;
+                value = operator;
+                return type = OPERATOR;
+            }
+        }
+        if (isIdentifierStart(c)) {
+            return scanIdentifier();
+        }
+        return scanNumber();
+    }
+
+    // Scans an identifier, or an INVALID run such as "x$"
+    private int scanIdentifier() {
+        boolean valid = true;
+        position++;
+        while (position < length && !isSeparator(text.charAt(position))) {
+            valid &= isIdentifierPart(text.charAt(position));
+            position++;
+        }
+        end = position;
+        return type = valid ? IDENTIFIER : INVALID;
+    }
+
+    // Scans a number (with an optional sign), or an INVALID run
+    private int scanNumber() {
+        boolean negative = false;
+        char first = text.charAt(position);
+        if (first == '+' || first == '-') {
+            negative = first == '-';
+            position++;
+        }
+
+        // Accumulate negatively, like Integer.parseInt, so MIN_VALUE fits
+        long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long magnitude = 0;
+        boolean valid = true;
+        int digits = 0;
+        while (position < length && !isSeparator(text.charAt(position))) {
+            int d = digit(text.charAt(position));
+            if (d < 0) {
+                valid = false;
+            } else if (valid) {
+                magnitude = magnitude * 10 + d;
+                valid = magnitude <= limit;
+            }
+            digits++;
+            position++;
+        }
+        end = position;
+
+        if (!valid || digits == 0) {
+            return type = INVALID;
+        }
+        value = (int) (negative ? -magnitude : magnitude);
+        return type = NUMBER;
+    }
+
+    public int type() { return type; }
+    public int start() { return start; }
+    public int end() { return end; }
+
+    // The number's value, or the operator's instruction code
+    public int value() { return value; }
+
+    // The current token's text (creates a String; meant for error messages)
+    public String tokenText() {
+        return text.subSequence(start, end).toString();
+    }
+
+    // Instruction code for an operator character, or PUSH for anything else
+    static int operatorCode(char c) {
+        switch (c) {
+            case '+': return CompiledExpression.ADD;
+            case '-': return CompiledExpression.SUBTRACT;
+            case '*': return CompiledExpression.MULTIPLY;
+            case '/': return CompiledExpression.DIVIDE;
+            default: return CompiledExpression.PUSH;
+        }
+    }
+
+    // Characters that end a number or an invalid run
+    private static boolean isSeparator(char c) {
+        return isWhitespace(c) || c == '(' || c == ')' || operatorCode(c) != CompiledExpression.PUSH;
+    }
+
+    // Digit value of a character, accepting the same digits as Integer.parseInt
+    private static int digit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        return c < 128 ? -1 : Character.digit(c, 10);
+    }
+
+    // True if the text is a valid identifier
+    static boolean isIdentifier(String name) {
+        if (name.isEmpty() || !isIdentifierStart(name.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            if (!isIdentifierPart(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || c >= '0' && c <= '9';
+    }
+
+    // The whitespace that split("\\s+") separated tokens on
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A long-running evaluator listening on a Unix domain socket, so callers
+ * pay for JVM startup and warm-up once instead of once per file.
+ *
+ * The protocol is line based, in UTF-8. Each request is one expression
+ * followed by '\n'; each response is one line, "Result: <value>" or
+ * "Error: <message>" (an empty request gets "Error: Empty expression").
+ * Responses come back in request order, so a client may pipeline: send
+ * many requests before reading any response.
+ *
+ * Each connection is served by its own thread. Every read is processed as
+ * a batch: all complete lines in it are evaluated and their responses go
+ * back in a single write, so a pipelining client costs one read and one
+ * write per batch rather than per expression. All connections share
+ * Solution_ExpressionEvaluator's cache.
+ *
+ * Responses are written with blocking writes, which applies backpressure to
+ * the client: once a client stops reading and the socket buffers fill up,
+ * the server blocks in write and stops reading that connection's requests
+ * until the client drains its responses. A client that pipelines more than
+ * the buffers hold must therefore read responses while it is still writing
+ * (ExpressionLoadClient reads on a separate thread). An unexpected exception
+ * while evaluating a request is answered with an "Error:" line, and one
+ * that ends a connection is reported on standard error.
+ *
+ * Usage: java ExpressionServer [--mode int|long|big] socket-path
+ */
+public class ExpressionServer {
+    // Requests longer than this close the connection
+    static final int MAX_LINE_LENGTH = 1 << 20;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        NumericMode mode = NumericMode.INT;
+        String socketPath = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--mode") && i + 1 < args.length) {
+                mode = NumericMode.fromOptionName(args[++i]);
+                if (mode == null) {
+                    System.out.println("Unknown mode: " + args[i] + " (expected int, long or big)");
+                    return;
+                }
+            } else {
+                socketPath = args[i];
+            }
+        }
+        if (socketPath == null) {
+            System.out.println("Usage: java ExpressionServer [--mode int|long|big] socket-path");
+            return;
+        }
+
+        Path path = Paths.get(socketPath);
+        Files.deleteIfExists(path);
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(path));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                // exiting anyway
+            }
+        }));
+        System.out.println("Listening on " + path + " (" + mode.getOptionName() + " arithmetic)");
+
+        AtomicInteger connections = new AtomicInteger();
+        NumericMode serverMode = mode;
+        while (true) {
+            SocketChannel client;
+            try {
+                client = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+            Thread thread = new Thread(() -> serve(client, serverMode),
+                                       "expression-client-" + connections.incrementAndGet());
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    // Answers one connection's requests until it closes
+    static void serve(SocketChannel client, NumericMode mode) {
+        try (SocketChannel channel = client) {
+            ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+            StringBuilder responses = new StringBuilder();
+            while (channel.read(input) >= 0) {
+                // Answer every complete line, then keep the partial one
+                input.flip();
+                byte[] bytes = input.array();
+                int lineStart = 0;
+                for (int i = 0; i < input.limit(); i++) {
+                    if (bytes[i] == '\n') {
+                        String request = new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8);
+                        appendResponse(request.trim(), mode, responses);
+                        lineStart = i + 1;
+                    }
+                }
+                input.position(lineStart);
+                input.compact();
+
+                if (responses.length() > 0) {
+                    write(channel, responses);
+                    responses.setLength(0);
+                }
+                if (!input.hasRemaining()) {
+                    if (input.capacity() >= MAX_LINE_LENGTH) {
+                        responses.append("Error: Line too long\n");
+                        write(channel, responses);
+                        return;
+                    }
+                    ByteBuffer larger = ByteBuffer.allocate(input.capacity() * 2);
+                    input.flip();
+                    larger.put(input);
+                    input = larger;
+                }
+            }
+        } catch (IOException e) {
+            // The client went away; nothing to answer
+        } catch (RuntimeException e) {
+            System.err.println(Thread.currentThread().getName() + " closed after an internal error: " + e);
+        }
+    }
+
+    // Appends the response line for one request
+    static void appendResponse(String expression, NumericMode mode, StringBuilder out) {
+        if (expression.isEmpty()) {
+            out.append("Error: Empty expression\n");
+            return;
+        }
+        try {
+            CompiledExpression compiled = Solution_ExpressionEvaluator.CACHE.compile(expression);
+            if (mode == NumericMode.INT) {
+                int result = compiled.evaluate();
+                out.append("Result: ").append(result).append('\n');
+            } else {
+                Number result = compiled.evaluate(mode);
+                out.append("Result: ").append(result).append('\n');
+            }
+        } catch (Solution_ExpressionEvaluator.InvalidExpressionException e) {
+            out.append("Error: ").append(e.getMessage()).append('\n');
+        } catch (RuntimeException e) {
+            // Still one response per request, so later responses stay in order
+            out.append("Error: Internal error - ").append(e).append('\n');
+        }
+    }
+
+    private static void write(SocketChannel channel, StringBuilder text) throws IOException {
+        ByteBuffer output = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+        while (output.hasRemaining()) {
+            channel.write(output);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+/**
+ * A compiled expression as a plain function, implemented by the classes
+ * ExpressionBytecodeCompiler generates.
+ */
+@FunctionalInterface
+interface IntExpression {
+    // Computes the expression's value for the given variable values
+    int evaluate(int[] values) throws Solution_ExpressionEvaluator.InvalidExpressionException;
+}
@@ -0,0 +1,41 @@
+/**
+ * The arithmetic an expression is evaluated in (see
+ * CompiledExpression.evaluate(NumericMode, int...)). Literals and variable
+ * values are ints in every mode; the modes differ in how results that do
+ * not fit are handled.
+ *
+ *   INT          32-bit int arithmetic that wraps on overflow, as
+ *                evaluatePostfix always has. Fastest, and the only mode
+ *                with generated bytecode.
+ *   LONG_EXACT   64-bit arithmetic checked with Math.*Exact; a result that
+ *                does not fit in a long raises "Arithmetic overflow".
+ *   BIG_INTEGER  Exact results of any size. Values are kept in longs and
+ *                only a value that overflows becomes a BigInteger, so most
+ *                expressions never allocate.
+ */
+enum NumericMode {
+    INT("int"),
+    LONG_EXACT("long"),
+    BIG_INTEGER("big");
+
+    private final String optionName;
+
+    NumericMode(String optionName) {
+        this.optionName = optionName;
+    }
+
+    // The name used on the command line (--mode int|long|big)
+    public String getOptionName() {
+        return optionName;
+    }
+
+    // The mode with the given command-line name, or null
+    static NumericMode fromOptionName(String name) {
+        for (NumericMode mode : values()) {
+            if (mode.optionName.equals(name)) {
+                return mode;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,284 @@
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * Evaluates postfix programs (see CompiledExpression) on a reusable int[]
+ * operand stack, so evaluation allocates nothing and boxes nothing.
+ *
+ * evaluateExact and evaluateBig run the same programs in the LONG_EXACT and
+ * BIG_INTEGER modes (see NumericMode) on long[] stacks. In BIG_INTEGER mode
+ * a parallel BigInteger[] stack holds only the values that overflowed a
+ * long (null elsewhere), and a result that fits in a long again moves back.
+ *
+ * An evaluator is not thread-safe; each thread uses its own, for example
+ * the one returned by forCurrentThread().
+ */
+final class PostfixEvaluator {
+    // Instruction for a token that is neither a number nor an operator;
+    // followed by the token's index in the names array passed to evaluate
+    static final int INVALID = -1;
+
+    // Operator symbol for each instruction code, for error messages
+    private static final String[] SYMBOLS = {"", "+", "-", "*", "/"};
+
+    private static final ThreadLocal<PostfixEvaluator> PER_THREAD = ThreadLocal.withInitial(PostfixEvaluator::new);
+
+    private int[] stack = new int[32];
+    private int[] locals = new int[8];
+    private long[] longStack = new long[32];
+    private long[] longLocals = new long[8];
+    private BigInteger[] bigStack = new BigInteger[32];
+    private BigInteger[] bigLocals = new BigInteger[8];
+
+    // The calling thread's evaluator
+    static PostfixEvaluator forCurrentThread() {
+        return PER_THREAD.get();
+    }
+
+    // Evaluates a compiled expression with one value per variable
+    public int evaluate(CompiledExpression expression, int[] values)
+            throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        CompiledExpression.Program program = expression.program();
+        if (locals.length < program.locals) {
+            locals = new int[Math.max(program.locals, locals.length * 2)];
+        }
+        return evaluate(program.code, program.code.length, program.maxDepth, null, values);
+    }
+
+    // Evaluates the first length ints of a program, raising the same errors as
+    // evaluatePostfix. Names holds the text of INVALID tokens (null if none),
+    // values the variables' values (null if none).
+    public int evaluate(int[] program, int length, int maxDepth, String[] names, int[] values)
+            throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        if (stack.length < maxDepth) {
+            stack = new int[Math.max(maxDepth, stack.length * 2)];
+        }
+        int[] stack = this.stack;
+        int[] locals = this.locals;
+        int size = 0;
+
+        for (int pc = 0; pc < length; pc++) {
+            int code = program[pc];
+            switch (code) {
+                case CompiledExpression.PUSH:
+                    stack[size++] = program[++pc];
+                    continue;
+                case CompiledExpression.LOAD:
+                    stack[size++] = values[program[++pc]];
+                    continue;
+                case CompiledExpression.SAVE:
+                    locals[program[++pc]] = stack[size - 1];
+                    continue;
+                case CompiledExpression.RECALL:
+                    stack[size++] = locals[program[++pc]];
+                    continue;
+                case INVALID:
+                    throw new Solution_ExpressionEvaluator.InvalidExpressionException(
+                        "Invalid token in postfix: " + names[program[++pc]]);
+                default:
+                    break;
+            }
+            if (size < 2) {
+                throw new Solution_ExpressionEvaluator.InvalidExpressionException(
+                    "Insufficient operands for operator: " + SYMBOLS[code]);
+            }
+            int b = stack[--size];
+            int a = stack[size - 1];
+            switch (code) {
+                case CompiledExpression.ADD: stack[size - 1] = a + b; break;
+                case CompiledExpression.SUBTRACT: stack[size - 1] = a - b; break;
+                case CompiledExpression.MULTIPLY: stack[size - 1] = a * b; break;
+                default:
+                    if (b == 0) throw new Solution_ExpressionEvaluator.InvalidExpressionException("Division by zero");
+                    stack[size - 1] = a / b;
+            }
+        }
+        if (size != 1) {
+            throw new Solution_ExpressionEvaluator.InvalidExpressionException("Invalid postfix expression");
+        }
+        return stack[0];
+    }
+
+    // Evaluates a compiled expression in long arithmetic, raising "Arithmetic
+    // overflow" if a result does not fit
+    public long evaluateExact(CompiledExpression expression, int[] values)
+            throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        CompiledExpression.Program compiled = expression.program();
+        int[] program = compiled.code;
+        if (longStack.length < compiled.maxDepth) {
+            longStack = new long[Math.max(compiled.maxDepth, longStack.length * 2)];
+        }
+        if (longLocals.length < compiled.locals) {
+            longLocals = new long[Math.max(compiled.locals, longLocals.length * 2)];
+        }
+        long[] stack = longStack;
+        long[] locals = longLocals;
+        int size = 0;
+
+        for (int pc = 0; pc < program.length; pc++) {
+            int code = program[pc];
+            switch (code) {
+                case CompiledExpression.PUSH:
+                    stack[size++] = program[++pc];
+                    continue;
+                case CompiledExpression.LOAD:
+                    stack[size++] = values[program[++pc]];
+                    continue;
+                case CompiledExpression.SAVE:
+                    locals[program[++pc]] = stack[size - 1];
+                    continue;
+                case CompiledExpression.RECALL:
+                    stack[size++] = locals[program[++pc]];
+                    continue;
+                default:
+                    break;
+            }
+            if (size < 2) {
+                throw new Solution_ExpressionEvaluator.InvalidExpressionException(
+                    "Insufficient operands for operator: " + SYMBOLS[code]);
+            }
+            long b = stack[--size];
+            long a = stack[size - 1];
+            try {
+                switch (code) {
+                    case CompiledExpression.ADD: stack[size - 1] = Math.addExact(a, b); break;
+                    case CompiledExpression.SUBTRACT: stack[size - 1] = Math.subtractExact(a, b); break;
+                    case CompiledExpression.MULTIPLY: stack[size - 1] = Math.multiplyExact(a, b); break;
+                    default:
+                        if (b == 0) throw new Solution_ExpressionEvaluator.InvalidExpressionException("Division by zero");
+                        if (a == Long.MIN_VALUE && b == -1) throw new ArithmeticException();
+                        stack[size - 1] = a / b;
+                }
+            } catch (ArithmeticException e) {
+                throw new Solution_ExpressionEvaluator.InvalidExpressionException("Arithmetic overflow");
+            }
+        }
+        if (size != 1) {
+            throw new Solution_ExpressionEvaluator.InvalidExpressionException("Invalid postfix expression");
+        }
+        return stack[0];
+    }
+
+    // Evaluates a compiled expression exactly, in longs until a value overflows
+    public BigInteger evaluateBig(CompiledExpression expression, int[] values)
+            throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        CompiledExpression.Program compiled = expression.program();
+        int[] program = compiled.code;
+        if (longStack.length < compiled.maxDepth) {
+            longStack = new long[Math.max(compiled.maxDepth, longStack.length * 2)];
+        }
+        if (bigStack.length < compiled.maxDepth) {
+            bigStack = new BigInteger[Math.max(compiled.maxDepth, bigStack.length * 2)];
+        }
+        if (longLocals.length < compiled.locals) {
+            longLocals = new long[Math.max(compiled.locals, longLocals.length * 2)];
+        }
+        if (bigLocals.length < compiled.locals) {
+            bigLocals = new BigInteger[Math.max(compiled.locals, bigLocals.length * 2)];
+        }
+        long[] stack = longStack;
+        long[] locals = longLocals;
+        BigInteger[] big = bigStack;
+        BigInteger[] bigLocals = this.bigLocals;
+        int size = 0;
+        boolean promoted = false;
+
+        try {
+            for (int pc = 0; pc < program.length; pc++) {
+                int code = program[pc];
+                switch (code) {
+                    case CompiledExpression.PUSH:
+                        big[size] = null;
+                        stack[size++] = program[++pc];
+                        continue;
+                    case CompiledExpression.LOAD:
+                        big[size] = null;
+                        stack[size++] = values[program[++pc]];
+                        continue;
+                    case CompiledExpression.SAVE:
+                        locals[program[pc + 1]] = stack[size - 1];
+                        bigLocals[program[++pc]] = big[size - 1];
+                        continue;
+                    case CompiledExpression.RECALL:
+                        stack[size] = locals[program[pc + 1]];
+                        big[size++] = bigLocals[program[++pc]];
+                        continue;
+                    default:
+                        break;
+                }
+                if (size < 2) {
+                    throw new Solution_ExpressionEvaluator.InvalidExpressionException(
+                        "Insufficient operands for operator: " + SYMBOLS[code]);
+                }
+                size--;
+                if (big[size] == null && big[size - 1] == null) {
+                    // Fast path: both operands are longs
+                    long b = stack[size];
+                    long a = stack[size - 1];
+                    if (code == CompiledExpression.DIVIDE && b == 0) {
+                        throw new Solution_ExpressionEvaluator.InvalidExpressionException("Division by zero");
+                    }
+                    long result;
+                    switch (code) {
+                        case CompiledExpression.ADD: result = a + b; break;
+                        case CompiledExpression.SUBTRACT: result = a - b; break;
+                        case CompiledExpression.MULTIPLY: result = a * b; break;
+                        default: result = a / b;
+                    }
+                    if (!overflowed(code, a, b, result)) {
+                        stack[size - 1] = result;
+                        continue;
+                    }
+                }
+                BigInteger result = apply(code, toBig(stack, big, size - 1), toBig(stack, big, size));
+                if (result.bitLength() < 64) {
+                    stack[size - 1] = result.longValue();
+                    big[size - 1] = null;
+                } else {
+                    big[size - 1] = result;
+                    promoted = true;
+                }
+            }
+            if (size != 1) {
+                throw new Solution_ExpressionEvaluator.InvalidExpressionException("Invalid postfix expression");
+            }
+            return toBig(stack, big, 0);
+        } finally {
+            if (promoted) {
+                // Let the BigIntegers be collected
+                Arrays.fill(big, 0, compiled.maxDepth, null);
+                Arrays.fill(bigLocals, 0, compiled.locals, null);
+            }
+        }
+    }
+
+    // True if a long operation's result wrapped around
+    private static boolean overflowed(int code, long a, long b, long result) {
+        switch (code) {
+            case CompiledExpression.ADD: return ((a ^ result) & (b ^ result)) < 0;
+            case CompiledExpression.SUBTRACT: return ((a ^ b) & (a ^ result)) < 0;
+            case CompiledExpression.MULTIPLY:
+                long high = Math.multiplyHigh(a, b);
+                return high != (result >> 63);
+            default: return a == Long.MIN_VALUE && b == -1;
+        }
+    }
+
+    private static BigInteger toBig(long[] stack, BigInteger[] big, int index) {
+        return big[index] != null ? big[index] : BigInteger.valueOf(stack[index]);
+    }
+
+    private static BigInteger apply(int code, BigInteger a, BigInteger b)
+            throws Solution_ExpressionEvaluator.InvalidExpressionException {
+        switch (code) {
+            case CompiledExpression.ADD: return a.add(b);
+            case CompiledExpression.SUBTRACT: return a.subtract(b);
+            case CompiledExpression.MULTIPLY: return a.multiply(b);
+            default:
+                if (b.signum() == 0) {
+                    throw new Solution_ExpressionEvaluator.InvalidExpressionException("Division by zero");
+                }
+                return a.divide(b);
+        }
+    }
+}
@@ -2,145 +2,142 @@ import java.util.*;
 import java.io.*;
 
 public class Solution_ExpressionEvaluator {
+    // Compiled expressions shared by every line (and thread) that evaluates them
+    static final ExpressionCache CACHE = new ExpressionCache(4096);
+
+    // Usage: java Solution_ExpressionEvaluator [--cache-stats] [--batch] [--mode int|long|big] [file]
+    // --batch evaluates a file in parallel chunks (see ExpressionFileBatch);
+    // the output is the same as line by line. --mode selects the arithmetic
+    // (see NumericMode); the default is int.
     public static void main(String[] args) {
+        String inputFile = null;
+        boolean cacheStats = false;
+        boolean batch = false;
+        NumericMode mode = NumericMode.INT;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--cache-stats")) {
+                cacheStats = true;
+            } else if (arg.equals("--batch")) {
+                batch = true;
+            } else if (arg.equals("--mode") && i + 1 < args.length) {
+                mode = NumericMode.fromOptionName(args[++i]);
+                if (mode == null) {
+                    System.out.println("Unknown mode: " + args[i] + " (expected int, long or big)");
+                    return;
+                }
+            } else {
+                inputFile = arg;
+            }
+        }
+
+        if (batch && inputFile != null) {
+            try {
+                ExpressionFileBatch.run(new File(inputFile), mode, System.out);
+            } catch (FileNotFoundException e) {
+                System.out.println("File not found: " + e.getMessage());
+            } catch (IOException e) {
+                System.out.println("Error reading file: " + e.getMessage());
+            }
+            if (cacheStats) {
+                System.err.println(CACHE);
+            }
+            return;
+        }
+
         Scanner scanner = null;
         try {
-            if (args.length > 0) {
-                scanner = new Scanner(new File(args[0]));
+            if (inputFile != null) {
+                scanner = new Scanner(new File(inputFile));
             } else {
                 scanner = new Scanner(System.in);
             }
+            StringBuilder output = new StringBuilder();
             while (scanner.hasNextLine()) {
                 String expression = scanner.nextLine().trim();
                 if (expression.isEmpty()) continue;
-                try {
-                    Queue<String> postfix = infixToPostfix(expression);
-                    System.out.println("Input: " + expression);
-                    System.out.print("Postfix: ");
-                    for (String token : postfix) {
-                        System.out.print(token + " ");
-                    }
-                    System.out.println();
-                    int result = evaluatePostfix(new LinkedList<>(postfix));
-                    System.out.println("Result: " + result);
-                } catch (InvalidExpressionException e) {
-                    System.out.println("Input: " + expression);
-                    System.out.println("Error: " + e.getMessage());
-                }
-                System.out.println();
+                output.setLength(0);
+                appendEvaluation(expression, mode, output);
+                System.out.print(output);
             }
         } catch (FileNotFoundException e) {
             System.out.println("File not found: " + e.getMessage());
         } finally {
             if (scanner != null) scanner.close();
         }
+        if (cacheStats) {
+            System.err.println(CACHE);
+        }
     }
 
-    // Converts infix expression to postfix (RPN)
-    public static Queue<String> infixToPostfix(String expression) throws InvalidExpressionException {
-        Stack<String> stack = new Stack<>();
-        Queue<String> output = new LinkedList<>();
-        String[] tokens = expression.split("\\s+");
-        for (String token : tokens) {
-            if (isInteger(token)) {
-                output.add(token);
-            } else if (isOperator(token)) {
-                while (!stack.isEmpty() && isOperator(stack.peek()) &&
-                        ((isLeftAssociative(token) && precedence(token) <= precedence(stack.peek())) ||
-                        (!isLeftAssociative(token) && precedence(token) < precedence(stack.peek())))) {
-                    output.add(stack.pop());
-                }
-                stack.push(token);
-            } else if (token.equals("(")) {
-                stack.push(token);
-            } else if (token.equals(")")) {
-                boolean foundLeftParen = false;
-                while (!stack.isEmpty()) {
-                    String top = stack.pop();
-                    if (top.equals("(")) {
-                        foundLeftParen = true;
-                        break;
-                    } else {
-                        output.add(top);
-                    }
-                }
-                if (!foundLeftParen) {
-                    throw new InvalidExpressionException("Mismatched parentheses");
-                }
+    // Appends what main prints for one (trimmed, non-empty) input line
+    static void appendEvaluation(String expression, NumericMode mode, StringBuilder out) {
+        String newline = System.lineSeparator();
+        try {
+            CompiledExpression compiled = CACHE.compile(expression);
+            out.append("Input: ").append(expression).append(newline);
+            out.append("Postfix: ").append(compiled.postfixString()).append(newline);
+            if (mode == NumericMode.INT) {
+                int result = compiled.evaluate();
+                out.append("Result: ").append(result).append(newline);
             } else {
-                throw new InvalidExpressionException("Invalid token: " + token);
-            }
-        }
-        while (!stack.isEmpty()) {
-            String top = stack.pop();
-            if (top.equals("(") || top.equals(")")) {
-                throw new InvalidExpressionException("Mismatched parentheses");
+                Number result = compiled.evaluate(mode);
+                out.append("Result: ").append(result).append(newline);
             }
-            output.add(top);
+        } catch (InvalidExpressionException e) {
+            out.append("Input: ").append(expression).append(newline);
+            out.append("Error: ").append(e.getMessage()).append(newline);
         }
-        return output;
+        out.append(newline);
+    }
+
+    // Converts infix expression to postfix (RPN); the named variables may
+    // appear in the expression and are passed through as tokens
+    public static Queue<String> infixToPostfix(String expression, String... variables)
+            throws InvalidExpressionException {
+        return CompiledExpression.compile(expression, variables).postfixTokens();
     }
 
     // Evaluates a postfix expression
     public static int evaluatePostfix(Queue<String> postfix) throws InvalidExpressionException {
-        Stack<Integer> stack = new Stack<>();
+        return evaluatePostfix(postfix, Collections.emptyMap());
+    }
+
+    // Evaluates a postfix expression, taking each variable token's value from variables
+    public static int evaluatePostfix(Queue<String> postfix, Map<String, Integer> variables)
+            throws InvalidExpressionException {
+        // Decode each token once into a postfix program, then run it on an int[] stack
+        int tokenCount = postfix.size();
+        int[] program = new int[tokenCount * 2];
+        String[] names = null;
+        int invalidCount = 0;
+        int length = 0;
         while (!postfix.isEmpty()) {
             String token = postfix.poll();
-            if (isInteger(token)) {
-                stack.push(Integer.parseInt(token));
-            } else if (isOperator(token)) {
-                if (stack.size() < 2) {
-                    throw new InvalidExpressionException("Insufficient operands for operator: " + token);
-                }
-                int b = stack.pop();
-                int a = stack.pop();
-                int result = 0;
-                switch (token) {
-                    case "+": result = a + b; break;
-                    case "-": result = a - b; break;
-                    case "*": result = a * b; break;
-                    case "/":
-                        if (b == 0) throw new InvalidExpressionException("Division by zero");
-                        result = a / b; break;
-                    default:
-                        throw new InvalidExpressionException("Unknown operator: " + token);
+            int code = CompiledExpression.operatorCode(token);
+            if (code != CompiledExpression.PUSH) {
+                program[length++] = code;
+                continue;
+            }
+            try {
+                int value = Integer.parseInt(token);
+                program[length++] = CompiledExpression.PUSH;
+                program[length++] = value;
+            } catch (NumberFormatException e) {
+                Integer value = variables.get(token);
+                if (value != null) {
+                    program[length++] = CompiledExpression.PUSH;
+                    program[length++] = value;
+                    continue;
                 }
-                stack.push(result);
-            } else {
-                throw new InvalidExpressionException("Invalid token in postfix: " + token);
+                // Reported only if evaluation gets this far, as before
+                if (names == null) names = new String[tokenCount];
+                names[invalidCount] = token;
+                program[length++] = PostfixEvaluator.INVALID;
+                program[length++] = invalidCount++;
             }
         }
-        if (stack.size() != 1) {
-            throw new InvalidExpressionException("Invalid postfix expression");
-        }
-        return stack.pop();
-    }
-
-    // Helper methods
-    private static boolean isInteger(String s) {
-        try {
-            Integer.parseInt(s);
-            return true;
-        } catch (NumberFormatException e) {
-            return false;
-        }
-    }
-
-    private static boolean isOperator(String s) {
-        return s.equals("+") || s.equals("-") || s.equals("*") || s.equals("/");
-    }
-
-    private static int precedence(String op) {
-        switch (op) {
-            case "+": case "-": return 1;
-            case "*": case "/": return 2;
-            default: return 0;
-        }
-    }
-
-    private static boolean isLeftAssociative(String op) {
-        // All operators in this assignment are left-associative
-        return true;
+        return PostfixEvaluator.forCurrentThread().evaluate(program, length, tokenCount, names, null);
     }
 
     // Custom exception for invalid expressions
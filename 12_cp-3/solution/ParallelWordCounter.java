@@ -0,0 +1,265 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Counts word frequencies in a file without building a list of its words.
+ * The file is memory-mapped and cut into chunks of about CHUNK_SIZE bytes
+ * at whitespace. One worker per core claims chunks in turn and counts them
+ * into its own WordTable; the tables are merged into a single map at the
+ * end.
+ *
+ * A word is what the line-by-line version produces: a run of non-whitespace
+ * (line.split("\\s+")) with everything but a-z and A-Z removed and the rest
+ * lowercased; runs with no letters are not words. Whitespace and letters are
+ * all ASCII, so the file is scanned as bytes, which gives the same words for
+ * UTF-8 and any other ASCII-compatible charset.
+ */
+final class ParallelWordCounter {
+    static final int CHUNK_SIZE = 8 << 20;
+
+    // Bytes read at a time while looking for the end of a chunk
+    private static final int SCAN_SIZE = 4096;
+
+    // The lowercase form of each ASCII letter byte, 0 for other bytes
+    private static final byte[] LOWER = new byte[256];
+    // The bytes \s matches: space, tab, line feed, vertical tab, form feed and carriage return
+    private static final boolean[] WHITESPACE = new boolean[256];
+
+    static {
+        for (int c = 'a'; c <= 'z'; c++) {
+            LOWER[c] = (byte) c;
+            LOWER[c - 'a' + 'A'] = (byte) c;
+        }
+        for (char c : new char[] {' ', '\t', '\n', '\u000B', '\f', '\r'}) {
+            WHITESPACE[c] = true;
+        }
+    }
+
+    private ParallelWordCounter() {
+    }
+
+    // Counts the words of a file using one worker per core
+    static Map<String, Integer> count(File file) throws IOException {
+        return count(file, Runtime.getRuntime().availableProcessors());
+    }
+
+    // Counts the words of a file using the given number of workers
+    static Map<String, Integer> count(File file, int workers) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r");
+             FileChannel channel = input.getChannel()) {
+            long[] bounds = chunkBounds(channel);
+            int chunks = bounds.length - 1;
+            workers = Math.max(1, Math.min(workers, chunks));
+            if (workers == 1) {
+                // Small file: no threads needed
+                WordTable table = new WordTable();
+                for (int i = 0; i < chunks; i++) {
+                    countChunk(channel, bounds[i], bounds[i + 1], table);
+                }
+                return merge(Collections.singletonList(table));
+            }
+
+            AtomicInteger nextChunk = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(workers);
+            try {
+                List<Future<WordTable>> results = new ArrayList<>();
+                for (int w = 0; w < workers; w++) {
+                    results.add(pool.submit(() -> {
+                        WordTable table = new WordTable();
+                        for (int i = nextChunk.getAndIncrement(); i < chunks; i = nextChunk.getAndIncrement()) {
+                            countChunk(channel, bounds[i], bounds[i + 1], table);
+                        }
+                        return table;
+                    }));
+                }
+                List<WordTable> tables = new ArrayList<>();
+                for (Future<WordTable> result : results) {
+                    tables.add(result.get());
+                }
+                return merge(tables);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while counting " + file);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    // Chunk start offsets followed by the file size; every chunk but the first starts just after whitespace
+    private static long[] chunkBounds(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        long start = 0;
+        while (start < size) {
+            start = chunkEnd(channel, start, size);
+            bounds.add(start);
+        }
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    // The offset just past the first whitespace byte at or after start + CHUNK_SIZE (or the file size)
+    private static long chunkEnd(FileChannel channel, long start, long size) throws IOException {
+        long position = start + CHUNK_SIZE;
+        if (position >= size) {
+            return size;
+        }
+        ByteBuffer window = ByteBuffer.allocate(SCAN_SIZE);
+        while (position < size) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (WHITESPACE[window.get(i) & 0xFF]) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    // Adds the words of bytes [start, end) to table
+    private static void countChunk(FileChannel channel, long start, long end, WordTable table) throws IOException {
+        MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        byte[] word = table.scratch;
+        int length = 0;
+        int limit = chunk.limit();
+        for (int i = 0; i < limit; i++) {
+            int b = chunk.get(i) & 0xFF;
+            if (WHITESPACE[b]) {
+                if (length > 0) {
+                    table.add(word, length);
+                    length = 0;
+                }
+            } else if (LOWER[b] != 0) {
+                if (length == word.length) {
+                    word = table.scratch = Arrays.copyOf(word, length * 2);
+                }
+                word[length++] = LOWER[b];
+            }
+        }
+        if (length > 0) {
+            table.add(word, length);
+        }
+    }
+
+    // Sums the tables into one map
+    private static Map<String, Integer> merge(List<WordTable> tables) {
+        int largest = 0;
+        for (WordTable table : tables) {
+            largest = Math.max(largest, table.size);
+        }
+        Map<String, Integer> counts = new HashMap<>(largest * 4 / 3 + 1);
+        for (WordTable table : tables) {
+            table.forEach((word, count) -> counts.merge(word, count, Integer::sum));
+        }
+        return counts;
+    }
+
+    /**
+     * One worker's counts: an open-addressing table of words stored as
+     * bytes in an arena, so counting a word that has been seen before
+     * allocates nothing.
+     */
+    private static final class WordTable {
+        byte[] scratch = new byte[64];
+        int size = 0;
+
+        private byte[] arena = new byte[1 << 16];
+        private int arenaLength = 0;
+        // Per slot: word offset + 1 in the arena (0 for an empty slot), length, hash and count
+        private int[] offsets = new int[1 << 12];
+        private int[] lengths = new int[1 << 12];
+        private int[] hashes = new int[1 << 12];
+        private int[] counts = new int[1 << 12];
+
+        // Counts one occurrence of word[0, length)
+        void add(byte[] word, int length) {
+            int hash = 1;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + word[i];
+            }
+            hash ^= hash >>> 16;
+            int mask = offsets.length - 1;
+            int slot = hash & mask;
+            while (offsets[slot] != 0) {
+                if (hashes[slot] == hash && lengths[slot] == length
+                        && Arrays.equals(arena, offsets[slot] - 1, offsets[slot] - 1 + length, word, 0, length)) {
+                    counts[slot]++;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (arenaLength + length > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaLength + length));
+            }
+            System.arraycopy(word, 0, arena, arenaLength, length);
+            offsets[slot] = arenaLength + 1;
+            lengths[slot] = length;
+            hashes[slot] = hash;
+            counts[slot] = 1;
+            arenaLength += length;
+            if (++size * 2 > offsets.length) {
+                grow();
+            }
+        }
+
+        // Calls action with every word and its count
+        void forEach(ObjIntConsumer<String> action) {
+            for (int slot = 0; slot < offsets.length; slot++) {
+                if (offsets[slot] != 0) {
+                    String word = new String(arena, offsets[slot] - 1, lengths[slot], StandardCharsets.US_ASCII);
+                    action.accept(word, counts[slot]);
+                }
+            }
+        }
+
+        private void grow() {
+            int[] oldOffsets = offsets;
+            int[] oldLengths = lengths;
+            int[] oldHashes = hashes;
+            int[] oldCounts = counts;
+            int capacity = oldOffsets.length * 2;
+            offsets = new int[capacity];
+            lengths = new int[capacity];
+            hashes = new int[capacity];
+            counts = new int[capacity];
+            int mask = capacity - 1;
+            for (int old = 0; old < oldOffsets.length; old++) {
+                if (oldOffsets[old] != 0) {
+                    int slot = oldHashes[old] & mask;
+                    while (offsets[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    offsets[slot] = oldOffsets[old];
+                    lengths[slot] = oldLengths[old];
+                    hashes[slot] = oldHashes[old];
+                    counts[slot] = oldCounts[old];
+                }
+            }
+        }
+    }
+}
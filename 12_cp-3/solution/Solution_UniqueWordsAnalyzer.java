@@ -0,0 +1,84 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Solution_UniqueWordsAnalyzer
+ *
+ * Sample solution: reads a text file, counts how often each word appears and
+ * prints the number of unique words, the 5 most common words and the number
+ * of words that appear only once.
+ *
+ * The words are counted straight from the file (see ParallelWordCounter)
+ * instead of being collected into a List first, so even a multi-gigabyte
+ * file only needs memory for its distinct words, and the counting runs on
+ * every core. The unique words are the keys of the count map.
+ *
+ * Usage: java Solution_UniqueWordsAnalyzer [filename]   (default: sample.txt)
+ */
+public class Solution_UniqueWordsAnalyzer {
+    public static void main(String[] args) {
+        String filename = args.length > 0 ? args[0] : "sample.txt";
+        Map<String, Integer> wordCounts;
+        try {
+            wordCounts = getWordCounts(filename);
+        } catch (FileNotFoundException e) {
+            System.out.println("File not found: " + e.getMessage());
+            return;
+        } catch (IOException e) {
+            System.out.println("Error reading " + filename + ": " + e.getMessage());
+            return;
+        }
+        Set<String> uniqueWords = getUniqueWords(wordCounts);
+        displayResults(uniqueWords, wordCounts);
+    }
+
+    /**
+     * Counts every word in a file. Punctuation and digits are removed and
+     * words are compared case-insensitively.
+     *
+     * @param filename The name of the file to read.
+     * @return Map of word to count.
+     */
+    public static Map<String, Integer> getWordCounts(String filename) throws IOException {
+        return ParallelWordCounter.count(new File(filename));
+    }
+
+    /**
+     * Returns the unique words, which are exactly the keys of the count map.
+     *
+     * @param wordCounts Map of word to count.
+     * @return Set of unique words.
+     */
+    public static Set<String> getUniqueWords(Map<String, Integer> wordCounts) {
+        return wordCounts.keySet();
+    }
+
+    /**
+     * Displays the number of unique words, the 5 most common words (ties in
+     * alphabetical order) and the number of words that appear only once.
+     *
+     * @param uniqueWords Set of unique words.
+     * @param wordCounts Map of word to count.
+     */
+    public static void displayResults(Set<String> uniqueWords, Map<String, Integer> wordCounts) {
+        System.out.println("Total unique words: " + uniqueWords.size());
+
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(wordCounts.entrySet());
+        entries.sort((a, b) -> {
+            int byCount = Integer.compare(b.getValue(), a.getValue());
+            return byCount != 0 ? byCount : a.getKey().compareTo(b.getKey());
+        });
+        System.out.println("Top 5 most common words:");
+        for (int i = 0; i < Math.min(5, entries.size()); i++) {
+            System.out.println(entries.get(i).getKey() + ": " + entries.get(i).getValue());
+        }
+
+        int once = 0;
+        for (int count : wordCounts.values()) {
+            if (count == 1) {
+                once++;
+            }
+        }
+        System.out.println("Words that appear only once: " + once);
+    }
+}